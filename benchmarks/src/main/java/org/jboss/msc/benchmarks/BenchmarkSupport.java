@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceContext;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.CommitResult;
+import org.jboss.msc.txn.CompletionListener;
+import org.jboss.msc.txn.PrepareResult;
+import org.jboss.msc.txn.ReadTransaction;
+import org.jboss.msc.txn.TaskExecutors;
+import org.jboss.msc.txn.Transaction;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+
+/**
+ * Helpers shared by the benchmarks. Everything here goes through the public API only, so the numbers reflect what
+ * container users actually pay for.
+ */
+final class BenchmarkSupport {
+
+    static final ServiceName BASE = ServiceName.of("benchmark");
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * The kinds of executors transactions can run their tasks on.
+     */
+    public enum ExecutorType {
+        /** A fixed thread pool with a shared queue, as used by the test suite. */
+        THREAD_POOL,
+        /** The work-stealing executor from {@link TaskExecutors}. */
+        WORK_STEALING,
+        /** The virtual thread executor from {@link TaskExecutors}, which requires Java 21. */
+        VIRTUAL_THREADS,
+    }
+
+    /**
+     * Creates the executor transactions run their tasks on, sized like the one used by the test suite.
+     *
+     * @param threads the number of worker threads
+     * @return the executor
+     */
+    static ExecutorService newExecutor(final int threads) {
+        return newExecutor(ExecutorType.THREAD_POOL, threads);
+    }
+
+    static ExecutorService newExecutor(final ExecutorType type, final int threads) {
+        switch (type) {
+            case THREAD_POOL: {
+                final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.DAYS, new LinkedBlockingQueue<Runnable>());
+                executor.prestartAllCoreThreads();
+                return executor;
+            }
+            case WORK_STEALING: {
+                return TaskExecutors.newWorkStealingExecutor(threads);
+            }
+            case VIRTUAL_THREADS: {
+                return TaskExecutors.newVirtualThreadExecutor();
+            }
+            default: throw new IllegalStateException();
+        }
+    }
+
+    static void shutdown(final ExecutorService executor) throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(60, TimeUnit.SECONDS);
+    }
+
+    static UpdateTransaction newUpdateTransaction(final TransactionController controller, final ExecutorService executor) {
+        final CompletionListener<UpdateTransaction> listener = new CompletionListener<>();
+        controller.createUpdateTransaction(executor, listener);
+        return listener.awaitCompletionUninterruptibly();
+    }
+
+    static ReadTransaction newReadTransaction(final TransactionController controller, final ExecutorService executor) {
+        final CompletionListener<ReadTransaction> listener = new CompletionListener<>();
+        controller.createReadTransaction(executor, listener);
+        return listener.awaitCompletionUninterruptibly();
+    }
+
+    /**
+     * Prepares and commits {@code transaction}, waiting for each phase to complete.
+     *
+     * @param controller the controller owning the transaction
+     * @param transaction the transaction
+     * @return {@code true} if the transaction could be committed, {@code false} if it had to be rolled back
+     */
+    static boolean prepareAndCommit(final TransactionController controller, final Transaction transaction) {
+        final CompletionListener<PrepareResult<Transaction>> prepareListener = new CompletionListener<>();
+        controller.prepare(transaction, prepareListener);
+        prepareListener.awaitCompletionUninterruptibly();
+        final boolean committable = controller.canCommit(transaction);
+        final CompletionListener<CommitResult<Transaction>> commitListener = new CompletionListener<>();
+        controller.commit(transaction, commitListener);
+        commitListener.awaitCompletionUninterruptibly();
+        return committable;
+    }
+
+    static void commitOrFail(final TransactionController controller, final Transaction transaction) {
+        if (!prepareAndCommit(controller, transaction)) {
+            throw new IllegalStateException("Benchmark transaction was rolled back: " + controller.getReport(transaction));
+        }
+    }
+
+    static void shutdownContainer(final TransactionController controller, final ExecutorService executor, final ServiceContainer container) {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        container.shutdown(txn);
+        commitOrFail(controller, txn);
+    }
+
+    static ServiceName serviceName(final int index) {
+        return BASE.append(Integer.toString(index));
+    }
+
+    /**
+     * Installs a no-op service with the given dependencies.
+     *
+     * @return the installed service controller
+     */
+    static ServiceController install(final ServiceContext context, final ServiceRegistry registry, final UpdateTransaction txn,
+            final ServiceName name, final ServiceName... dependencies) {
+        return configure(context.addService(registry, name, txn), dependencies).install();
+    }
+
+    private static ServiceBuilder<Void> configure(final ServiceBuilder<Void> builder, final ServiceName... dependencies) {
+        builder.setService(NoOpService.INSTANCE);
+        for (ServiceName dependency : dependencies) {
+            builder.addDependency(dependency);
+        }
+        return builder;
+    }
+
+    /**
+     * Something no-op services can be installed with.
+     */
+    interface Installer {
+        void install(ServiceName name, ServiceName... dependencies);
+
+        /**
+         * Completes installation of all services.
+         */
+        void done();
+    }
+
+    /**
+     * Creates an installer that installs every service on its own, as soon as it is added.
+     */
+    static Installer serviceInstaller(final ServiceContext context, final ServiceRegistry registry, final UpdateTransaction txn) {
+        return new Installer() {
+            @Override
+            public void install(final ServiceName name, final ServiceName... dependencies) {
+                BenchmarkSupport.install(context, registry, txn, name, dependencies);
+            }
+
+            @Override
+            public void done() {
+            }
+        };
+    }
+
+    /**
+     * Creates an installer that collects all services in a {@link ServiceBatch} and installs them together.
+     */
+    static Installer batchInstaller(final ServiceContext context, final ServiceRegistry registry, final UpdateTransaction txn) {
+        final ServiceBatch batch = context.addServices(registry, txn);
+        return new Installer() {
+            @Override
+            public void install(final ServiceName name, final ServiceName... dependencies) {
+                configure(batch.addService(name), dependencies);
+            }
+
+            @Override
+            public void done() {
+                batch.install();
+            }
+        };
+    }
+
+    /**
+     * A service that does nothing, so that only container overhead is measured.
+     */
+    static final class NoOpService implements Service<Void> {
+
+        static final NoOpService INSTANCE = new NoOpService();
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            startContext.complete();
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            stopContext.complete();
+        }
+    }
+}
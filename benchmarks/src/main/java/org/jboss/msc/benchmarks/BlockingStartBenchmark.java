@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.commitOrFail;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceName;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.shutdownContainer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.benchmarks.BenchmarkSupport.ExecutorType;
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures installing and starting {@code count} independent services that block for {@code blockMillis} while
+ * starting, as services doing JNDI lookups or opening files do. Compares the fixed thread pool used by the test suite
+ * with the virtual thread executor, which requires Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BlockingStartBenchmark {
+
+    @Param({"100", "1000"})
+    public int count;
+
+    @Param({"1", "10"})
+    public long blockMillis;
+
+    @Param({"THREAD_POOL", "VIRTUAL_THREADS"})
+    public ExecutorType executorType;
+
+    private TransactionController controller;
+    private ExecutorService executor;
+    private ServiceContainer container;
+    private ServiceRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(executorType, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws InterruptedException {
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        container = controller.createServiceContainer();
+        registry = container.newRegistry();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        shutdownContainer(controller, executor, container);
+    }
+
+    @Benchmark
+    public void installAndStart() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        final BlockingService service = new BlockingService(blockMillis);
+        for (int i = 0; i < count; i++) {
+            final ServiceBuilder<Void> builder = controller.getServiceContext().addService(registry, serviceName(i), txn);
+            builder.setService(service);
+            builder.install();
+        }
+        commitOrFail(controller, txn);
+    }
+
+    /**
+     * A service that blocks while starting.
+     */
+    static final class BlockingService implements Service<Void> {
+
+        private final long blockMillis;
+
+        BlockingService(final long blockMillis) {
+            this.blockMillis = blockMillis;
+        }
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            try {
+                Thread.sleep(blockMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            startContext.complete();
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            stopContext.complete();
+        }
+    }
+}
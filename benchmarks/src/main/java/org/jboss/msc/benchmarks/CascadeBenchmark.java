@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.commitOrFail;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceInstaller;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceName;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.shutdownContainer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.benchmarks.ServiceInstallBenchmark.Shape;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures management operations that cascade through an installed graph: restarting, disabling and enabling the first
+ * installed service (the root every other service depends on for {@code FAN_OUT}, the top of a widening cone of
+ * dependents for {@code LAYERED}), and disabling and enabling the whole registry.
+ * Every benchmark leaves the graph fully started again, so invocations are independent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CascadeBenchmark {
+
+    @Param({"1000", "5000"})
+    public int count;
+
+    @Param({"FAN_OUT", "LAYERED"})
+    public Shape shape;
+
+    private TransactionController controller;
+    private ExecutorService executor;
+    private ServiceContainer container;
+    private ServiceRegistry registry;
+    private ServiceController root;
+
+    @Setup
+    public void setUp() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(8);
+        container = controller.createServiceContainer();
+        registry = container.newRegistry();
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        ServiceInstallBenchmark.installGraph(serviceInstaller(controller.getServiceContext(), registry, txn), shape, count);
+        commitOrFail(controller, txn);
+        root = registry.getRequiredService(serviceName(0));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        shutdownContainer(controller, executor, container);
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Benchmark
+    public void restartRoot() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        root.restart(txn);
+        commitOrFail(controller, txn);
+    }
+
+    @Benchmark
+    public void disableEnableRoot() {
+        UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        root.disable(txn);
+        commitOrFail(controller, txn);
+        txn = newUpdateTransaction(controller, executor);
+        root.enable(txn);
+        commitOrFail(controller, txn);
+    }
+
+    @Benchmark
+    public void disableEnableRegistry() {
+        UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        registry.disable(txn);
+        commitOrFail(controller, txn);
+        txn = newUpdateTransaction(controller, executor);
+        registry.enable(txn);
+        commitOrFail(controller, txn);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.commitOrFail;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.install;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceName;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.shutdownContainer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the steady state cost of stopping and starting again {@link #COUNT} independent services, normalized per
+ * service. Run it with {@code -prof gc}: {@code gc.alloc.rate.norm} is then the number of bytes allocated per service
+ * stop and start, which is what the task dispatch path must not add to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class DispatchAllocationBenchmark {
+
+    static final int COUNT = 1000;
+
+    private TransactionController controller;
+    private ExecutorService executor;
+    private ServiceContainer container;
+    private ServiceRegistry registry;
+
+    @Setup
+    public void setUp() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(8);
+        container = controller.createServiceContainer();
+        registry = container.newRegistry();
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        for (int i = 0; i < COUNT; i++) {
+            install(controller.getServiceContext(), registry, txn, serviceName(i));
+        }
+        commitOrFail(controller, txn);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        shutdownContainer(controller, executor, container);
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void stopStartServices() {
+        UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        registry.disable(txn);
+        commitOrFail(controller, txn);
+        txn = newUpdateTransaction(controller, executor);
+        registry.enable(txn);
+        commitOrFail(controller, txn);
+    }
+}
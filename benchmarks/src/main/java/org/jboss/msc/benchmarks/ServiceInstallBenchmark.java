@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.batchInstaller;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.commitOrFail;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceInstaller;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceName;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.shutdownContainer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.benchmarks.BenchmarkSupport.ExecutorType;
+import org.jboss.msc.benchmarks.BenchmarkSupport.Installer;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures installing and starting {@code count} services in a single update transaction, the way a server boots.
+ * Each invocation works on a fresh container so the registry never grows across invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class ServiceInstallBenchmark {
+
+    /**
+     * The shape of the dependency graph being installed.
+     */
+    public enum Shape {
+        /** No dependencies at all. */
+        INDEPENDENT,
+        /** Every service depends on a single root service. */
+        FAN_OUT,
+        /** A single service depends on every other service. */
+        FAN_IN,
+        /** Services depend on the previously installed one, forming chains of {@link #CHAIN_LENGTH} services. */
+        CHAINS,
+        /**
+         * Services are arranged in {@link #LAYERS} layers, each service depending on {@link #LAYER_FAN_IN} services of
+         * the previous layer.
+         */
+        LAYERED,
+    }
+
+    static final int CHAIN_LENGTH = 100;
+    static final int LAYERS = 20;
+    static final int LAYER_FAN_IN = 4;
+
+    @Param({"1000", "5000"})
+    public int count;
+
+    @Param({"INDEPENDENT", "FAN_OUT", "FAN_IN", "CHAINS", "LAYERED"})
+    public Shape shape;
+
+    @Param({"THREAD_POOL", "WORK_STEALING"})
+    public ExecutorType executorType;
+
+    private TransactionController controller;
+    private ExecutorService executor;
+    private ServiceContainer container;
+    private ServiceRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(executorType, 8);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws InterruptedException {
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        container = controller.createServiceContainer();
+        registry = container.newRegistry();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        shutdownContainer(controller, executor, container);
+    }
+
+    @Benchmark
+    public void installAndStart() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        installGraph(serviceInstaller(controller.getServiceContext(), registry, txn), shape, count);
+        commitOrFail(controller, txn);
+    }
+
+    @Benchmark
+    public void installAndStartBatch() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        installGraph(batchInstaller(controller.getServiceContext(), registry, txn), shape, count);
+        commitOrFail(controller, txn);
+    }
+
+    static void installGraph(final Installer installer, final Shape shape, final int count) {
+        switch (shape) {
+            case INDEPENDENT: {
+                for (int i = 0; i < count; i++) {
+                    installer.install(serviceName(i));
+                }
+                break;
+            }
+            case FAN_OUT: {
+                final ServiceName root = serviceName(0);
+                installer.install(root);
+                for (int i = 1; i < count; i++) {
+                    installer.install(serviceName(i), root);
+                }
+                break;
+            }
+            case FAN_IN: {
+                final ServiceName[] leaves = new ServiceName[count - 1];
+                for (int i = 1; i < count; i++) {
+                    leaves[i - 1] = serviceName(i);
+                    installer.install(leaves[i - 1]);
+                }
+                installer.install(serviceName(0), leaves);
+                break;
+            }
+            case CHAINS: {
+                for (int i = 0; i < count; i++) {
+                    if (i % CHAIN_LENGTH == 0) {
+                        installer.install(serviceName(i));
+                    } else {
+                        installer.install(serviceName(i), serviceName(i - 1));
+                    }
+                }
+                break;
+            }
+            case LAYERED: {
+                final int width = Math.max(LAYER_FAN_IN, count / LAYERS);
+                final ServiceName[] dependencies = new ServiceName[LAYER_FAN_IN];
+                for (int i = 0; i < count; i++) {
+                    if (i < width) {
+                        installer.install(serviceName(i));
+                    } else {
+                        final int previousLayer = (i / width - 1) * width;
+                        for (int j = 0; j < LAYER_FAN_IN; j++) {
+                            dependencies[j] = serviceName(previousLayer + (i + j) % width);
+                        }
+                        installer.install(serviceName(i), dependencies);
+                    }
+                }
+                break;
+            }
+            default: throw new IllegalStateException();
+        }
+        installer.done();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.commitOrFail;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.serviceInstaller;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.shutdownContainer;
+import static org.jboss.msc.benchmarks.ServiceInstallBenchmark.installGraph;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.benchmarks.ServiceInstallBenchmark.Shape;
+import org.jboss.msc.service.ServiceContainer;
+import org.jboss.msc.service.ServiceRegistry;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures what the tasks of a boot sized transaction cost in heap: {@link #COUNT} services are installed and started
+ * in a single update transaction, then removed again, normalized per service. Run it with {@code -prof gc}:
+ * {@code gc.alloc.rate.norm} is then the number of bytes allocated per service over its whole lifecycle, task
+ * controllers included. Every task of the boot transaction stays reachable until it commits, so this also bounds the
+ * heap the transaction holds on to. Tasks without dependents or children, the common case, must not allocate anything
+ * beyond their controller and its dispatch object, which is what {@link Shape#INDEPENDENT} shows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(1)
+public class TaskFootprintBenchmark {
+
+    static final int COUNT = 10000;
+
+    @Param({"INDEPENDENT", "FAN_OUT", "CHAINS"})
+    public Shape shape;
+
+    private TransactionController controller;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(8);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public void bootAndShutdown() {
+        final ServiceContainer container = controller.createServiceContainer();
+        final ServiceRegistry registry = container.newRegistry();
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        installGraph(serviceInstaller(controller.getServiceContext(), registry, txn), shape, COUNT);
+        commitOrFail(controller, txn);
+        shutdownContainer(controller, executor, container);
+    }
+}
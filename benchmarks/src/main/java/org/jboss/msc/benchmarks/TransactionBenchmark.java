@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.benchmarks;
+
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newExecutor;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newReadTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.newUpdateTransaction;
+import static org.jboss.msc.benchmarks.BenchmarkSupport.prepareAndCommit;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.txn.ReadTransaction;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the bare transaction lifecycle: {@code createXXXTransaction() -> prepare() -> commit()} with no work
+ * attached, so that admission, task bookkeeping and listener dispatch costs are isolated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TransactionBenchmark {
+
+    private TransactionController controller;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        controller = TransactionController.createInstance();
+        executor = newExecutor(8);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        BenchmarkSupport.shutdown(executor);
+    }
+
+    @Benchmark
+    public boolean updateTransaction() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        return prepareAndCommit(controller, txn);
+    }
+
+    @Benchmark
+    public boolean readTransaction() {
+        final ReadTransaction txn = newReadTransaction(controller, executor);
+        return prepareAndCommit(controller, txn);
+    }
+
+    /**
+     * Several threads competing for read transactions, which are allowed to run concurrently.
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean concurrentReadTransactions() {
+        final ReadTransaction txn = newReadTransaction(controller, executor);
+        return prepareAndCommit(controller, txn);
+    }
+
+    /**
+     * Several threads competing for update transactions, which are serialized by the controller.
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean concurrentUpdateTransactions() {
+        final UpdateTransaction txn = newUpdateTransaction(controller, executor);
+        return prepareAndCommit(controller, txn);
+    }
+}
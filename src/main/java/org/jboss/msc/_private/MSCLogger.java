@@ -31,6 +31,7 @@ import org.jboss.msc.txn.InvalidTransactionStateException;
 import static org.jboss.logging.Logger.Level.ERROR;
 import static org.jboss.logging.Logger.Level.FATAL;
 import static org.jboss.logging.Logger.Level.INFO;
+import static org.jboss.logging.Logger.Level.WARN;
 
 /**
  * MSC2 logging utilities.
@@ -111,6 +112,13 @@ public interface MSCLogger {
     @Message(id = 17, value = "Transaction create completion listener failed")
     void transactionCreationCompletionListenerFailed(@Cause Throwable cause);
 
+    @Message(id = 19, value = "Service %s did not complete its %s within %d milliseconds")
+    String lifecycleTimedOut(ServiceName serviceName, String lifecycle, long timeout);
+
+    @LogMessage(level = WARN)
+    @Message(id = 20, value = "Service %s completed its %s after it had timed out, completion is ignored")
+    void lifecycleCompletedAfterTimeout(ServiceName serviceName, String lifecycle);
+
     // jump to 100...
 
     @Message(id = 101, value = "Parameter %s is null")
@@ -197,6 +205,21 @@ public interface MSCLogger {
     @Message(id = 128, value = "Cannot restart unprepared transaction")
     InvalidTransactionStateException cannotRestartUnpreparedTxn();
 
+    @Message(id = 129, value = "ServiceBatch.install() has already been called")
+    IllegalStateException cannotCallBatchInstallTwice();
+
+    @Message(id = 130, value = "Admission policy is already used by another transaction controller")
+    IllegalArgumentException admissionPolicyInUse();
+
+    @Message(id = 131, value = "Notification fan-out threshold must not be negative: %d")
+    IllegalArgumentException illegalFanOutThreshold(int threshold);
+
+    @Message(id = 132, value = "Timeout must not be negative: %d")
+    IllegalArgumentException illegalTimeout(long timeout);
+
+    @Message(id = 133, value = "Virtual threads require Java 21 or later")
+    UnsupportedOperationException virtualThreadsNotSupported();
+
     /*
      * Location nesting types.
      */
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.service;
+
+import java.util.List;
+
+/**
+ * A batch of services that are installed together into the same registry.
+ * <p>
+ * Each service is configured through the builder returned by one of the {@code addService} methods. Once all services
+ * are configured, {@link #install()} installs them in one go: their names are resolved in a single pass, the whole batch
+ * is checked for dependency cycles at once, and a single installation task is created for all of them. This makes
+ * installing a large number of services considerably cheaper than installing each one of them on its own.
+ * <p>
+ * Builders obtained from a batch can still be {@link ServiceBuilder#install() installed} on their own, in which case
+ * they are skipped when the batch is installed.
+ *
+ * @see ServiceContext#addServices(ServiceRegistry, org.jboss.msc.txn.UpdateTransaction)
+ */
+public interface ServiceBatch {
+
+    /**
+     * Gets a builder which can be used to add a service to this batch.
+     *
+     * @param valueType the type of the service value to be added
+     * @param name      the service name
+     * @return the builder for the service
+     * @throws java.lang.IllegalArgumentException if any method parameter is <code>null</code>
+     * @throws IllegalStateException if {@link #install()} has been called.
+     */
+    <T> ServiceBuilder<T> addService(Class<T> valueType, ServiceName name) throws IllegalArgumentException, IllegalStateException;
+
+    /**
+     * Gets a builder which can be used to add a service to this batch.
+     *
+     * @param name the service name
+     * @return the builder for the service
+     * @throws java.lang.IllegalArgumentException if {@code name} is <code>null</code>
+     * @throws IllegalStateException if {@link #install()} has been called.
+     */
+    ServiceBuilder<Void> addService(ServiceName name) throws IllegalArgumentException, IllegalStateException;
+
+    /**
+     * Initiates installation of all services in this batch. If installation fails, none of the services is installed.
+     *
+     * @return the controllers for the installed services, in the order they were added to this batch
+     * @throws IllegalStateException if this method is called more than once
+     * @throws DuplicateServiceException if installation collides with some already existing service, or if two services
+     * in this batch share a name
+     * @throws CircularDependencyException if dependencies cycle is detected
+     */
+    List<ServiceController> install() throws IllegalStateException, DuplicateServiceException, CircularDependencyException;
+
+}
@@ -18,7 +18,7 @@
 
 package org.jboss.msc.service;
 
-
+import java.util.concurrent.TimeUnit;
 
 /**
  * A service builder.
@@ -50,6 +50,19 @@ public interface ServiceBuilder<T> {
      */
     ServiceBuilder<T> setMode(ServiceMode mode) throws IllegalStateException;
 
+    /**
+     * Sets the time the service is given to start, and to stop. A service that does not complete its start in time
+     * fails, and a service that does not complete its stop in time is considered down; an error is reported to the
+     * transaction in both cases. Overrides the service timeout of the transaction.
+     *
+     * @param timeout the timeout, or {@code 0} for the service timeout of the transaction to apply
+     * @param unit the timeout unit
+     * @return a reference to this object
+     * @throws IllegalStateException if {@link #install()} has been called.
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     */
+    ServiceBuilder<T> setTimeout(long timeout, TimeUnit unit) throws IllegalStateException, IllegalArgumentException;
+
     /**
      * Sets the service instance..
      * 
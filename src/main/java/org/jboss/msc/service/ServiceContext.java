@@ -65,6 +65,20 @@ public interface ServiceContext {
     ServiceBuilder<Void> addService(ServiceRegistry registry, ServiceName name, UpdateTransaction transaction)
     throws IllegalArgumentException, InvalidTransactionStateException;
 
+    /**
+     * Creates a batch which can be used to add several services to {@code registry} at once.
+     *
+     * @param registry    the target service registry where new services will be installed
+     * @param transaction the transaction
+     * @return the batch
+     * @throws java.lang.IllegalArgumentException if any method parameter is <code>null</code>
+     * or if transaction controller associated with <code>transaction</code>
+     * is not the same as the one associated with this service context and with <code>registry</code>.
+     * @throws org.jboss.msc.txn.InvalidTransactionStateException if transaction is not active.
+     */
+    ServiceBatch addServices(ServiceRegistry registry, UpdateTransaction transaction)
+    throws IllegalArgumentException, InvalidTransactionStateException;
+
     /**
      * Removes a service, causing this service to stop if it is {@code UP}.
      *
@@ -33,6 +33,8 @@ public interface ServiceController<T> {
 
     /**
      * Disables a service, causing this service to stop if it is {@code UP}.
+     * <p> The operation is scheduled right away. If the service was enabled earlier in the same transaction, that
+     * operation is cancelled instead, and disabling the service twice in the same transaction has no further effect.
      *
      * @param transaction the transaction
      * @throws java.lang.IllegalArgumentException if <code>transaction</code> is null
@@ -45,6 +47,8 @@ public interface ServiceController<T> {
     /**
      * Enables the service, which may start as a result, according to its {@link org.jboss.msc.service.ServiceMode mode} rules.
      * <p> Services are enabled by default.
+     * <p> The operation is scheduled right away. If the service was disabled earlier in the same transaction, that
+     * operation is cancelled instead, and enabling the service twice in the same transaction has no further effect.
      *
      * @param transaction the transaction
      * @throws java.lang.IllegalArgumentException if <code>transaction</code> is null
@@ -21,18 +21,21 @@ import java.io.IOException;
 import java.io.InvalidObjectException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Service name class.
+ * <p>
+ * Service names are interned when the {@code jboss.msc.service-name.intern} system property is set to {@code true}:
+ * the factory methods then return a canonical instance for each distinct name, so that equal names built in
+ * different places share their parent chains and are equal by identity. A name can also be interned explicitly with
+ * {@link #intern()}.
  *
  * @author John Bailey
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -46,13 +49,21 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
     private volatile String canonicalName;
     private final ServiceName parent;
     private final transient int hashCode;
+    // number of segments, this one included
+    private final transient int depth;
+    // whether this is the canonical instance; set by ServiceNameTable before it is published there
+    transient boolean interned;
+
+    // direct-mapped cache of parsed names, by string form; an entry is simply replaced on collision, and only refers
+    // weakly to its name, so that the cache does not keep interned names from being collected
+    private static final int PARSE_CACHE_SIZE = 1024;
+    private static final AtomicReferenceArray<ParsedName> parseCache = new AtomicReferenceArray<>(PARSE_CACHE_SIZE);
 
-    private static final AtomicReferenceFieldUpdater<ServiceName, String> canonicalNameUpdater = AtomicReferenceFieldUpdater.newUpdater(ServiceName.class, String.class, "canonicalName");
 
     /**
      * The root name "jboss".
      */
-    public static final ServiceName JBOSS = new ServiceName(null, "jboss");
+    public static final ServiceName JBOSS = canonical(new ServiceName(null, "jboss"));
 
     /**
      * Create a ServiceName from a series of String parts.
@@ -75,7 +86,7 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
         if (parts == null || parts.length < 1)
             throw new IllegalArgumentException("Must provide at least one name segment");
         
-        ServiceName current = parent;
+        ServiceName current = ServiceNameTable.INTERN && parent != null ? parent.intern() : parent;
         for (String part : parts) {
             if (part == null) {
                 throw new IllegalArgumentException("Name segment is null for " + current.getSimpleName());
@@ -83,16 +94,40 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
             if (part.isEmpty()) {
                 throw new IllegalArgumentException("Empty name segment is not allowed for " + current.getSimpleName());
             }
-            current = new ServiceName(current, part);
+            current = canonical(new ServiceName(current, part));
         }
         return current;
     }
 
+    private static ServiceName canonical(final ServiceName name) {
+        return ServiceNameTable.INTERN ? ServiceNameTable.intern(name) : name;
+    }
+
+    /**
+     * Returns the canonical instance of this service name. Interned names that are equal are the same instance, and
+     * the parent of an interned name is interned too.
+     * Interned names are weakly held: a canonical instance is discarded once it is no longer used.
+     *
+     * @return the canonical service name
+     */
+    public ServiceName intern() {
+        if (interned) {
+            return this;
+        }
+        final ServiceName parent = this.parent;
+        if (parent == null) {
+            return ServiceNameTable.intern(this);
+        }
+        final ServiceName canonicalParent = parent.intern();
+        return ServiceNameTable.intern(canonicalParent == parent ? this : new ServiceName(canonicalParent, name));
+    }
+
     private ServiceName(final ServiceName parent, final String name) {
         this.name = name;
         this.parent = parent;
 
         hashCode = calculateHashCode(parent, name);
+        depth = parent == null ? 1 : parent.depth + 1;
     }
 
     private static int calculateHashCode(final ServiceName parent, final String name) {
@@ -131,8 +166,18 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      * @return the length
      */
     public int length() {
-        final ServiceName parent = this.parent;
-        return parent == null ? 1 : 1 + parent.length();
+        return depth;
+    }
+
+    /**
+     * Returns the ancestor of this name that has {@code depth} segments.
+     */
+    private ServiceName ancestor(final int depth) {
+        ServiceName ancestor = this;
+        for (int i = this.depth; i > depth; i--) {
+            ancestor = ancestor.parent;
+        }
+        return ancestor;
     }
 
     /**
@@ -160,7 +205,7 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      * @return {@code true} if this service name is a parent
      */
     public boolean isParentOf(ServiceName other) {
-        return other != null && (equals(other) || isParentOf(other.parent));
+        return other != null && other.depth >= depth && equals(other.ancestor(depth));
     }
 
     /**
@@ -171,30 +216,24 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      */
     public ServiceName commonAncestorOf(ServiceName other) {
         if (other == null) return null;
-        final Deque<ServiceName> myAncestry = new ArrayDeque<>();
-        final Deque<ServiceName> otherAncestry = new ArrayDeque<>();
-        ServiceName i = this;
-        do {
-            myAncestry.addFirst(i);
-            i = i.parent;
-        } while (i != null);
-        i = other;
-        do {
-            otherAncestry.addFirst(i);
-            i = i.parent;
-        } while (i != null);
-        final Iterator<ServiceName> mi = myAncestry.iterator();
-        final Iterator<ServiceName> oi = otherAncestry.iterator();
-        // i = null;
-        while (mi.hasNext() && oi.hasNext()) {
-            final ServiceName mn = mi.next();
-            final ServiceName on = oi.next();
-            if (! mn.equals(on)) {
-                break;
+        final int depth = Math.min(this.depth, other.depth);
+        ServiceName mn = ancestor(depth);
+        ServiceName on = other.ancestor(depth);
+        // the deepest ancestor whose segments all match the other ones, up to the root
+        ServiceName result = null;
+        while (mn != null) {
+            if (mn == on) {
+                return result != null ? result : mn;
+            }
+            if (mn.name.equals(on.name)) {
+                if (result == null) result = mn;
+            } else {
+                result = null;
             }
-            i = mn;
+            mn = mn.parent;
+            on = on.parent;
         }
-        return i;
+        return result;
     }
 
     /**
@@ -217,16 +256,19 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      * @return {@code true} if they are equal, {@code false} if they are not equal or the argument is {@code null}
      */
     public boolean equals(ServiceName o) {
-        if (o == this) {
-            return true;
+        if (o == null || hashCode != o.hashCode || depth != o.depth) {
+            return o == this;
         }
-        if (o == null || hashCode != o.hashCode || ! name.equals(o.name)) {
-            return false;
+        ServiceName n = this;
+        while (n != o) {
+            if (! n.name.equals(o.name)) {
+                return false;
+            }
+            // same depth, so both parents are null at the same time
+            n = n.parent;
+            o = o.parent;
         }
-
-        final ServiceName parent = this.parent;
-        final ServiceName oparent = o.parent;
-        return parent != null && parent.equals(oparent) || oparent == null;
+        return true;
     }
 
     /**
@@ -259,12 +301,10 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
         if (name != null) {
             return name;
         }
+        // concurrent callers may compute equal names, publishing any of them is fine
         name = getCanonicalName(new StringBuilder()).toString();
-        if (canonicalNameUpdater.compareAndSet(this, null, name)) {
-            return name;
-        } else {
-            return canonicalName;
-        }
+        canonicalName = name;
+        return name;
     }
 
     /**
@@ -299,11 +339,29 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      * and must be escaped in a quoted section if they are present in the service name string.  Whitespace characters
      * are allowed only in a quoted section.
      *
+     * <p>
+     * The names parsed last are cached by their string form, so parsing the same string again is cheap.
+     *
      * @param original the string form of a service name
      * @return a {@code ServiceName} instance
      * @throws IllegalArgumentException if the original is not valid
      */
     public static ServiceName parse(String original) throws IllegalArgumentException {
+        final int h = original.hashCode() * 0x9E3779B9;
+        final int index = (h ^ h >>> 16) & PARSE_CACHE_SIZE - 1;
+        final ParsedName cached = parseCache.get(index);
+        if (cached != null && cached.string.equals(original)) {
+            final ServiceName name = cached.get();
+            if (name != null) {
+                return name;
+            }
+        }
+        final ServiceName name = doParse(original);
+        parseCache.lazySet(index, new ParsedName(original, name));
+        return name;
+    }
+
+    private static ServiceName doParse(String original) throws IllegalArgumentException {
         final int originalLength = original.length();
         final List<String> segments = new ArrayList<>();
         final StringBuilder builder = new StringBuilder();
@@ -567,46 +625,32 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
             throw new IllegalArgumentException("o is null");
         }
         if (this == o) return 0;
-        final int length1 = length();
-        final int length2 = o.length();
-        int res;
-        if (length1 == length2) {
-            return compareTo(o, length1 - 1);
-        }
-        int diff = length1 - length2;
-        if (diff > 0) {
-            ServiceName x;
-            for (x = this; diff > 0; diff--) {
-                x = x.parent;
-            }
-            res = x.compareTo(o, length2 - 1);
-            return res == 0 ? 1 : res;
-        } else {
-            return - o.compareTo(this);
-        }
-    }
-
-    private int compareTo(final ServiceName o, final int remainingLength) {
-        if (this == o) {
-            return 0;
-        } else if (remainingLength == 0) {
-            return name.compareTo(o.name);
-        } else {
-            int res = parent.compareTo(o.parent, remainingLength - 1);
-            return res == 0 ? name.compareTo(o.name) : res;
+        final int depth = Math.min(this.depth, o.depth);
+        ServiceName x = ancestor(depth);
+        ServiceName y = o.ancestor(depth);
+        // the difference closest to the root decides
+        int res = 0;
+        while (x != y) {
+            final int cmp = x.name.compareTo(y.name);
+            if (cmp != 0) res = cmp;
+            x = x.parent;
+            y = y.parent;
         }
+        if (res != 0) return res;
+        return this.depth == o.depth ? 0 : this.depth > o.depth ? 1 : -1;
     }
 
     // Serialization stuff
 
-    private static final Field hashCodeField;
+    private static final Field hashCodeField = getDeclaredField("hashCode");
+    private static final Field depthField = getDeclaredField("depth");
 
-    static {
-        hashCodeField = AccessController.doPrivileged(new PrivilegedAction<Field>() {
+    private static Field getDeclaredField(final String name) {
+        return AccessController.doPrivileged(new PrivilegedAction<Field>() {
             public Field run() {
                 final Field field;
                 try {
-                    field = ServiceName.class.getDeclaredField("hashCode");
+                    field = ServiceName.class.getDeclaredField(name);
                 } catch (Exception e) {
                     throw new IllegalStateException(e);
                 }
@@ -620,6 +664,7 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
         ois.defaultReadObject();
         try {
             hashCodeField.setInt(this, calculateHashCode(parent, name));
+            depthField.setInt(this, parent == null ? 1 : parent.depth + 1);
         } catch (IllegalAccessException e) {
             final InvalidObjectException e2 = new InvalidObjectException("Cannot set hash code field");
             e2.initCause(e);
@@ -627,6 +672,10 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
         }
     }
 
+    private Object readResolve() {
+        return ServiceNameTable.INTERN ? intern() : this;
+    }
+
     /**
      * Convert this service name into an array of strings containing the segments of the name.  If this array
      * is passed into {@link #of(String...)} it will yield a {@code ServiceName} which is equal to this one.
@@ -634,17 +683,21 @@ public final class ServiceName implements Comparable<ServiceName>, Serializable
      * @return the string array
      */
     public String[] toArray() {
-        return toArray(1);
+        final String[] result = new String[depth];
+        ServiceName n = this;
+        for (int i = depth - 1; i >= 0; i--) {
+            result[i] = n.name;
+            n = n.parent;
+        }
+        return result;
     }
 
-    private String[] toArray(final int len) {
-        final String[] result;
-        if (parent == null) {
-            result = new String[len];
-        } else {
-            result = parent.toArray(len + 1);
+    private static final class ParsedName extends WeakReference<ServiceName> {
+        private final String string;
+
+        ParsedName(final String string, final ServiceName name) {
+            super(name);
+            this.string = string;
         }
-        result[result.length - len] = name;
-        return result;
     }
 }
@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.service;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Weak intern table of {@link ServiceName service names}. The table is split in segments, selected by name hash code,
+ * each one guarded by its own lock, so that threads interning unrelated names seldom contend. Canonical names are
+ * only weakly held, and are dropped from the table once no longer referenced elsewhere.
+ */
+final class ServiceNameTable {
+
+    /**
+     * Whether {@link ServiceName#of(ServiceName, String...)} and friends return canonical names, as set by the
+     * {@code jboss.msc.service-name.intern} system property.
+     */
+    static final boolean INTERN = isInternEnabled();
+
+    private static final int SEGMENTS = 32;
+
+    private static final Segment[] segments = new Segment[SEGMENTS];
+
+    static {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * A segment of the table, mapping names to their canonical name.
+     */
+    private static final class Segment extends WeakHashMap<ServiceName, WeakReference<ServiceName>> {
+    }
+
+    private ServiceNameTable() {
+    }
+
+    /**
+     * Returns the canonical name equal to {@code name}, which becomes the canonical one if there is none yet.
+     * The parent of {@code name} must be canonical already.
+     *
+     * @param name the name
+     * @return the canonical name
+     */
+    static ServiceName intern(final ServiceName name) {
+        final int h = name.hashCode() * 0x9E3779B9;
+        final Segment segment = segments[(h ^ h >>> 16) & SEGMENTS - 1];
+        synchronized (segment) {
+            final WeakReference<ServiceName> ref = segment.get(name);
+            final ServiceName canonical = ref != null ? ref.get() : null;
+            if (canonical != null) {
+                return canonical;
+            }
+            name.interned = true;
+            segment.put(name, new WeakReference<>(name));
+            return name;
+        }
+    }
+
+    private static boolean isInternEnabled() {
+        try {
+            return Boolean.parseBoolean(System.getProperty("jboss.msc.service-name.intern"));
+        } catch (final SecurityException ignored) {
+            // not allowed to read the property, keep the default
+            return false;
+        }
+    }
+}
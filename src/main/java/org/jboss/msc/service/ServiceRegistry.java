@@ -18,6 +18,8 @@
 
 package org.jboss.msc.service;
 
+import java.util.List;
+
 import org.jboss.msc.txn.InvalidTransactionStateException;
 import org.jboss.msc.txn.UpdateTransaction;
 
@@ -47,8 +49,68 @@ public interface ServiceRegistry {
      */
     ServiceController getService(ServiceName serviceName);
 
+    /**
+     * Gets the controllers of the services whose names are {@code prefix} or start with it, that is, the services
+     * {@code prefix} {@link ServiceName#isParentOf(ServiceName) is a parent of}. The cost of this method is
+     * proportional to the number of such names, not to the number of services in the registry.
+     *
+     * @param prefix the service name prefix
+     * @return the service controllers, in no particular order
+     */
+    List<ServiceController> getServices(ServiceName prefix);
+
+    /**
+     * Disables the services whose names are {@code prefix} or start with it, causing {@code UP} services to stop.
+     * This is equivalent to {@link ServiceController#disable(UpdateTransaction) disabling} each one of them, and
+     * cancels an enable operation requested earlier on any of them in the same transaction, but the services that
+     * need a new task share a single one no matter how many there are.
+     *
+     * @param prefix the service name prefix
+     * @param transaction the transaction
+     * @throws java.lang.IllegalArgumentException if <code>prefix</code> or <code>transaction</code> is null
+     * or if transaction controller associated with <code>transaction</code>
+     * is not the same as the one associated with this service registry.
+     * @throws org.jboss.msc.txn.InvalidTransactionStateException if transaction is not active.
+     * @throws java.lang.IllegalStateException if registry have been removed.
+     */
+    void disableServices(ServiceName prefix, UpdateTransaction transaction) throws IllegalStateException, IllegalArgumentException, InvalidTransactionStateException;
+
+    /**
+     * Enables the services whose names are {@code prefix} or start with it. As a result, they may start, depending on
+     * their {@link org.jboss.msc.service.ServiceMode mode} rules. This is equivalent to
+     * {@link ServiceController#enable(UpdateTransaction) enabling} each one of them, and cancels a disable operation
+     * requested earlier on any of them in the same transaction, but the services that need a new task share a single
+     * one no matter how many there are.
+     *
+     * @param prefix the service name prefix
+     * @param transaction the transaction
+     * @throws java.lang.IllegalArgumentException if <code>prefix</code> or <code>transaction</code> is null
+     * or if transaction controller associated with <code>transaction</code>
+     * is not the same as the one associated with this service registry.
+     * @throws org.jboss.msc.txn.InvalidTransactionStateException if transaction is not active.
+     * @throws java.lang.IllegalStateException if registry have been removed.
+     */
+    void enableServices(ServiceName prefix, UpdateTransaction transaction) throws IllegalStateException, IllegalArgumentException, InvalidTransactionStateException;
+
+    /**
+     * Removes the services whose names are {@code prefix} or start with it. This is equivalent to
+     * {@link ServiceController#remove(UpdateTransaction) removing} each one of them, but the transaction is only
+     * validated once, the services are found without going through the whole registry, and a single task removes
+     * them all once they are stopped.
+     *
+     * @param prefix the service name prefix
+     * @param transaction the transaction
+     * @throws java.lang.IllegalArgumentException if <code>prefix</code> or <code>transaction</code> is null
+     * or if transaction controller associated with <code>transaction</code>
+     * is not the same as the one associated with this service registry.
+     * @throws org.jboss.msc.txn.InvalidTransactionStateException if transaction is not active.
+     */
+    void removeServices(ServiceName prefix, UpdateTransaction transaction) throws IllegalArgumentException, InvalidTransactionStateException;
+
     /**
      * Disables this registry and all its services, causing {@code UP} services to stop.
+     * <p> As with {@link ServiceController#disable(UpdateTransaction)}, the operation is scheduled right away, and
+     * cancels an enable operation requested earlier on this registry in the same transaction.
      *
      * @param transaction the transaction
      * @throws java.lang.IllegalArgumentException if <code>transaction</code> is null
@@ -63,6 +125,8 @@ public interface ServiceRegistry {
      * Enables this registry. As a result, its services may start, depending on their
      * {@link org.jboss.msc.service.ServiceMode mode} rules.
      * <p> Registries are enabled by default.
+     * <p> As with {@link ServiceController#enable(UpdateTransaction)}, the operation is scheduled right away, and
+     * cancels a disable operation requested earlier on this registry in the same transaction.
      *
      * @param transaction the transaction
      * @throws java.lang.IllegalArgumentException if <code>transaction</code> is null
@@ -33,6 +33,16 @@ public interface StartContext<T> extends WorkContext<T> {
      */
     void fail();
 
+    /**
+     * Declares that this service start completes asynchronously. The service is expected to return from
+     * {@link Service#start(StartContext) start} right after calling this method, thus releasing the executor thread,
+     * and to call {@link #complete(Object) complete} or {@link #fail() fail} later on, from any thread, for instance
+     * from an I/O callback. Once this method is called, completions coming from threads other than the one that
+     * called {@code start} return immediately: the resulting service transitions are carried out by the transaction
+     * executor instead of by the completing thread.
+     */
+    void asynchronous();
+
     /**
      * Start installation of a child service into {@code registry}.
      *
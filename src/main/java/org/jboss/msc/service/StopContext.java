@@ -27,4 +27,14 @@ import org.jboss.msc.txn.WorkContext;
  */
 public interface StopContext extends WorkContext<Void> {
 
+    /**
+     * Declares that this service stop completes asynchronously. The service is expected to return from
+     * {@link Service#stop(StopContext) stop} right after calling this method, thus releasing the executor thread,
+     * and to call {@link #complete() complete} later on, from any thread, for instance from an I/O callback. Once
+     * this method is called, completions coming from threads other than the one that called {@code stop} return
+     * immediately: the resulting service transitions are carried out by the transaction executor instead of by the
+     * completing thread.
+     */
+    void asynchronous();
+
 }
@@ -22,11 +22,15 @@ import org.jboss.msc._private.MSCLogger;
 import org.jboss.msc._private.Version;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static java.lang.Thread.holdsLock;
 
@@ -66,6 +70,7 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
     private static final int T_COMMITTING_to_COMMITTED = 3;
     final TransactionController txnController;
     final Executor taskExecutor;
+    private final ForkJoinPool forkJoinPool;
     final Problem.Severity maxSeverity;
     private final long startTime = System.nanoTime();
     private final Queue<TaskControllerImpl<?>> topLevelTasks = new ConcurrentLinkedQueue<>();
@@ -95,21 +100,43 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
             return new TaskBuilderImpl<>(wrappingTxn, topParent, task);
         }
     };
+    private long prepareTime;
+    private long commitTime;
     private long endTime;
     private int state;
     private int uncancelledChildren;
-    private int unexecutedChildren;
-    private int unterminatedChildren;
+    private volatile int unexecutedChildren;
+    private volatile int unterminatedChildren;
+    private volatile int executedTasks;
+    private volatile int rolledBackTasks;
+    // whether executed and rolled back tasks are counted, fixed for the whole lifetime of this transaction
+    private final boolean taskCountsRecorded;
+    // whether the timings of service starts and stops are recorded, fixed for the whole lifetime of this transaction
+    final boolean serviceTimingRecorded;
+    // whether the executor queueing delay of tasks is recorded, fixed for the whole lifetime of this transaction
+    final boolean executorDelayRecorded;
     private Listener<? super PrepareResult<? extends Transaction>> prepareListener;
     private Listener<? super CommitResult<? extends Transaction>> commitListener;
+    // nanoseconds services are given to start or stop, 0 if they may take as long as they need
+    private volatile long serviceTimeout;
     private List<PrepareCompletionListener> prepareCompletionListeners = new ArrayList<>(0);
     private List<TerminateCompletionListener> terminateCompletionListeners = new ArrayList<>(0);
     private volatile Transaction wrappingTxn;
 
+    private static final AtomicIntegerFieldUpdater<AbstractTransaction> unexecutedChildrenUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractTransaction.class, "unexecutedChildren");
+    private static final AtomicIntegerFieldUpdater<AbstractTransaction> unterminatedChildrenUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractTransaction.class, "unterminatedChildren");
+    private static final AtomicIntegerFieldUpdater<AbstractTransaction> executedTasksUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractTransaction.class, "executedTasks");
+    private static final AtomicIntegerFieldUpdater<AbstractTransaction> rolledBackTasksUpdater = AtomicIntegerFieldUpdater.newUpdater(AbstractTransaction.class, "rolledBackTasks");
+
     AbstractTransaction(final TransactionController txnController, final Executor taskExecutor, final Problem.Severity maxSeverity) {
         this.txnController = txnController;
         this.taskExecutor = taskExecutor;
         this.maxSeverity = maxSeverity;
+        forkJoinPool = taskExecutor instanceof ForkJoinPool ? (ForkJoinPool) taskExecutor : null;
+        taskCountsRecorded = txnController.metrics.isTaskCountsRecorded();
+        serviceTimingRecorded = txnController.isServiceTimingRecorded();
+        executorDelayRecorded = txnController.metrics.isExecutorDelayRecorded();
+        txnController.metrics.transactionCreated();
     }
 
     void setWrappingTransaction(final Transaction wrappingTxn) {
@@ -166,6 +193,30 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
         return taskExecutor;
     }
 
+    final long getServiceTimeout() {
+        return serviceTimeout;
+    }
+
+    final void setServiceTimeout(final long serviceTimeout) {
+        this.serviceTimeout = serviceTimeout;
+    }
+
+    /**
+     * Hands {@code command} over to the task executor. If the executor is a {@link ForkJoinPool} and the calling
+     * thread is one of its workers, the command is forked to that worker's own deque instead of being submitted.
+     * The worker then picks up the work it just made runnable as soon as it is done with the current task, while
+     * the command stays available for stealing by idle workers.
+     *
+     * @param command the command to run
+     */
+    final void dispatch(final Runnable command) {
+        if (forkJoinPool != null && ForkJoinTask.getPool() == forkJoinPool) {
+            ForkJoinTask.adapt(command).fork();
+        } else {
+            taskExecutor.execute(command);
+        }
+    }
+
     public final ProblemReport getReport() {
         return report;
     }
@@ -221,6 +272,7 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
             switch (t) {
                 case T_NONE: return state;
                 case T_ACTIVE_to_PREPARED: {
+                    prepareTime = System.nanoTime();
                     state = newState(STATE_PREPARED, state | FLAG_DO_PREPARE_LISTENER);
                     continue;
                 }
@@ -229,6 +281,7 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
                     continue;
                 }
                 case T_COMMITTING_to_COMMITTED: {
+                    endTime = System.nanoTime();
                     state = newState(STATE_COMMITTED, state | FLAG_DO_COMMIT_LISTENER | FLAG_CLEAN_UP);
                     continue;
                 }
@@ -245,6 +298,10 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
             }
         }
         if (Bits.allAreSet(state, FLAG_CLEAN_UP)) {
+            txnController.metrics.transactionTerminated(reportIsCommittable(), startTime, prepareTime, commitTime, endTime);
+            if (taskCountsRecorded) {
+                txnController.metrics.tasksCounted(executedTasks, rolledBackTasks);
+            }
             txnController.unregister();
         }
         if (userThread) {
@@ -265,7 +322,7 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
 
     private void safeExecute(final Runnable command) {
         try {
-            taskExecutor.execute(command);
+            dispatch(command);
         } catch (Throwable t) {
             MSCLogger.ROOT.runnableExecuteFailed(t, command);
         }
@@ -318,6 +375,7 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
                 throw MSCLogger.TXN.cannotCommitCommittedTxn();
             }
             state |= FLAG_COMMIT_REQ;
+            commitTime = System.nanoTime();
             commitListener = completionListener;
             state = transition(state);
             this.state = state & PERSISTENT_STATE;
@@ -367,9 +425,10 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
 
     private void doChildExecuted(final boolean userThread) {
         assert ! holdsLock(this);
+        // every top level task reports here, only the last one can enable a transition
+        if (unexecutedChildrenUpdater.decrementAndGet(this) > 0) return;
         int state;
         synchronized (this) {
-            unexecutedChildren--;
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -380,9 +439,9 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
 
     private void doChildTerminated(final boolean userThread) {
         assert ! holdsLock(this);
+        if (unterminatedChildrenUpdater.decrementAndGet(this) > 0) return;
         int state;
         synchronized (this) {
-            unterminatedChildren--;
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -401,8 +460,8 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
             }
             if (userThread) state |= FLAG_USER_THREAD;
             topLevelTasks.add(child);
-            unexecutedChildren++;
-            unterminatedChildren++;
+            unexecutedChildrenUpdater.incrementAndGet(this);
+            unterminatedChildrenUpdater.incrementAndGet(this);
             state = transition(state);
             this.state = state & PERSISTENT_STATE;
         }
@@ -441,13 +500,13 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
         executeTasks(state);
     }
 
-    void adoptGrandchildren(final Queue<TaskControllerImpl<?>> grandchildren, final boolean userThread, final int unexecutedGreatGrandchildren, final int unterminatedGreatGrandchildren) {
+    void adoptGrandchildren(final TaskControllerImpl<?>[] grandchildren, final boolean userThread, final int unexecutedGreatGrandchildren, final int unterminatedGreatGrandchildren) {
         assert ! holdsLock(this);
         int state;
         synchronized (this) {
-            topLevelTasks.addAll(grandchildren);
-            unexecutedChildren += unexecutedGreatGrandchildren;
-            unterminatedChildren += unterminatedGreatGrandchildren;
+            topLevelTasks.addAll(Arrays.asList(grandchildren));
+            unexecutedChildrenUpdater.addAndGet(this, unexecutedGreatGrandchildren);
+            unterminatedChildrenUpdater.addAndGet(this, unterminatedGreatGrandchildren);
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -505,7 +564,6 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
     private void callCommitListener() {
         final Listener<? super CommitResult<? extends Transaction>> commitListener;
         synchronized (this) {
-            endTime = System.nanoTime();
             commitListener = this.commitListener;
             this.commitListener = null;
         }
@@ -541,6 +599,18 @@ abstract class AbstractTransaction extends SimpleAttachable implements Transacti
         }
     }
 
+    void taskExecuted() {
+        if (taskCountsRecorded) {
+            executedTasksUpdater.incrementAndGet(this);
+        }
+    }
+
+    void taskRolledBack() {
+        if (taskCountsRecorded) {
+            rolledBackTasksUpdater.incrementAndGet(this);
+        }
+    }
+
     final TaskFactory getTaskFactory() {
         return taskFactory;
     }
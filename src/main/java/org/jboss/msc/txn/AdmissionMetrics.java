@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wait time metrics of the transactions queued by an {@link AdmissionPolicy}. Transactions admitted right away are not
+ * accounted for.
+ */
+public final class AdmissionMetrics {
+
+    private final long readTxns;
+    private final long readWaitNanos;
+    private final long maxReadWaitNanos;
+    private final long updateTxns;
+    private final long updateWaitNanos;
+    private final long maxUpdateWaitNanos;
+
+    AdmissionMetrics(final long readTxns, final long readWaitNanos, final long maxReadWaitNanos, final long updateTxns,
+            final long updateWaitNanos, final long maxUpdateWaitNanos) {
+        this.readTxns = readTxns;
+        this.readWaitNanos = readWaitNanos;
+        this.maxReadWaitNanos = maxReadWaitNanos;
+        this.updateTxns = updateTxns;
+        this.updateWaitNanos = updateWaitNanos;
+        this.maxUpdateWaitNanos = maxUpdateWaitNanos;
+    }
+
+    /**
+     * Returns the number of read transactions that were queued before being admitted.
+     *
+     * @return the number of queued read transactions
+     */
+    public long getQueuedReadTransactions() {
+        return readTxns;
+    }
+
+    /**
+     * Returns the total time queued read transactions waited to be admitted.
+     *
+     * @param unit the time unit
+     * @return the total wait time
+     */
+    public long getTotalReadWaitTime(final TimeUnit unit) {
+        return unit.convert(readWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a queued read transaction waited to be admitted.
+     *
+     * @param unit the time unit
+     * @return the maximum wait time
+     */
+    public long getMaxReadWaitTime(final TimeUnit unit) {
+        return unit.convert(maxReadWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of update transactions that were queued before being admitted.
+     *
+     * @return the number of queued update transactions
+     */
+    public long getQueuedUpdateTransactions() {
+        return updateTxns;
+    }
+
+    /**
+     * Returns the total time queued update transactions waited to be admitted.
+     *
+     * @param unit the time unit
+     * @return the total wait time
+     */
+    public long getTotalUpdateWaitTime(final TimeUnit unit) {
+        return unit.convert(updateWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a queued update transaction waited to be admitted.
+     *
+     * @param unit the time unit
+     * @return the maximum wait time
+     */
+    public long getMaxUpdateWaitTime(final TimeUnit unit) {
+        return unit.convert(maxUpdateWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "AdmissionMetrics[queuedReads=" + readTxns + ", readWaitNanos=" + readWaitNanos + ", maxReadWaitNanos=" + maxReadWaitNanos
+                + ", queuedUpdates=" + updateTxns + ", updateWaitNanos=" + updateWaitNanos + ", maxUpdateWaitNanos=" + maxUpdateWaitNanos + "]";
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import static org.jboss.msc._private.MSCLogger.TXN;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides in which order the transactions waiting to be created are admitted by a {@link TransactionController}.
+ * <p>
+ * Transactions are only queued while an update transaction is running, or while other transactions are queued already;
+ * otherwise read transactions are admitted right away, and so are update transactions when no other transaction is
+ * running. Once the running transactions terminate, the policy selects the queued transactions to be admitted next:
+ * either a single update transaction, or any number of read transactions.
+ * <p>
+ * A policy keeps {@link #getMetrics() metrics} of how long the queued transactions had to wait, and can be used with a
+ * single {@link TransactionController#createInstance(AdmissionPolicy) transaction controller} only.
+ * <p>
+ * Only the policies created by the factory methods of this class are supported. This class cannot be extended outside
+ * of this package: its queueing methods work on the internal transaction requests of the controller, and are called
+ * while holding the controller lock.
+ */
+public abstract class AdmissionPolicy {
+
+    // the controller using this policy
+    private TransactionController owner;
+    // wait time metrics
+    private long readTxns, readWaitNanos, maxReadWaitNanos;
+    private long updateTxns, updateWaitNanos, maxUpdateWaitNanos;
+
+    // only the policies of this class are supported
+    AdmissionPolicy() {
+    }
+
+    /**
+     * Creates a policy that admits queued transactions in the order they were queued: a single update transaction, or
+     * all read transactions queued before the next update transaction. This is the default policy.
+     *
+     * @return the policy
+     */
+    public static AdmissionPolicy fifo() {
+        return new Fifo();
+    }
+
+    /**
+     * Creates a policy that admits queued update transactions, one at a time, before any queued read transaction. Read
+     * transactions are admitted, all together, only when no update transaction is queued. A steady stream of updates
+     * can therefore delay read transactions indefinitely.
+     *
+     * @return the policy
+     */
+    public static AdmissionPolicy writerPreferred() {
+        return new WriterPreferred();
+    }
+
+    /**
+     * Creates a policy that alternates between queued read and update transactions: after up to {@code maxReaders}
+     * read transactions were admitted together, a queued update transaction is admitted before any other read
+     * transaction, and the other way around. Neither kind of transaction can delay the other indefinitely.
+     *
+     * @param maxReaders the maximum number of queued read transactions admitted together
+     * @return the policy
+     * @throws IllegalArgumentException if {@code maxReaders} is not positive
+     */
+    public static AdmissionPolicy boundedReaderBatch(final int maxReaders) throws IllegalArgumentException {
+        if (maxReaders <= 0) {
+            throw TXN.methodParameterIsInvalid("maxReaders");
+        }
+        return new BoundedReaderBatch(maxReaders);
+    }
+
+    /**
+     * Creates a policy that gives each queued transaction a deadline, {@code readLatency} or {@code updateLatency}
+     * after it was queued, and admits the transaction whose deadline is the earliest first. Read transactions are
+     * admitted together with all other queued read transactions.
+     *
+     * @param readLatency   the latency targeted for read transactions
+     * @param updateLatency the latency targeted for update transactions
+     * @param unit          the latencies unit
+     * @return the policy
+     * @throws IllegalArgumentException if {@code unit} is {@code null}, or if any latency is negative
+     */
+    public static AdmissionPolicy deadline(final long readLatency, final long updateLatency, final TimeUnit unit) throws IllegalArgumentException {
+        if (unit == null) {
+            throw TXN.methodParameterIsNull("unit");
+        }
+        if (readLatency < 0) {
+            throw TXN.methodParameterIsInvalid("readLatency");
+        }
+        if (updateLatency < 0) {
+            throw TXN.methodParameterIsInvalid("updateLatency");
+        }
+        return new Deadline(unit.toNanos(readLatency), unit.toNanos(updateLatency));
+    }
+
+    /**
+     * Returns the wait time metrics of the transactions queued so far.
+     *
+     * @return the metrics
+     */
+    public final synchronized AdmissionMetrics getMetrics() {
+        return new AdmissionMetrics(readTxns, readWaitNanos, maxReadWaitNanos, updateTxns, updateWaitNanos, maxUpdateWaitNanos);
+    }
+
+    synchronized void setOwner(final TransactionController owner) throws IllegalArgumentException {
+        if (this.owner != null) {
+            throw TXN.admissionPolicyInUse();
+        }
+        this.owner = owner;
+    }
+
+    /**
+     * Queues a transaction. Callers hold the controller lock, as for all the methods below.
+     *
+     * @param entry the queued transaction
+     */
+    abstract void add(TransactionController.PendingTxnEntry entry);
+
+    /**
+     * Queues a transaction that was running already and has to be admitted before any other queued transaction of
+     * the same kind.
+     *
+     * @param entry the queued transaction
+     */
+    abstract void addFirst(TransactionController.PendingTxnEntry entry);
+
+    /**
+     * Indicates whether there are queued transactions.
+     *
+     * @return {@code true} if no transaction is queued
+     */
+    abstract boolean isEmpty();
+
+    /**
+     * Dequeues the transactions to be admitted next, i.e., a single update transaction or one or more read transactions.
+     *
+     * @param admitted the list to add the dequeued transactions to
+     */
+    abstract void select(List<TransactionController.PendingTxnEntry> admitted);
+
+    /**
+     * Dequeues and admits the transactions to be admitted next, recording their wait times.
+     *
+     * @param admitted the list to add the dequeued transactions to
+     */
+    final void admit(final List<TransactionController.PendingTxnEntry> admitted) {
+        select(admitted);
+        assert !admitted.isEmpty();
+        final long now = System.nanoTime();
+        synchronized (this) {
+            for (TransactionController.PendingTxnEntry entry : admitted) {
+                final long waitNanos = now - entry.queueTime;
+                if (entry.isUpdate()) {
+                    updateTxns++;
+                    updateWaitNanos += waitNanos;
+                    maxUpdateWaitNanos = Math.max(maxUpdateWaitNanos, waitNanos);
+                } else {
+                    readTxns++;
+                    readWaitNanos += waitNanos;
+                    maxReadWaitNanos = Math.max(maxReadWaitNanos, waitNanos);
+                }
+            }
+        }
+    }
+
+    private static final class Fifo extends AdmissionPolicy {
+        private final Deque<TransactionController.PendingTxnEntry> queue = new ArrayDeque<>();
+
+        @Override
+        void add(final TransactionController.PendingTxnEntry entry) {
+            queue.addLast(entry);
+        }
+
+        @Override
+        void addFirst(final TransactionController.PendingTxnEntry entry) {
+            queue.addFirst(entry);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return queue.isEmpty();
+        }
+
+        @Override
+        void select(final List<TransactionController.PendingTxnEntry> admitted) {
+            TransactionController.PendingTxnEntry entry = queue.removeFirst();
+            admitted.add(entry);
+            if (!entry.isUpdate()) {
+                // process remaining read-only transactions at the head
+                while ((entry = queue.peekFirst()) != null && !entry.isUpdate()) {
+                    admitted.add(queue.removeFirst());
+                }
+            }
+        }
+    }
+
+    /**
+     * Base class for policies keeping read and update transactions in separate queues.
+     */
+    private abstract static class SplitQueues extends AdmissionPolicy {
+        final Deque<TransactionController.PendingTxnEntry> reads = new ArrayDeque<>();
+        final Deque<TransactionController.PendingTxnEntry> updates = new ArrayDeque<>();
+
+        @Override
+        final void add(final TransactionController.PendingTxnEntry entry) {
+            (entry.isUpdate() ? updates : reads).addLast(entry);
+        }
+
+        @Override
+        final void addFirst(final TransactionController.PendingTxnEntry entry) {
+            (entry.isUpdate() ? updates : reads).addFirst(entry);
+        }
+
+        @Override
+        final boolean isEmpty() {
+            return reads.isEmpty() && updates.isEmpty();
+        }
+
+        final void selectReads(final List<TransactionController.PendingTxnEntry> admitted, final int max) {
+            for (int i = 0; i < max && !reads.isEmpty(); i++) {
+                admitted.add(reads.removeFirst());
+            }
+        }
+    }
+
+    private static final class WriterPreferred extends SplitQueues {
+        @Override
+        void select(final List<TransactionController.PendingTxnEntry> admitted) {
+            if (!updates.isEmpty()) {
+                admitted.add(updates.removeFirst());
+            } else {
+                selectReads(admitted, Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    private static final class BoundedReaderBatch extends SplitQueues {
+        private final int maxReaders;
+        // whether the last admitted transactions were read-only
+        private boolean readsAdmitted;
+
+        BoundedReaderBatch(final int maxReaders) {
+            this.maxReaders = maxReaders;
+        }
+
+        @Override
+        void select(final List<TransactionController.PendingTxnEntry> admitted) {
+            if (!updates.isEmpty() && (readsAdmitted || reads.isEmpty())) {
+                admitted.add(updates.removeFirst());
+                readsAdmitted = false;
+            } else {
+                selectReads(admitted, maxReaders);
+                readsAdmitted = true;
+            }
+        }
+    }
+
+    private static final class Deadline extends SplitQueues {
+        private final long readLatencyNanos;
+        private final long updateLatencyNanos;
+
+        Deadline(final long readLatencyNanos, final long updateLatencyNanos) {
+            this.readLatencyNanos = readLatencyNanos;
+            this.updateLatencyNanos = updateLatencyNanos;
+        }
+
+        @Override
+        void select(final List<TransactionController.PendingTxnEntry> admitted) {
+            final TransactionController.PendingTxnEntry read = reads.peekFirst();
+            final TransactionController.PendingTxnEntry update = updates.peekFirst();
+            if (update != null && (read == null || update.queueTime + updateLatencyNanos - (read.queueTime + readLatencyNanos) < 0)) {
+                admitted.add(updates.removeFirst());
+            } else {
+                selectReads(admitted, Integer.MAX_VALUE);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Atomic operations on the hot fields of registrations and task controllers. This variant uses field updaters, the
+ * Java 9 variant replaces it with var handles, which skip the receiver checks updaters make on every access.
+ */
+final class AtomicFields {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Registration, ServiceControllerImpl> controllerUpdater = AtomicReferenceFieldUpdater.newUpdater(Registration.class, ServiceControllerImpl.class, "controller");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<TaskControllerImpl> unexecutedDependenciesUpdater = AtomicIntegerFieldUpdater.newUpdater(TaskControllerImpl.class, "unexecutedDependencies");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<TaskControllerImpl> unterminatedDependentsUpdater = AtomicIntegerFieldUpdater.newUpdater(TaskControllerImpl.class, "unterminatedDependents");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<TaskControllerImpl> childCountsUpdater = AtomicLongFieldUpdater.newUpdater(TaskControllerImpl.class, "childCounts");
+
+    private AtomicFields() {
+    }
+
+    static boolean compareAndSetController(final Registration registration, final ServiceControllerImpl<?> expect, final ServiceControllerImpl<?> update) {
+        return controllerUpdater.compareAndSet(registration, expect, update);
+    }
+
+    static int decrementUnexecutedDependencies(final TaskControllerImpl<?> task) {
+        return unexecutedDependenciesUpdater.decrementAndGet(task);
+    }
+
+    static int incrementUnterminatedDependents(final TaskControllerImpl<?> task) {
+        return unterminatedDependentsUpdater.incrementAndGet(task);
+    }
+
+    static int decrementUnterminatedDependents(final TaskControllerImpl<?> task) {
+        return unterminatedDependentsUpdater.decrementAndGet(task);
+    }
+
+    static boolean compareAndSetChildCounts(final TaskControllerImpl<?> task, final long expect, final long update) {
+        return childCountsUpdater.compareAndSet(task, expect, update);
+    }
+
+    static long getAndAddChildCounts(final TaskControllerImpl<?> task, final long delta) {
+        return childCountsUpdater.getAndAdd(task, delta);
+    }
+
+    static long getAndSetChildCounts(final TaskControllerImpl<?> task, final long value) {
+        return childCountsUpdater.getAndSet(task, value);
+    }
+}
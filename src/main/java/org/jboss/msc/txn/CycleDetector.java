@@ -21,8 +21,12 @@ import org.jboss.msc.service.CircularDependencyException;
 import org.jboss.msc.service.ServiceName;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.jboss.msc._private.MSCLogger.SERVICE;
@@ -62,19 +66,19 @@ final class CycleDetector {
         // branches queue - we're adding new branch here every time we'll identify next branch on the path
         final Deque<Branch> branches = new ArrayDeque<>();
         // identity based set of controllers we have visited so far
-        final Set<ServiceControllerImpl> visited = new IdentityHashSet<>();
+        final Set<ServiceControllerImpl<?>> visited = new IdentityHashSet<>();
 
         // put root controller to visited set
         visited.add(rootController);
         Branch currentBranch = new Branch(rootController.dependencies.length);
-        for (final DependencyImpl dependency : rootController.dependencies) {
+        for (final DependencyImpl<?> dependency : rootController.dependencies) {
             // register edges to investigate from root
             currentBranch.stack.addFirst(dependency.getDependencyRegistration());
         }
         branches.addFirst(currentBranch);
 
         Registration dependency;
-        ServiceControllerImpl dependencyController;
+        ServiceControllerImpl<?> dependencyController;
         while (true) {
             dependency = currentBranch.stack.removeFirst();
             dependencyController = getController(dependency);
@@ -83,13 +87,13 @@ final class CycleDetector {
                 currentBranch.path.addLast(dependency.getServiceName()); // add current step to the path
                 if (visited.add(dependencyController)) {
                     // we didn't visit this controller yet, our voyage continues
-                    final DependencyImpl[] dependencies = dependencyController.dependencies;
+                    final DependencyImpl<?>[] dependencies = dependencyController.dependencies;
                     if (dependencies.length > 1) {
                         // identified new branch on current path
                         currentBranch = new Branch(dependencies.length);
                         branches.addFirst(currentBranch);
                     }
-                    for (final DependencyImpl d : dependencies) {
+                    for (final DependencyImpl<?> d : dependencies) {
                         // register edges to investigate from current controller
                         currentBranch.stack.addFirst(d.getDependencyRegistration());
                     }
@@ -111,6 +115,91 @@ final class CycleDetector {
         }
     }
 
+    /**
+     * Cycle detection step of a batch investigation.
+     */
+    private static final class Step {
+        /** Controller we stepped into. */
+        final ServiceControllerImpl<?> controller;
+        /** Name of the registration we stepped through. */
+        final ServiceName name;
+        /** Index of the next dependency of {@link #controller} to investigate. */
+        int next;
+
+        private Step(final ServiceControllerImpl<?> controller, final ServiceName name) {
+            this.controller = controller;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Detects cycles introduced by a batch of controllers. Every controller reachable from the batch is investigated
+     * at most once, no matter how many controllers of the batch depend on it, so the cost is linear in the size of
+     * the dependency graph rather than in the size of the batch times the size of the graph.
+     *
+     * @param rootControllers the batch controllers
+     * @throws CircularDependencyException if any cycle is detected, reported starting at the first controller of the
+     * cycle that was reached
+     */
+    static void execute(final ServiceControllerImpl<?>[] rootControllers) throws CircularDependencyException {
+        // controllers whose dependencies were investigated completely, they cannot lead us to a new cycle
+        final Set<ServiceControllerImpl<?>> finished = new IdentityHashSet<>();
+        // steps we walked from the current root, and the position of each of their controllers on that path
+        final List<Step> path = new ArrayList<>();
+        final Map<ServiceControllerImpl<?>, Integer> positions = new IdentityHashMap<>();
+
+        for (final ServiceControllerImpl<?> rootController : rootControllers) {
+            if (rootController.dependencies.length == 0 || finished.contains(rootController)) {
+                // nothing new to investigate from this root
+                continue;
+            }
+            positions.put(rootController, 0);
+            path.add(new Step(rootController, rootController.getPrimaryRegistration().getServiceName()));
+            while (!path.isEmpty()) {
+                final Step step = path.get(path.size() - 1);
+                final DependencyImpl<?>[] dependencies = step.controller.dependencies;
+                if (step.next == dependencies.length) {
+                    // investigation of this controller is complete, step back
+                    path.remove(path.size() - 1);
+                    positions.remove(step.controller);
+                    finished.add(step.controller);
+                    continue;
+                }
+                final Registration dependency = dependencies[step.next++].getDependencyRegistration();
+                final ServiceControllerImpl<?> dependencyController = getController(dependency);
+                if (dependencyController == null || finished.contains(dependencyController)) {
+                    // investigation path dead end
+                    continue;
+                }
+                final Integer position = positions.get(dependencyController);
+                if (position != null) {
+                    // we returned to a controller on the current path, we have the cycle!
+                    throw SERVICE.cycleDetected(dependencyController.getPrimaryRegistration().getServiceName(),
+                            getCycle(path, position, dependency.getServiceName()));
+                }
+                positions.put(dependencyController, path.size());
+                path.add(new Step(dependencyController, dependency.getServiceName()));
+            }
+        }
+    }
+
+    /**
+     * Creates batch cycle report. First and last element in the cycle are always identical.
+     * @param path steps walked so far
+     * @param position position of the cycle start on the path
+     * @param lastName the name the cycle start was reached through again
+     * @return cycle report
+     */
+    private static LinkedList<ServiceName> getCycle(final List<Step> path, final int position, final ServiceName lastName) {
+        final LinkedList<ServiceName> cycle = new LinkedList<>();
+        cycle.add(lastName);
+        for (final Step step : path.subList(position + 1, path.size())) {
+            cycle.add(step.name);
+        }
+        cycle.add(lastName);
+        return cycle;
+    }
+
     /**
      * Creates cycle report. First and last element in the cycle are always identical.
      * @param branches cycle inspection data
@@ -134,8 +223,8 @@ final class CycleDetector {
      * @param registration registration
      * @return controller or null
      */
-    private static ServiceControllerImpl getController(final Registration registration) {
-        final ServiceControllerImpl serviceController = registration.holderRef.get();
+    private static ServiceControllerImpl<?> getController(final Registration registration) {
+        final ServiceControllerImpl<?> serviceController = registration.getController();
         // ignore every service that is not down/new or that has no dependencies
         if (serviceController != null && (serviceController.getDependencies().length == 0 ||
                 serviceController.getState() > ServiceControllerImpl.STATE_DOWN)) {
@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import static org.jboss.msc.txn.Helper.getAbstractTransaction;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Propagates demand changes through the service graph, without recursion.
+ * <p>
+ * Demand changes are queued as deltas per registration. A registration whose demand count goes from zero to positive,
+ * or back to zero, changes the demand of its service, which in turn queues a delta on the registrations of the service
+ * dependencies, unless the service is active and thus already demands them. Deltas queued on the same registration
+ * are added up before being applied, so a demand and an undemand of the same registration cancel each other out and
+ * reach neither the service nor its dependencies.
+ * <p>
+ * Each update transaction keeps one pending propagation as an attachment. Demand changes made while the transaction
+ * is active are queued on it, and the first one creates a task that applies them when it executes. Changes made
+ * before that task executes are thus netted together, whichever operation of the transaction made them, while
+ * demanded services still start as soon as the task executor gets to it, long before the transaction is prepared.
+ * Changes made once the task executed are queued on a new pending propagation, with a task of its own. Demand changes
+ * made with no task factory, or once the transaction is no longer active, i.e., on rollback, are applied right away.
+ * <p>
+ * The services whose demand changed are transitioned once all deltas are applied. Services that are no longer demanded
+ * are transitioned first, in the order they were reached, i.e., dependents before their dependencies: each service is
+ * thus already stopping when its dependency stops, and stop notifications do not cascade down the whole graph on the
+ * same stack. Services that became demanded are transitioned next, in reverse order, i.e., dependencies before their
+ * dependents, as those cannot start before their dependencies anyway.
+ */
+final class DemandPropagation {
+
+    private static final AttachmentKey<PendingDemand> PENDING_DEMAND = AttachmentKey.create(new Factory<PendingDemand> () {
+
+        @Override
+        public PendingDemand create() {
+            return new PendingDemand();
+        }
+
+    });
+
+    private final Transaction transaction;
+    private final TaskFactory taskFactory;
+    // pending delta of each registration in the queue
+    private final Map<Registration, int[]> deltas = new IdentityHashMap<>();
+    private final Deque<Registration> queue = new ArrayDeque<>();
+    private final List<ServiceControllerImpl<?>> demanded = new ArrayList<>();
+    private final List<ServiceControllerImpl<?>> undemanded = new ArrayList<>();
+
+    /**
+     * Creates a demand propagation.
+     *
+     * @param transaction the active transaction
+     * @param taskFactory the task factory
+     */
+    DemandPropagation(final Transaction transaction, final TaskFactory taskFactory) {
+        this.transaction = transaction;
+        this.taskFactory = taskFactory;
+    }
+
+    /**
+     * Changes the demand on {@code registration}.
+     *
+     * @param transaction the active transaction
+     * @param taskFactory the task factory, {@code null} to apply the change right away
+     * @param registration the registration
+     * @param delta the demand change, positive to demand and negative to undemand
+     */
+    static void update(final Transaction transaction, final TaskFactory taskFactory, final Registration registration, final int delta) {
+        final PendingDemand pendingDemand = getPendingDemand(transaction, taskFactory);
+        if (pendingDemand == null) {
+            new DemandPropagation(transaction, taskFactory).add(registration, delta).run();
+            return;
+        }
+        final boolean schedule;
+        synchronized (pendingDemand) {
+            schedule = pendingDemand.propagation == null;
+            if (schedule) {
+                pendingDemand.propagation = new DemandPropagation(transaction, null);
+            }
+            pendingDemand.propagation.add(registration, delta);
+        }
+        if (schedule) {
+            taskFactory.newTask(pendingDemand).release();
+        }
+    }
+
+    /**
+     * Changes the demand on the registrations of {@code dependencies} that propagate demand.
+     *
+     * @param transaction the active transaction
+     * @param taskFactory the task factory, {@code null} to apply the change right away
+     * @param dependencies the dependencies
+     * @param delta the demand change, positive to demand and negative to undemand
+     */
+    static void update(final Transaction transaction, final TaskFactory taskFactory, final DependencyImpl<?>[] dependencies, final int delta) {
+        final PendingDemand pendingDemand = getPendingDemand(transaction, taskFactory);
+        if (pendingDemand == null) {
+            new DemandPropagation(transaction, taskFactory).add(dependencies, delta).run();
+            return;
+        }
+        final boolean schedule;
+        synchronized (pendingDemand) {
+            schedule = pendingDemand.propagation == null;
+            if (schedule) {
+                pendingDemand.propagation = new DemandPropagation(transaction, null);
+            }
+            pendingDemand.propagation.add(dependencies, delta);
+        }
+        if (schedule) {
+            taskFactory.newTask(pendingDemand).release();
+        }
+    }
+
+    private static PendingDemand getPendingDemand(final Transaction transaction, final TaskFactory taskFactory) {
+        if (taskFactory == null || !getAbstractTransaction(transaction).isActive()) {
+            return null;
+        }
+        return transaction.getAttachment(PENDING_DEMAND);
+    }
+
+    Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Queues a demand change on {@code registration}.
+     *
+     * @param registration the registration
+     * @param delta the demand change, positive to demand and negative to undemand
+     * @return this propagation
+     */
+    DemandPropagation add(final Registration registration, final int delta) {
+        final int[] pending = deltas.get(registration);
+        if (pending == null) {
+            deltas.put(registration, new int[] {delta});
+            queue.add(registration);
+        } else {
+            pending[0] += delta;
+        }
+        return this;
+    }
+
+    /**
+     * Queues a demand change on the registrations of {@code dependencies} that propagate demand.
+     *
+     * @param dependencies the dependencies
+     * @param delta the demand change, positive to demand and negative to undemand
+     * @return this propagation
+     */
+    DemandPropagation add(final DependencyImpl<?>[] dependencies, final int delta) {
+        for (DependencyImpl<?> dependency : dependencies) {
+            if (dependency.propagatesDemand()) {
+                add(dependency.getDependencyRegistration(), delta);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Records that the demand of {@code controller} changed, so that it is transitioned by {@link #run()}.
+     *
+     * @param controller the service controller
+     * @param demanded {@code true} if the service became demanded, {@code false} if it is no longer demanded
+     */
+    void demandChanged(final ServiceControllerImpl<?> controller, final boolean demanded) {
+        (demanded ? this.demanded : undemanded).add(controller);
+    }
+
+    /**
+     * Applies the queued demand changes and all the changes they result in, then transitions the services whose
+     * demand changed.
+     */
+    void run() {
+        run(taskFactory);
+    }
+
+    private void run(final TaskFactory taskFactory) {
+        Registration registration;
+        while ((registration = queue.poll()) != null) {
+            final int delta = deltas.remove(registration)[0];
+            if (delta != 0) {
+                registration.updateDemand(this, delta);
+            }
+        }
+        for (ServiceControllerImpl<?> controller : undemanded) {
+            controller.transition(transaction, taskFactory);
+        }
+        for (int i = demanded.size() - 1; i >= 0; i--) {
+            demanded.get(i).transition(transaction, taskFactory);
+        }
+    }
+
+    /**
+     * The demand changes of a transaction not applied yet, and the task that applies them.
+     */
+    private static final class PendingDemand implements Executable<Void> {
+
+        // the propagation changes are queued on until the task applying them executes, guarded by this
+        private DemandPropagation propagation;
+
+        @Override
+        public void execute(final ExecuteContext<Void> context) {
+            final DemandPropagation propagation;
+            synchronized (this) {
+                propagation = this.propagation;
+                this.propagation = null;
+            }
+            try {
+                propagation.run(context);
+            } finally {
+                context.complete();
+            }
+        }
+    }
+}
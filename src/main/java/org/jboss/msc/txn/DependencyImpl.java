@@ -58,6 +58,20 @@ class DependencyImpl<T> implements Dependency<T> {
      * The incoming dependency.
      */
     protected ServiceControllerImpl<?> dependent;
+    /**
+     * The slot of this dependency in the {@link IncomingDependencies} of its registration, or {@code -1}. Guarded by
+     * the registration lock.
+     */
+    int incomingIndex = -1;
+    /**
+     * The sequence number of the last notification of the dependency registration, see {@link #dependencyUp}.
+     * Guarded by this.
+     */
+    private int notification;
+    /**
+     * Indicates if the last notification delivered to the dependent was an up notification. Guarded by this.
+     */
+    private boolean up;
 
     /**
      * Creates a simple dependency to {@code dependencyRegistration}.
@@ -149,37 +163,49 @@ class DependencyImpl<T> implements Dependency<T> {
     }
 
     /**
-     * Demands this dependency to be satisfied.
+     * Indicates if the dependency is demanded whenever its dependent is, as opposed to always or never.
      * 
-     * @param transaction the active transaction
-     * @param taskFactory the task factory
+     * @return {@code true} if the dependent demand is propagated to this dependency
      */
-    void demand(Transaction transaction, TaskFactory taskFactory) {
-        if (propagateDemand) {
-            dependencyRegistration.addDemand(transaction, taskFactory);
-        }
+    boolean propagatesDemand() {
+        return propagateDemand;
     }
 
     /**
-     * Removes demand for this dependency to be satisfied.
+     * Resets the notification sequence when this dependency is added to the incoming dependencies of its
+     * registration. Invoked under the registration lock, by the thread holding this dependency lock.
      * 
-     * @param transaction the active transaction
-     * @param taskFactory the task factory
+     * @param notification the sequence number of the last notification this dependency is not part of
      */
-    void undemand(Transaction transaction, TaskFactory taskFactory) {
-        if (propagateDemand) {
-            dependencyRegistration.removeDemand(transaction, taskFactory);
-        }
+    void resetNotifications(int notification) {
+        assert Thread.holdsLock(this);
+        this.notification = notification;
+        this.up = false;
     }
 
     /**
      * Notifies that dependency is now {@code UP} or is scheduled to start.
+     * <p>
+     * Up and down notifications are delivered under this dependency lock, in the order of their sequence numbers:
+     * a notification older than the last delivered one is ignored, and so is a notification that does not change
+     * the state last delivered to the dependent.
      * 
      * @param transaction   the active transaction
      * @param startTask     the dependency start task
+     * @param notification  the notification sequence number
      */
-    void dependencyUp(Transaction transaction, TaskFactory taskFactory, TaskController<?> startTask) {
-        dependent.dependencySatisfied(transaction, taskFactory, startTask);
+    void dependencyUp(Transaction transaction, TaskFactory taskFactory, TaskController<?> startTask, int notification) {
+        synchronized (this) {
+            if (notification - this.notification <= 0) {
+                return;
+            }
+            this.notification = notification;
+            if (up) {
+                return;
+            }
+            up = true;
+            dependent.dependencySatisfied(transaction, taskFactory, startTask);
+        }
     }
 
     /**
@@ -187,8 +213,30 @@ class DependencyImpl<T> implements Dependency<T> {
      *  
      * @param transaction    the active transaction
      * @param taskFactory    the task factory
+     * @param notification   the notification sequence number
+     * @return the task the dependent transition depends on, if any
+     */
+    TaskController<?> dependencyDown(Transaction transaction, TaskFactory taskFactory, int notification) {
+        synchronized (this) {
+            if (notification - this.notification <= 0) {
+                return null;
+            }
+            this.notification = notification;
+            if (!up) {
+                return null;
+            }
+            up = false;
+            return dependencyUnsatisfied(transaction, taskFactory);
+        }
+    }
+
+    /**
+     * Notifies the dependent that this dependency is no longer satisfied.
+     *
+     * @param transaction    the active transaction
+     * @param taskFactory    the task factory
      */
-    TaskController<?> dependencyDown(Transaction transaction, TaskFactory taskFactory) {
+    TaskController<?> dependencyUnsatisfied(Transaction transaction, TaskFactory taskFactory) {
         return dependent.dependencyUnsatisfied(transaction, taskFactory);
     }
 
@@ -198,7 +246,7 @@ class DependencyImpl<T> implements Dependency<T> {
      * @param report report where all validation problems found will be added
      */
     void validate(final ProblemReport report) {
-        final ServiceControllerImpl<?> controller = dependencyRegistration.holderRef.get();
+        final ServiceControllerImpl<?> controller = dependencyRegistration.getController();
         if (controller == null && !hasUnrequiredFlag()) {
             report.addProblem(new Problem(Severity.ERROR, MSCLogger.SERVICE.requiredDependency(dependent.getServiceName(), dependencyRegistration.getServiceName())));
         }
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+/**
+ * A snapshot of the distribution of recorded values. Values are counted in power of two buckets, so percentiles are
+ * approximations: the value returned for a percentile is the upper bound of the bucket it falls in, and is never
+ * greater than the {@link #getMax() maximum}.
+ */
+public final class Histogram {
+
+    static final int BUCKETS = 64;
+
+    private final long[] buckets;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Histogram(final long[] buckets, final long sum, final long max) {
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        this.buckets = buckets;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * Returns the index of the bucket {@code value} is counted in. Bucket {@code 0} holds zero, and bucket {@code i}
+     * holds the values from {@code 2^(i-1)} to {@code 2^i - 1}.
+     */
+    static int bucketOf(final long value) {
+        return value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of values
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the greatest recorded value.
+     *
+     * @return the maximum, or {@code 0} if no value was recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of all recorded values.
+     *
+     * @return the mean, or {@code 0} if no value was recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the approximate median of the recorded values.
+     *
+     * @return the median
+     */
+    public long getMedian() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * Returns the approximate 90th percentile of the recorded values.
+     *
+     * @return the 90th percentile
+     */
+    public long getPercentile90() {
+        return getValueAtPercentile(90);
+    }
+
+    /**
+     * Returns the approximate 99th percentile of the recorded values.
+     *
+     * @return the 99th percentile
+     */
+    public long getPercentile99() {
+        return getValueAtPercentile(99);
+    }
+
+    /**
+     * Returns the approximate value below which {@code percentile} percent of the recorded values fall.
+     *
+     * @param percentile the percentile, from {@code 0} to {@code 100}
+     * @return the value at {@code percentile}, or {@code 0} if no value was recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, percentile)) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return i == 0 ? 0 : Math.min(max, i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[count=" + count + ", mean=" + getMean() + ", median=" + getMedian() + ", p90=" + getPercentile90()
+                + ", p99=" + getPercentile99() + ", max=" + max + "]";
+    }
+}
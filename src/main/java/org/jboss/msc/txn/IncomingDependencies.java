@@ -0,0 +1,181 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The incoming dependencies of a {@link Registration}, i.e., the dependencies of its dependent services.
+ * <p>
+ * Dependencies are appended to an array, and each dependency remembers its slot, so adding and removing one takes
+ * constant time however many dependents the registration has. A removed dependency leaves an empty slot, and the
+ * array is compacted into a new array once more than half of its slots are empty.
+ * <p>
+ * Changes and {@link #snapshot() snapshots} must be made while holding the registration lock, which is only held
+ * for that long: dependents are notified from a snapshot, after the lock is released. Iterating needs no lock at
+ * all and sees a weakly consistent view, which is enough for ordering and validation.
+ * <p>
+ * This structure is neither striped nor lock-free. An add has to read the registration state and notification
+ * sequence atomically with the append, so that the new dependency is either part of a snapshot or notified by its
+ * adder, never both. Dependents installed concurrently thus still serialize on the registration lock, nested in the
+ * lock of their own dependency, but only for a constant-time append, and never while a dependent is notified. The
+ * snapshot copy, linear in the number of dependents, is the one operation that grows with the fan-in.
+ */
+final class IncomingDependencies implements Iterable<DependencyImpl<?>> {
+
+    private static final DependencyImpl<?>[] NO_DEPENDENCIES = new DependencyImpl<?>[0];
+    // smaller arrays are only compacted when they are full
+    private static final int MIN_COMPACTED_SIZE = 8;
+
+    // replaced when grown or compacted, never shrunk in place, so that iterators can keep reading an older array
+    private volatile DependencyImpl<?>[] array = NO_DEPENDENCIES;
+    // number of used slots in array, including the empty slots of removed dependencies
+    private volatile int size;
+    private int removed;
+
+    /**
+     * Adds a dependency, if not present yet. Must be called under the registration lock.
+     *
+     * @param dependency the dependency
+     */
+    void add(final DependencyImpl<?> dependency) {
+        if (dependency.incomingIndex >= 0) {
+            return;
+        }
+        DependencyImpl<?>[] array = this.array;
+        if (size == array.length) {
+            if (removed > size >> 1) {
+                array = compact();
+            } else {
+                array = Arrays.copyOf(array, Math.max(4, size << 1));
+                this.array = array;
+            }
+        }
+        final int size = this.size;
+        array[size] = dependency;
+        dependency.incomingIndex = size;
+        this.size = size + 1;
+    }
+
+    /**
+     * Removes a dependency, if present. Must be called under the registration lock.
+     *
+     * @param dependency the dependency
+     */
+    void remove(final DependencyImpl<?> dependency) {
+        final int index = dependency.incomingIndex;
+        if (index < 0) {
+            return;
+        }
+        array[index] = null;
+        dependency.incomingIndex = -1;
+        if (++removed > size >> 1 && size >= MIN_COMPACTED_SIZE) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns a copy of the current dependencies. Must be called under the registration lock.
+     *
+     * @return the dependencies
+     */
+    DependencyImpl<?>[] snapshot() {
+        final int size = this.size;
+        if (size == removed) {
+            return NO_DEPENDENCIES;
+        }
+        if (removed == 0) {
+            return Arrays.copyOf(array, size);
+        }
+        final DependencyImpl<?>[] snapshot = new DependencyImpl<?>[size - removed];
+        int i = 0;
+        for (int j = 0; j < size; j++) {
+            if (array[j] != null) {
+                snapshot[i++] = array[j];
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Moves the dependencies to the start of a new array, leaving room for as many more. Slots of the new array are
+     * written before it is published, and the size is only updated after, so iterators never go past its end.
+     *
+     * @return the new array
+     */
+    private DependencyImpl<?>[] compact() {
+        final DependencyImpl<?>[] array = this.array;
+        final int size = this.size;
+        final DependencyImpl<?>[] compacted = new DependencyImpl<?>[Math.max(4, (size - removed) << 1)];
+        int i = 0;
+        for (int j = 0; j < size; j++) {
+            if (array[j] != null) {
+                array[j].incomingIndex = i;
+                compacted[i++] = array[j];
+            }
+        }
+        this.array = compacted;
+        this.size = i;
+        removed = 0;
+        return compacted;
+    }
+
+    @Override
+    public Iterator<DependencyImpl<?>> iterator() {
+        // read size first, it never exceeds the length of the array published before it
+        final int size = this.size;
+        final DependencyImpl<?>[] array = this.array;
+        final int end = Math.min(size, array.length);
+        return new Iterator<DependencyImpl<?>>() {
+            private int index;
+            private DependencyImpl<?> next = fetch();
+
+            private DependencyImpl<?> fetch() {
+                while (index < end) {
+                    final DependencyImpl<?> dependency = array[index++];
+                    if (dependency != null) {
+                        return dependency;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public DependencyImpl<?> next() {
+                final DependencyImpl<?> next = this.next;
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                this.next = fetch();
+                return next;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import org.jboss.msc.service.CircularDependencyException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Incremental cycle detection helper, one per transaction controller.
+ * <p>
+ * Every registration carries an {@link Registration#order order} label, and labels are kept such that each installed
+ * service is labeled higher than all its dependencies. Installing a service only has to raise the labels of its
+ * registrations above those of its dependencies, and then the labels of whatever transitively depends on it. When
+ * dependencies are installed before their dependents, as they usually are, nothing has to be raised at all, and the
+ * check costs no more than a look at the new service's dependencies.
+ * <p>
+ * A cycle exists if and only if raising the labels leads back to the service being installed. In that case the
+ * {@link CycleDetector depth-first detector} is run to create the cycle report. That detector ignores services that
+ * are already up, so it may find no cycle at all. The installation then proceeds, but no labels can be consistent with
+ * that cycle, so the service is left unordered: its labels are not raised, and only the edges to its own dependencies
+ * may break the label order. A later cycle can only be missed through such an edge, so it has to go from the service
+ * being installed down to an unordered service, and back up to it through an installed dependent. Going down along
+ * ordered services only meets lower labels, so this is impossible unless some dependency of the service being
+ * installed is labeled at least as high as the lowest unordered label. Only installations passing both tests are
+ * checked by the depth-first detector as well.
+ */
+final class IncrementalCycleDetector {
+
+    /** The number of installed services whose labels could not be ordered after their dependencies. */
+    private int unordered;
+    /** The lowest label of the registrations of installed unordered services, only lowered while any is installed. */
+    private int lowestUnorderedLabel = Integer.MAX_VALUE;
+    /** Labels raised so far, only applied once we know there is no cycle; reused by every check. */
+    private final Map<Registration, Integer> raised = new IdentityHashMap<>();
+    /** Registrations whose dependents are still to be raised; reused by every check. */
+    private final Deque<Registration> pending = new ArrayDeque<>();
+
+    /**
+     * Checks whether the installation of {@code controller} creates a dependency cycle.
+     *
+     * @param controller the controller being installed, already bound with its registrations
+     * @throws CircularDependencyException if a cycle is detected
+     */
+    synchronized void execute(final ServiceControllerImpl<?> controller) throws CircularDependencyException {
+        final int floor = order(controller);
+        if (floor < 0) {
+            CycleDetector.execute(controller);
+            markUnordered(controller);
+        } else if (mayCloseUnorderedCycle(controller, floor)) {
+            CycleDetector.execute(controller);
+        }
+    }
+
+    /**
+     * Checks whether the installation of a batch of {@code controllers} creates a dependency cycle.
+     *
+     * @param controllers the controllers being installed, already bound with their registrations
+     * @throws CircularDependencyException if a cycle is detected
+     */
+    synchronized void execute(final ServiceControllerImpl<?>[] controllers) throws CircularDependencyException {
+        boolean check = false;
+        for (final ServiceControllerImpl<?> controller : controllers) {
+            final int floor = order(controller);
+            check |= floor < 0 || mayCloseUnorderedCycle(controller, floor);
+        }
+        if (!check) {
+            return;
+        }
+        CycleDetector.execute(controllers);
+        for (final ServiceControllerImpl<?> controller : controllers) {
+            if (!controller.ordered) {
+                markUnordered(controller);
+            }
+        }
+    }
+
+    /**
+     * Forgets {@code controller} if it was left unordered, once it is no longer installed.
+     *
+     * @param controller the controller being removed
+     */
+    synchronized void remove(final ServiceControllerImpl<?> controller) {
+        if (controller.unordered) {
+            controller.unordered = false;
+            if (--unordered == 0) {
+                lowestUnorderedLabel = Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    private void markUnordered(final ServiceControllerImpl<?> controller) {
+        controller.unordered = true;
+        unordered++;
+        lowestUnorderedLabel = Math.min(lowestUnorderedLabel, controller.getPrimaryRegistration().order);
+        for (final Registration alias : controller.aliasRegistrations) {
+            lowestUnorderedLabel = Math.min(lowestUnorderedLabel, alias.order);
+        }
+    }
+
+    /**
+     * Tells whether an ordered {@code controller} may close a cycle the labels cannot see, going through an
+     * unordered service.
+     *
+     * @param controller the controller being installed, already ordered
+     * @param floor the label its registrations were raised to
+     * @return {@code true} if the depth-first detector has to be run
+     */
+    private boolean mayCloseUnorderedCycle(final ServiceControllerImpl<?> controller, final int floor) {
+        if (unordered == 0 || floor <= lowestUnorderedLabel) {
+            // no dependency is labeled high enough to lead down to an unordered service
+            return false;
+        }
+        if (hasInstalledDependents(controller.getPrimaryRegistration())) {
+            return true;
+        }
+        for (final Registration alias : controller.aliasRegistrations) {
+            if (hasInstalledDependents(alias)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasInstalledDependents(final Registration registration) {
+        for (final DependencyImpl<?> incomingDependency : registration.incomingDependencies) {
+            final ServiceControllerImpl<?> dependent = incomingDependency.dependent;
+            if (dependent != null && dependent.getPrimaryRegistration().getController() == dependent) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Raises the labels required by the dependencies of {@code controller}.
+     *
+     * @param controller the controller being installed
+     * @return the label the registrations of {@code controller} were raised to, or {@code -1} if a cycle was found,
+     * in which case no label was modified
+     */
+    private int order(final ServiceControllerImpl<?> controller) {
+        int floor = 0;
+        for (final DependencyImpl<?> dependency : controller.dependencies) {
+            floor = Math.max(floor, dependency.getDependencyRegistration().order + 1);
+        }
+        boolean raise = controller.getPrimaryRegistration().order < floor;
+        for (final Registration alias : controller.aliasRegistrations) {
+            raise |= alias.order < floor;
+        }
+        if (raise) {
+            try {
+                raise(controller.getPrimaryRegistration(), floor);
+                for (final Registration alias : controller.aliasRegistrations) {
+                    raise(alias, floor);
+                }
+                Registration registration;
+                while ((registration = pending.poll()) != null) {
+                    final int label = raised.get(registration);
+                    for (final DependencyImpl<?> incomingDependency : registration.incomingDependencies) {
+                        final ServiceControllerImpl<?> dependent = incomingDependency.dependent;
+                        if (dependent == controller) {
+                            // we returned to the controller being installed, we have the cycle!
+                            return -1;
+                        }
+                        if (dependent == null || !dependent.ordered || dependent.getPrimaryRegistration().getController() != dependent) {
+                            // dependent is not installed, or it is installing and its dependencies have not been ordered yet
+                            continue;
+                        }
+                        raise(dependent.getPrimaryRegistration(), label + 1);
+                        for (final Registration alias : dependent.aliasRegistrations) {
+                            raise(alias, label + 1);
+                        }
+                    }
+                }
+                for (final Map.Entry<Registration, Integer> entry : raised.entrySet()) {
+                    entry.getKey().order = entry.getValue();
+                }
+            } finally {
+                raised.clear();
+                pending.clear();
+            }
+        }
+        controller.ordered = true;
+        return floor;
+    }
+
+    private void raise(final Registration registration, final int label) {
+        final Integer current = raised.get(registration);
+        if ((current != null ? current : registration.order) < label) {
+            raised.put(registration, label);
+            pending.add(registration);
+        }
+    }
+}
@@ -19,26 +19,33 @@ package org.jboss.msc.txn;
 
 
 /**
- * Service installation task.
+ * Service installation task, installing either a single service or a whole batch of services. The dependencies
+ * demanded by the services of a batch are queued on the pending demand of the transaction, so that a dependency
+ * shared by many of them is usually reached only once.
  * 
  * @author <a href="mailto:frainone@redhat.com">Flavia Rainone</a>
  *
  */
 final class InstallServiceTask implements Executable<Void>, Revertible {
     private final Transaction transaction;
-    private final ServiceControllerImpl<?> serviceController;
-    boolean installed;
+    private final ServiceControllerImpl<?>[] serviceControllers;
+    int installed;
 
-    InstallServiceTask(ServiceControllerImpl<?> serviceController, Transaction transaction) {
+    InstallServiceTask(Transaction transaction, ServiceControllerImpl<?>... serviceControllers) {
         this.transaction = transaction;
-        this.serviceController = serviceController;
+        this.serviceControllers = serviceControllers;
     }
 
     @Override
     public void execute(ExecuteContext<Void> context) {
         assert context instanceof TaskFactory;
         try {
-            installed = serviceController.completeInstallation(transaction, context);
+            for (ServiceControllerImpl<?> serviceController: serviceControllers) {
+                if (!serviceController.completeInstallation(transaction, context)) {
+                    break;
+                }
+                installed++;
+            }
         } finally {
             context.complete();
         }
@@ -47,8 +54,8 @@ final class InstallServiceTask implements Executable<Void>, Revertible {
     @Override
     public void rollback(RollbackContext context) {
         try {
-            if (installed) {
-                serviceController.clear(transaction, null);
+            for (int i = 0; i < installed; i++) {
+                serviceControllers[i].clear(transaction, null);
             }
         } finally {
             context.complete();
@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.jboss.msc._private.MSCLogger;
+import org.jboss.msc.service.ServiceName;
+
+import static org.jboss.msc.txn.Helper.getAbstractTransaction;
+
+/**
+ * Runs the completion of a service start or stop. Completions are run right away, unless the service declared that it
+ * completes asynchronously: completions coming from other threads are then handed over to the transaction executor,
+ * so that the thread completing the service, typically an I/O thread, does not carry out the resulting transitions.
+ * <p>
+ * A start or stop may also be given a timeout. If the service does not complete in time, the timeout completion is
+ * run instead, and the completion that the service may still attempt later on is ignored.
+ */
+final class LifecycleCompletion {
+
+    private static final int RUNNING = 0;
+    private static final int COMPLETED = 1;
+    private static final int TIMED_OUT = 2;
+
+    private static final AtomicIntegerFieldUpdater<LifecycleCompletion> stateUpdater = AtomicIntegerFieldUpdater.newUpdater(LifecycleCompletion.class, "state");
+
+    private final Transaction transaction;
+    private final Thread lifecycleThread;
+    // the service being started or stopped, null for the ones run by rollbacks
+    private final ServiceName serviceName;
+    private final boolean start;
+    // timing of the start or stop being executed, only created for the watchdog if the transaction does not record it
+    private ServiceTiming timing;
+    private volatile boolean asynchronous;
+    private volatile boolean tracked;
+    private volatile int state;
+    private volatile ScheduledFuture<?> expiry;
+
+    /**
+     * Creates the completion of the service start or stop about to be called by the current thread.
+     *
+     * @param transaction the active transaction
+     */
+    LifecycleCompletion(final Transaction transaction) {
+        this(transaction, null, false, null);
+    }
+
+    /**
+     * Creates the completion of the service start or stop about to be called by the current thread.
+     *
+     * @param transaction the active transaction
+     * @param serviceName the name of the service
+     * @param start {@code true} for a start, {@code false} for a stop
+     * @param timing the timing of the start or stop, {@code null} if the transaction does not record it
+     */
+    LifecycleCompletion(final Transaction transaction, final ServiceName serviceName, final boolean start, final ServiceTiming timing) {
+        this.transaction = transaction;
+        this.serviceName = serviceName;
+        this.start = start;
+        this.timing = timing;
+        lifecycleThread = Thread.currentThread();
+    }
+
+    /**
+     * Declares that the service start or stop will be completed asynchronously.
+     */
+    void asynchronous() {
+        asynchronous = true;
+    }
+
+    /**
+     * Runs {@code timeoutCompletion}, on the transaction executor, if the service does not complete within
+     * {@code timeout} nanoseconds. An error is added to {@code context} beforehand. A start or stop given a timeout is
+     * tracked by the watchdog of the transaction controller until it completes, as are all of them if the watchdog
+     * tracks all starts and stops.
+     *
+     * @param timeout the timeout in nanoseconds, {@code 0} if the service may take as long as it needs
+     * @param context the context to report the timeout to
+     * @param timeoutCompletion the completion to run instead of the service one
+     */
+    void setTimeout(final long timeout, final ReportableContext context, final Runnable timeoutCompletion) {
+        assert serviceName != null;
+        final LifecycleWatchdog watchdog = getAbstractTransaction(transaction).txnController.watchdog;
+        if (timeout > 0 || watchdog.isTrackingAll()) {
+            if (timing == null) {
+                timing = ServiceTiming.track(serviceName, start);
+            }
+            tracked = true;
+            watchdog.executionStarted(timing);
+        }
+        if (timeout <= 0) {
+            return;
+        }
+        expiry = LifecycleWatchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (!stateUpdater.compareAndSet(LifecycleCompletion.this, RUNNING, TIMED_OUT)) {
+                    return;
+                }
+                finished();
+                context.addProblem(new Problem(Problem.Severity.ERROR, MSCLogger.SERVICE.lifecycleTimedOut(serviceName,
+                        getLifecycle(), TimeUnit.NANOSECONDS.toMillis(timeout))));
+                dispatch(timeoutCompletion);
+            }
+        }, timeout);
+    }
+
+    /**
+     * Runs {@code completion}, on the transaction executor if the service completes asynchronously from another
+     * thread. The completion is ignored if the start or stop has already timed out.
+     *
+     * @param completion the completion
+     */
+    void run(final Runnable completion) {
+        if (stateUpdater.compareAndSet(this, RUNNING, COMPLETED)) {
+            finished();
+        } else if (state == TIMED_OUT) {
+            MSCLogger.SERVICE.lifecycleCompletedAfterTimeout(serviceName, getLifecycle());
+            return;
+        }
+        if (asynchronous && Thread.currentThread() != lifecycleThread) {
+            dispatch(completion);
+        } else {
+            completion.run();
+        }
+    }
+
+    private void finished() {
+        final ScheduledFuture<?> expiry = this.expiry;
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        if (tracked) {
+            getAbstractTransaction(transaction).txnController.watchdog.executionCompleted(timing);
+        }
+    }
+
+    private void dispatch(final Runnable completion) {
+        try {
+            getAbstractTransaction(transaction).dispatch(completion);
+        } catch (RejectedExecutionException ignored) {
+            // executor is shutting down, complete on this thread
+            completion.run();
+        }
+    }
+
+    private String getLifecycle() {
+        return start ? "start" : "stop";
+    }
+}
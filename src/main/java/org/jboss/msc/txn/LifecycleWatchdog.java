@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps track of the service starts and stops being executed by the transactions of a controller, and enforces their
+ * timeouts. Only the starts and stops given a timeout are tracked, unless all of them are, so that the others do not
+ * update the shared tracking set. Timeouts of all controllers share a single timer thread, which only hands expired
+ * starts and stops over to the executor of their transaction.
+ */
+final class LifecycleWatchdog {
+
+    // the execution times are fixed, unlike the durations of running starts and stops, which grow as they are compared
+    private static final Comparator<ServiceTiming> LONGEST_FIRST = new Comparator<ServiceTiming>() {
+        @Override
+        public int compare(final ServiceTiming timing1, final ServiceTiming timing2) {
+            final long elapsed = timing1.getExecutionTime() - timing2.getExecutionTime();
+            return elapsed < 0 ? -1 : elapsed > 0 ? 1 : 0;
+        }
+    };
+
+    // starts and stops being executed, only the ones given a timeout unless all of them are tracked
+    private final Set<ServiceTiming> running = Collections.newSetFromMap(new ConcurrentHashMap<ServiceTiming, Boolean>());
+    private volatile boolean trackingAll;
+
+    boolean isTrackingAll() {
+        return trackingAll;
+    }
+
+    void setTrackingAll(final boolean trackingAll) {
+        this.trackingAll = trackingAll;
+    }
+
+    void executionStarted(final ServiceTiming timing) {
+        running.add(timing);
+    }
+
+    void executionCompleted(final ServiceTiming timing) {
+        running.remove(timing);
+    }
+
+    /**
+     * Schedules the expiry of a service start or stop.
+     *
+     * @param expiry the expiry, run by the timer thread
+     * @param timeout the timeout, in nanoseconds
+     * @return the scheduled expiry, to be cancelled if the start or stop completes in time
+     */
+    static ScheduledFuture<?> schedule(final Runnable expiry, final long timeout) {
+        return Timer.INSTANCE.schedule(expiry, timeout, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the tracked service starts and stops that have been executing for at least {@code threshold}
+     * nanoseconds, longest first.
+     *
+     * @param threshold the minimum execution time, in nanoseconds
+     * @return the long running starts and stops
+     */
+    List<ServiceTiming> getLongRunning(final long threshold) {
+        final List<ServiceTiming> longRunning = new ArrayList<>();
+        for (ServiceTiming timing : running) {
+            if (timing.getDuration(TimeUnit.NANOSECONDS) >= threshold) {
+                longRunning.add(timing);
+            }
+        }
+        Collections.sort(longRunning, LONGEST_FIRST);
+        return longRunning;
+    }
+
+    /**
+     * The timer shared by all controllers, created on first use.
+     */
+    private static final class Timer {
+
+        static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "MSC lifecycle watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            // most starts and stops complete in time, do not keep their cancelled expiries around
+            INSTANCE.setRemoveOnCancelPolicy(true);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+/**
+ * Notifies the incoming dependencies of a registration that it is up, splitting them in chunks that are notified by
+ * tasks of their own, executed in parallel by the transaction executor.
+ * <p>
+ * The calling thread notifies the first chunk and creates a task for each other chunk, but never waits for those
+ * tasks: it may be holding the monitor of the service being started, or of the dependency that is starting it. The
+ * tasks created by the notifications become children of the chunk tasks, so the transaction does not prepare before
+ * all dependencies are notified. Dependencies ignore notifications older than the last one they received, so chunks
+ * may be notified after a later notification of the same registration.
+ * <p>
+ * Down notifications are not fanned out: the tasks they return are dependencies of the stop task the caller builds
+ * while holding the monitor of the stopping service, and waiting for other threads there could deadlock.
+ */
+final class NotificationFanOut implements Executable<Void> {
+
+    private final Transaction transaction;
+    private final TaskController<?> startTask;
+    private final DependencyImpl<?>[] dependencies;
+    private final int notification;
+    private final int from;
+    private final int to;
+
+    private NotificationFanOut(final Transaction transaction, final TaskController<?> startTask, final DependencyImpl<?>[] dependencies,
+            final int notification, final int from, final int to) {
+        this.transaction = transaction;
+        this.startTask = startTask;
+        this.dependencies = dependencies;
+        this.notification = notification;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Calls {@link DependencyImpl#dependencyUp} on each one of {@code dependencies}.
+     *
+     * @param transaction the active transaction
+     * @param taskFactory the task factory
+     * @param startTask the start task of the registration service
+     * @param dependencies the incoming dependencies
+     * @param notification the notification sequence number
+     * @param chunkSize the number of dependencies notified by the same task
+     */
+    static void dependencyUp(final Transaction transaction, final TaskFactory taskFactory, final TaskController<?> startTask,
+            final DependencyImpl<?>[] dependencies, final int notification, final int chunkSize) {
+        for (int from = chunkSize; from < dependencies.length; from += chunkSize) {
+            final int to = Math.min(from + chunkSize, dependencies.length);
+            taskFactory.newTask(new NotificationFanOut(transaction, startTask, dependencies, notification, from, to)).release();
+        }
+        notifyChunk(transaction, taskFactory, startTask, dependencies, notification, 0, Math.min(chunkSize, dependencies.length));
+    }
+
+    @Override
+    public void execute(final ExecuteContext<Void> context) {
+        try {
+            notifyChunk(transaction, context, startTask, dependencies, notification, from, to);
+        } finally {
+            context.complete();
+        }
+    }
+
+    private static void notifyChunk(final Transaction transaction, final TaskFactory taskFactory, final TaskController<?> startTask,
+            final DependencyImpl<?>[] dependencies, final int notification, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            dependencies[i].dependencyUp(transaction, taskFactory, startTask, notification);
+        }
+    }
+}
@@ -99,7 +99,7 @@ class ParentServiceContext<T> extends ServiceContextImpl {
         }
 
         @Override
-        public TaskController<?> dependencyDown(Transaction transaction, TaskFactory taskFactory) {
+        TaskController<?> dependencyUnsatisfied(Transaction transaction, TaskFactory taskFactory) {
             return dependent.remove(transaction, taskFactory);
         }
     }
@@ -21,11 +21,9 @@ package org.jboss.msc.txn;
 import org.jboss.msc.service.ServiceName;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static org.jboss.msc._private.MSCLogger.TXN;
 import static org.jboss.msc.txn.Helper.getAbstractTransaction;
@@ -67,17 +65,26 @@ final class Registration {
     private final ServiceName serviceName;
     /** Associated transaction controller */
     final TransactionController txnController;
-    /** Associated controller */
-    final AtomicReference<ServiceControllerImpl<?>> holderRef = new AtomicReference<>();
+    /** Associated controller, bound through {@link AtomicFields#compareAndSetController} */
+    volatile ServiceControllerImpl<?> controller;
 
     /**
      * Incoming dependencies, i.e., dependent services.
      */
-    final Set<DependencyImpl<?>> incomingDependencies = new HashSet<>();
+    final IncomingDependencies incomingDependencies = new IncomingDependencies();
     /**
      * State.
      */
     private int state;
+    /**
+     * Sequence number of the last up or down notification of the incoming dependencies. Guarded by this.
+     */
+    private int notifications;
+    /**
+     * Ordering label, higher than the labels of the dependencies of the installed service. Guarded by the
+     * {@link IncrementalCycleDetector} of {@link #txnController}.
+     */
+    int order;
 
     Registration(final ServiceName serviceName, final TransactionController txnController) {
         this.serviceName = serviceName;
@@ -89,7 +96,7 @@ final class Registration {
     }
 
     ServiceControllerImpl<?> getController() {
-        return holderRef.get();
+        return controller;
     }
 
     /**
@@ -101,7 +108,7 @@ final class Registration {
     void installService(final Transaction transaction, final TaskFactory taskFactory) {
         final ServiceControllerImpl<?> serviceController;
         synchronized (this) {
-            serviceController = holderRef.get();
+            serviceController = controller;
         }
         if (Bits.anyAreSet(state, REMOVED)) {
             throw TXN.removedServiceRegistry(); // display registry removed message to user, as this scenario only occurs when registry has been removed
@@ -116,22 +123,26 @@ final class Registration {
     void clearController(final Transaction transaction, final TaskFactory taskFactory) {
         installDependenciesValidateTask(transaction, taskFactory);
         synchronized (this) {
-            holderRef.set(null);
+            controller = null;
         }
     }
 
     <T> void addIncomingDependency(final Transaction transaction, final DependencyImpl<T> dependency) {
         installDependenciesValidateTask(transaction, getAbstractTransaction(transaction).getTaskFactory());
         final TaskController<?> startTask;
-        final boolean up;
+        final int notification;
         synchronized (this) {
             incomingDependencies.add(dependency);
-            up = Bits.anyAreSet(state,  UP);
-            startTask = up? holderRef.get().getStartTask(transaction): null;
-            if (up) {
-                dependency.dependencyUp(transaction, getAbstractTransaction(transaction).getTaskFactory(), startTask);
+            if (Bits.allAreClear(state, UP)) {
+                dependency.resetNotifications(notifications);
+                return;
             }
+            notification = notifications;
+            dependency.resetNotifications(notification - 1);
+            startTask = controller.getStartTask(transaction);
         }
+        // the caller holds the dependency lock, so notifications of later snapshots are delivered after this one
+        dependency.dependencyUp(transaction, getAbstractTransaction(transaction).getTaskFactory(), startTask, notification);
     }
 
     void removeIncomingDependency(final DependencyImpl<?> dependency) {
@@ -140,70 +151,102 @@ final class Registration {
         }
     }
 
+    /*
+     * Start and stop notifications change the state and take a snapshot of the incoming dependencies under the lock,
+     * and notify the snapshot after releasing it, so that dependents being added or removed meanwhile do not wait
+     * for all other dependents to be notified. Each snapshot gets the next notification sequence number, so that
+     * a dependency notified by snapshots of concurrent calls ignores the ones that arrive out of order.
+     */
+
     void serviceStarting(final Transaction transaction, final TaskFactory taskFactory, final TaskController<?> startTask) {
+        final DependencyImpl<?>[] dependencies;
+        final int notification;
         synchronized (this) {
             // handle out of order notifications
             if (Bits.anyAreSet(state, FAILED)) {
                 return;
             }
             state = state | UP;
-            for (final DependencyImpl<?> incomingDependency: incomingDependencies) {
-                incomingDependency.dependencyUp(transaction, taskFactory, startTask);
-            }
+            notification = ++ notifications;
+            dependencies = incomingDependencies.snapshot();
+        }
+        assert !Thread.holdsLock(this);
+        final int threshold = txnController.getNotificationFanOutThreshold();
+        if (threshold > 0 && dependencies.length > threshold && taskFactory != null) {
+            NotificationFanOut.dependencyUp(transaction, taskFactory, startTask, dependencies, notification, threshold);
+            return;
+        }
+        for (final DependencyImpl<?> incomingDependency: dependencies) {
+            incomingDependency.dependencyUp(transaction, taskFactory, startTask, notification);
         }
     }
 
     void serviceFailed(final Transaction transaction, final TaskFactory taskFactory, final List<TaskController<?>> tasks) {
+        final DependencyImpl<?>[] dependencies;
+        final int notification;
         synchronized (this) {
             state = state | FAILED;
             // handle out of order notifications
-            if (Bits.anyAreSet(state, UP)) {
-                state = state & ~UP;
-                for (final DependencyImpl<?> incomingDependency: incomingDependencies) {
-                    final TaskController<?> task = incomingDependency.dependencyDown(transaction, taskFactory);
-                    if (task != null) {
-                        tasks.add(task);
-                    }
-                }
+            if (Bits.allAreClear(state, UP)) {
+                return;
             }
+            state = state & ~UP;
+            notification = ++ notifications;
+            dependencies = incomingDependencies.snapshot();
         }
+        notifyDependencyDown(transaction, taskFactory, dependencies, notification, tasks);
     }
 
     void serviceStopping(final Transaction transaction, final TaskFactory taskFactory, final List<TaskController<?>> tasks) {
+        final DependencyImpl<?>[] dependencies;
+        final int notification;
         synchronized (this) {
             state = state & ~(UP | FAILED);
-            for (DependencyImpl<?> incomingDependency: incomingDependencies) {
-                final TaskController<?> task = incomingDependency.dependencyDown(transaction, taskFactory);
-                if (task != null) {
-                    tasks.add(task);
-                }
-            }
+            notification = ++ notifications;
+            dependencies = incomingDependencies.snapshot();
         }
+        notifyDependencyDown(transaction, taskFactory, dependencies, notification, tasks);
     }
 
-    void addDemand(final Transaction transaction, final TaskFactory taskFactory) {
-        final ServiceControllerImpl<?> controller;
-        synchronized (this) {
-            if (((++ state) & DEMANDED_MASK) > 1) {
-                return;
+    private void notifyDependencyDown(final Transaction transaction, final TaskFactory taskFactory, final DependencyImpl<?>[] dependencies,
+            final int notification, final List<TaskController<?>> tasks) {
+        assert !Thread.holdsLock(this);
+        for (final DependencyImpl<?> incomingDependency: dependencies) {
+            final TaskController<?> task = incomingDependency.dependencyDown(transaction, taskFactory, notification);
+            if (task != null) {
+                tasks.add(task);
             }
-            controller = holderRef.get();
-        }
-        if (controller != null) {
-            controller.demand(transaction, taskFactory);
         }
     }
 
+    void addDemand(final Transaction transaction, final TaskFactory taskFactory) {
+        DemandPropagation.update(transaction, taskFactory, this, 1);
+    }
+
     void removeDemand(final Transaction transaction, final TaskFactory taskFactory) {
+        DemandPropagation.update(transaction, taskFactory, this, -1);
+    }
+
+    /**
+     * Adds {@code delta} to the number of dependents demanding this registration. If this registration becomes
+     * demanded, or is no longer demanded, the change is passed on to its service.
+     *
+     * @param propagation the demand propagation this change is part of
+     * @param delta the demand change, not zero
+     */
+    void updateDemand(final DemandPropagation propagation, final int delta) {
         final ServiceControllerImpl<?> controller;
         synchronized (this) {
-            if (((--state) & DEMANDED_MASK) > 0) {
+            final int demanded = state & DEMANDED_MASK;
+            assert demanded + delta >= 0;
+            state += delta;
+            if ((demanded == 0) == (demanded + delta == 0)) {
                 return;
             }
-            controller = holderRef.get();
+            controller = this.controller;
         }
         if (controller != null) {
-            controller.undemand(transaction, taskFactory);
+            controller.updateDemand(propagation, delta > 0 ? 1 : -1);
         }
     }
 
@@ -212,7 +255,7 @@ final class Registration {
         synchronized (this) {
             if (Bits.anyAreSet(state, REMOVED)) return;
             state = state | REMOVED;
-            controller = holderRef.get();
+            controller = this.controller;
         }
         if (controller != null) {
             controller.remove(transaction, taskFactory);
@@ -230,7 +273,7 @@ final class Registration {
         synchronized (this) {
             if (Bits.allAreClear(state,  REGISTRY_ENABLED)) return;
             state = state & ~REGISTRY_ENABLED;
-            controller = holderRef.get();
+            controller = this.controller;
         }
         if (controller != null) {
             controller.disableRegistry(transaction, taskFactory);
@@ -242,7 +285,7 @@ final class Registration {
         synchronized (this) {
             if (Bits.allAreSet(state, REGISTRY_ENABLED)) return;
             state = state | REGISTRY_ENABLED;
-            controller = holderRef.get();
+            controller = this.controller;
         }
         if (controller != null) {
             controller.enableRegistry(transaction, taskFactory);
@@ -293,10 +336,8 @@ final class Registration {
                 this.registrations = null;
             }
             for (final Registration registration : registrations) {
-                synchronized (registration) {
-                    for (final DependencyImpl<?> dependency : registration.incomingDependencies) {
-                        dependency.validate(report);
-                    }
+                for (final DependencyImpl<?> dependency : registration.incomingDependencies) {
+                    dependency.validate(report);
                 }
             }
         }
@@ -0,0 +1,231 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.jboss.msc.service.ServiceName;
+
+/**
+ * Index of the registrations of a {@link ServiceRegistryImpl}, by service name.
+ * <p>
+ * Registrations are stored in an open-addressing table with linear probing, keyed by the hash code cached by their
+ * {@link ServiceName}. Names are compared by identity first, so that interned or reused names never have their parent
+ * chains walked. Lookups take no lock: they probe the current table until they hit the registration or an empty slot.
+ * Insertions are serialized; when the table gets half full, it is copied into a table twice as large, which is then
+ * published, and the old table is no longer written to. Registrations are never removed from a registry, so there is
+ * no need for tombstones.
+ * <p>
+ * Registrations are also kept in a tree of name segments, so that the registrations of a whole subtree of names can be
+ * enumerated without visiting the other ones.
+ *
+ * @see ServiceRegistryImpl
+ */
+final class RegistrationIndex implements Iterable<Registration> {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<Registration> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    // guarded by this
+    private int size;
+    // root of the segment tree, its children are the first segments of names
+    private final Node root = new Node();
+
+    private static int indexOf(final int hashCode, final int mask) {
+        // spread the bits of the name hash code, which are poorly distributed for sibling names
+        final int h = hashCode * 0x9E3779B9;
+        return (h ^ h >>> 16) & mask;
+    }
+
+    private static boolean matches(final Registration registration, final ServiceName name) {
+        final ServiceName registered = registration.getServiceName();
+        return registered == name || registered.hashCode() == name.hashCode() && registered.equals(name);
+    }
+
+    /**
+     * Looks up the registration of {@code name} with a single probe sequence.
+     *
+     * @param name the service name
+     * @return the registration, or {@code null} if there is none
+     */
+    Registration get(final ServiceName name) {
+        final AtomicReferenceArray<Registration> table = this.table;
+        final int mask = table.length() - 1;
+        for (int i = indexOf(name.hashCode(), mask);; i = i + 1 & mask) {
+            final Registration registration = table.get(i);
+            if (registration == null || matches(registration, name)) {
+                return registration;
+            }
+        }
+    }
+
+    /**
+     * Adds {@code registration}, unless there is a registration with the same name already.
+     *
+     * @param registration the registration
+     * @return the registration already present, or {@code null} if {@code registration} was added
+     */
+    synchronized Registration putIfAbsent(final Registration registration) {
+        final ServiceName name = registration.getServiceName();
+        AtomicReferenceArray<Registration> table = this.table;
+        int mask = table.length() - 1;
+        int i = indexOf(name.hashCode(), mask);
+        for (Registration existing; (existing = table.get(i)) != null; i = i + 1 & mask) {
+            if (matches(existing, name)) {
+                return existing;
+            }
+        }
+        if (++size > table.length() >> 1) {
+            table = this.table = resize(table);
+            mask = table.length() - 1;
+            i = indexOf(name.hashCode(), mask);
+            while (table.get(i) != null) {
+                i = i + 1 & mask;
+            }
+        }
+        table.set(i, registration);
+        node(name).registration = registration;
+        return null;
+    }
+
+    /**
+     * Returns the tree node of {@code name}, creating it and its ancestors as needed.
+     */
+    private Node node(final ServiceName name) {
+        assert Thread.holdsLock(this);
+        final ServiceName parentName = name.getParent();
+        final Node parent = parentName == null ? root : node(parentName);
+        ConcurrentHashMap<String, Node> children = parent.children;
+        if (children == null) {
+            parent.children = children = new ConcurrentHashMap<>(4);
+        }
+        Node node = children.get(name.getSimpleName());
+        if (node == null) {
+            node = new Node();
+            children.put(name.getSimpleName(), node);
+        }
+        return node;
+    }
+
+    /**
+     * Adds the registrations of {@code prefix} and of all the names it is a parent of to {@code registrations}.
+     * The cost is proportional to the size of that subtree, not to the size of the index.
+     *
+     * @param prefix the name prefix
+     * @param registrations the list to add the registrations to
+     */
+    void getRegistrations(final ServiceName prefix, final List<Registration> registrations) {
+        Node node = root;
+        final String[] segments = prefix.toArray();
+        for (int i = 0; node != null && i < segments.length; i++) {
+            final ConcurrentHashMap<String, Node> children = node.children;
+            node = children != null ? children.get(segments[i]) : null;
+        }
+        if (node == null) {
+            return;
+        }
+        final Deque<Node> nodes = new ArrayDeque<>();
+        nodes.add(node);
+        while ((node = nodes.poll()) != null) {
+            final Registration registration = node.registration;
+            if (registration != null) {
+                registrations.add(registration);
+            }
+            final ConcurrentHashMap<String, Node> children = node.children;
+            if (children != null) {
+                nodes.addAll(children.values());
+            }
+        }
+    }
+
+    private static AtomicReferenceArray<Registration> resize(final AtomicReferenceArray<Registration> table) {
+        final AtomicReferenceArray<Registration> newTable = new AtomicReferenceArray<>(table.length() << 1);
+        final int mask = newTable.length() - 1;
+        for (int j = 0; j < table.length(); j++) {
+            final Registration registration = table.get(j);
+            if (registration != null) {
+                int i = indexOf(registration.getServiceName().hashCode(), mask);
+                while (newTable.get(i) != null) {
+                    i = i + 1 & mask;
+                }
+                newTable.set(i, registration);
+            }
+        }
+        return newTable;
+    }
+
+    /**
+     * Node of the segment tree. The node of a name without registration is only there to lead to longer names.
+     * Nodes are only written to under the index lock, and read without it.
+     */
+    private static final class Node {
+        private volatile Registration registration;
+        private volatile ConcurrentHashMap<String, Node> children;
+    }
+
+    /**
+     * Returns an iterator over the registrations present when it was created. Registrations added afterwards may or
+     * may not be returned.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<Registration> iterator() {
+        final AtomicReferenceArray<Registration> table = this.table;
+        return new Iterator<Registration>() {
+            private int index = -1;
+            private Registration next = advance();
+
+            private Registration advance() {
+                while (++index < table.length()) {
+                    final Registration registration = table.get(index);
+                    if (registration != null) {
+                        return registration;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Registration next() {
+                final Registration registration = next;
+                if (registration == null) {
+                    throw new NoSuchElementException();
+                }
+                next = advance();
+                return registration;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -17,6 +17,7 @@
  */
 package org.jboss.msc.txn;
 
+import java.util.List;
 
 /**
  * Service removal task.
@@ -37,26 +38,43 @@ final class RemoveServiceTask implements Executable<Void>, Revertible {
      */
     static <T> TaskController<Void> create(ServiceControllerImpl<T> serviceController, TaskController<?> stopTask,
             Transaction transaction, TaskFactory taskFactory) {
-        final TaskBuilder<Void> removeTaskBuilder = taskFactory.newTask(new RemoveServiceTask(serviceController, transaction));
+        final TaskBuilder<Void> removeTaskBuilder = taskFactory.newTask(new RemoveServiceTask(new ServiceControllerImpl<?>[] {serviceController}, transaction));
         if (stopTask != null) {
             removeTaskBuilder.addDependency(stopTask);
         }
         return removeTaskBuilder.release();
     }
 
+    /**
+     * Creates a task that removes several services at once.
+     *
+     * @param serviceControllers services that are being removed
+     * @param stopTasks          the tasks that must be first concluded before the services can remove
+     * @param transaction        the active transaction
+     * @param taskFactory        the task factory
+     * @return                   the remove task
+     */
+    static TaskController<Void> create(List<ServiceControllerImpl<?>> serviceControllers, List<TaskController<?>> stopTasks,
+            Transaction transaction, TaskFactory taskFactory) {
+        final ServiceControllerImpl<?>[] serviceControllersArray = serviceControllers.toArray(new ServiceControllerImpl<?>[serviceControllers.size()]);
+        return taskFactory.newTask(new RemoveServiceTask(serviceControllersArray, transaction)).addDependencies(stopTasks).release();
+    }
+
     private final Transaction transaction;
-    private final ServiceControllerImpl<?> serviceController;
+    private final ServiceControllerImpl<?>[] serviceControllers;
 
-    private RemoveServiceTask(ServiceControllerImpl<?> serviceController, Transaction transaction) {
+    private RemoveServiceTask(ServiceControllerImpl<?>[] serviceControllers, Transaction transaction) {
         this.transaction = transaction;
-        this.serviceController = serviceController;
+        this.serviceControllers = serviceControllers;
     }
 
     @Override
     public void execute(ExecuteContext<Void> context) {
         assert context instanceof TaskFactory;
         try {
-            serviceController.setServiceRemoved(transaction, context);
+            for (ServiceControllerImpl<?> serviceController : serviceControllers) {
+                serviceController.setServiceRemoved(transaction, context);
+            }
         } finally {
             context.complete();
         }
@@ -65,7 +83,9 @@ final class RemoveServiceTask implements Executable<Void>, Revertible {
     @Override
     public void rollback(RollbackContext context) {
         try {
-            serviceController.reinstall(transaction);
+            for (ServiceControllerImpl<?> serviceController : serviceControllers) {
+                serviceController.reinstall(transaction);
+            }
         } finally {
             context.complete();
         }
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2012 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.txn;
+
+import org.jboss.msc._private.MSCLogger;
+import org.jboss.msc.service.CircularDependencyException;
+import org.jboss.msc.service.DuplicateServiceException;
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.jboss.msc.txn.Helper.getAbstractTransaction;
+
+/**
+ * A service batch.
+ */
+final class ServiceBatchImpl implements ServiceBatch {
+
+    // the transaction controller
+    private final TransactionController transactionController;
+    // the service registry
+    private final ServiceRegistryImpl registry;
+    // active transaction
+    private final Transaction transaction;
+    // builders of the services in this batch
+    private final List<ServiceBuilderImpl<?>> builders = new ArrayList<>();
+    // is service batch installed?
+    private boolean installed;
+
+    /**
+     * Creates service batch.
+     * @param registry     the service registry
+     * @param transaction  active transaction
+     */
+    ServiceBatchImpl(final TransactionController transactionController, final ServiceRegistryImpl registry, final Transaction transaction) {
+        this.transactionController = transactionController;
+        this.registry = registry;
+        this.transaction = transaction;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> ServiceBuilder<T> addService(final Class<T> valueType, final ServiceName name) throws IllegalArgumentException, IllegalStateException {
+        if (valueType == null) {
+            throw MSCLogger.SERVICE.methodParameterIsNull("valueType");
+        }
+        return addServiceInternal(name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceBuilder<Void> addService(final ServiceName name) throws IllegalArgumentException, IllegalStateException {
+        return addServiceInternal(name);
+    }
+
+    private <T> ServiceBuilder<T> addServiceInternal(final ServiceName name) {
+        checkAlreadyInstalled();
+        if (name == null) {
+            throw MSCLogger.SERVICE.methodParameterIsNull("name");
+        }
+        final ServiceBuilderImpl<T> builder = new ServiceBuilderImpl<>(transactionController, registry, name, transaction);
+        builders.add(builder);
+        return builder;
+    }
+
+    private void checkAlreadyInstalled() {
+        if (installed) {
+            throw MSCLogger.SERVICE.cannotCallBatchInstallTwice();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ServiceController> install() throws IllegalStateException, DuplicateServiceException, CircularDependencyException {
+        checkAlreadyInstalled();
+        installed = true;
+
+        // skip builders that have been installed on their own
+        final List<ServiceBuilderImpl<?>> pending = new ArrayList<>(builders.size());
+        for (final ServiceBuilderImpl<?> builder : builders) {
+            if (builder.markBatchInstalled()) {
+                pending.add(builder);
+            }
+        }
+        if (pending.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // resolve primary and alias registrations of all services in one pass
+        final List<ServiceName> names = new ArrayList<>(pending.size());
+        final int[] aliasCounts = new int[pending.size()];
+        for (int i = 0; i < aliasCounts.length; i++) {
+            aliasCounts[i] = pending.get(i).collectNames(names);
+        }
+        final Registration[] registrations = registry.getOrCreateRegistrations(transaction, names.toArray(new ServiceName[names.size()]));
+
+        // create service controllers
+        final ServiceControllerImpl<?>[] serviceControllers = new ServiceControllerImpl<?>[aliasCounts.length];
+        for (int i = 0, r = 0; i < serviceControllers.length; i++) {
+            final Registration registration = registrations[r++];
+            final Registration[] aliasRegistrations = aliasCounts[i] > 0 ? Arrays.copyOfRange(registrations, r, r + aliasCounts[i]) : ServiceBuilderImpl.NO_ALIASES;
+            r += aliasCounts[i];
+            serviceControllers[i] = pending.get(i).newServiceController(registration, aliasRegistrations);
+        }
+
+        // install all service controllers with a single task
+        final TaskFactory taskFactory = getAbstractTransaction(transaction).getTaskFactory();
+        boolean ok = false;
+        try {
+            ServiceControllerImpl.beginInstallation(serviceControllers);
+            ok = true;
+        } finally {
+            if (!ok) {
+                // none of the services is installed, so none of them can be left behind as a dependent
+                for (final ServiceControllerImpl<?> serviceController : serviceControllers) {
+                    serviceController.abortInstallation(transaction, taskFactory);
+                }
+            }
+        }
+        taskFactory.newTask(new InstallServiceTask(transaction, serviceControllers)).release();
+        return Collections.unmodifiableList(Arrays.<ServiceController>asList(serviceControllers));
+    }
+}
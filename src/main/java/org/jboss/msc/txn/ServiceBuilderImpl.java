@@ -33,8 +33,10 @@ import org.jboss.msc.service.ServiceRegistry;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.jboss.msc.txn.Helper.getAbstractTransaction;
 
@@ -47,7 +49,7 @@ import static org.jboss.msc.txn.Helper.getAbstractTransaction;
  */
 final class ServiceBuilderImpl<T> implements ServiceBuilder<T> {
 
-    private static final Registration[] NO_ALIASES = new Registration[0];
+    static final Registration[] NO_ALIASES = new Registration[0];
     private static final DependencyImpl<?>[] NO_DEPENDENCIES = new DependencyImpl<?>[0];
 
     static final DependencyFlag[] noFlags = new DependencyFlag[0];
@@ -68,6 +70,8 @@ final class ServiceBuilderImpl<T> implements ServiceBuilder<T> {
     private final Transaction transaction;
     // service mode
     private ServiceMode mode;
+    // start and stop timeout in nanoseconds
+    private long timeout;
     // is service builder installed?
     private boolean installed;
 
@@ -106,6 +110,22 @@ final class ServiceBuilderImpl<T> implements ServiceBuilder<T> {
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceBuilder<T> setTimeout(final long timeout, final TimeUnit unit) {
+        checkAlreadyInstalled();
+        if (timeout < 0) {
+            throw MSCLogger.SERVICE.illegalTimeout(timeout);
+        }
+        if (unit == null) {
+            throw MSCLogger.SERVICE.methodParameterIsNull("unit");
+        }
+        this.timeout = unit.toNanos(timeout);
+        return this;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -230,16 +250,51 @@ final class ServiceBuilderImpl<T> implements ServiceBuilder<T> {
             }
         }
 
+        // create and install service controller
+        final ServiceControllerImpl<T> serviceController = newServiceController(registration, aliasRegistrations);
+        serviceController.beginInstallation();
+        getAbstractTransaction(transaction).getTaskFactory().newTask(new InstallServiceTask(transaction, serviceController)).release();
+        return serviceController;
+    }
+
+    /**
+     * Marks this builder as installed on behalf of a {@link ServiceBatchImpl batch}.
+     *
+     * @return {@code false} if this builder has already been installed on its own
+     */
+    boolean markBatchInstalled() {
+        assert ! calledFromConstructorOf(service) : "install() must not be called from a service constructor";
+        if (installed) {
+            return false;
+        }
+        installed = true;
+        return true;
+    }
+
+    /**
+     * Appends the service name followed by its aliases to {@code names}.
+     *
+     * @return the number of aliases appended
+     */
+    int collectNames(final List<ServiceName> names) {
+        names.add(name);
+        names.addAll(aliases);
+        return aliases.size();
+    }
+
+    /**
+     * Creates the service controller, bound to the given registrations.
+     *
+     * @param registration       the primary registration
+     * @param aliasRegistrations the alias registrations
+     * @return the service controller
+     */
+    ServiceControllerImpl<T> newServiceController(final Registration registration, final Registration[] aliasRegistrations) {
         // create dependencies
         final DependencyImpl<?>[] dependenciesArray = dependencies.size() > 0 ? new DependencyImpl<?>[dependencies.size()] : NO_DEPENDENCIES;
         if (dependenciesArray.length > 0) {
             dependencies.values().toArray(dependenciesArray);
         }
-
-        // create and install service controller
-        final ServiceControllerImpl<T> serviceController =  new ServiceControllerImpl<>(registration, aliasRegistrations, service, mode, dependenciesArray, transaction);
-        serviceController.beginInstallation();
-        getAbstractTransaction(transaction).getTaskFactory().newTask(new InstallServiceTask(serviceController, transaction)).release();
-        return serviceController;
+        return new ServiceControllerImpl<>(registration, aliasRegistrations, service, mode, dependenciesArray, timeout, transaction);
     }
 }
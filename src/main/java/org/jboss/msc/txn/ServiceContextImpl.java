@@ -17,6 +17,7 @@
  */
 package org.jboss.msc.txn;
 
+import org.jboss.msc.service.ServiceBatch;
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceContext;
 import org.jboss.msc.service.ServiceController;
@@ -56,6 +57,16 @@ class ServiceContextImpl implements ServiceContext {
         return new ServiceBuilderImpl<>(txnController, (ServiceRegistryImpl) registry, name, transaction);
     }
 
+    @Override
+    public ServiceBatch addServices(final ServiceRegistry registry, final UpdateTransaction transaction)
+    throws IllegalArgumentException, InvalidTransactionStateException {
+        validateRegistry(registry);
+        validateTransaction(transaction, txnController);
+        validateTransaction(transaction, ((ServiceRegistryImpl)registry).txnController);
+        setModified(transaction);
+        return new ServiceBatchImpl(txnController, (ServiceRegistryImpl) registry, transaction);
+    }
+
     @Override
     public void removeService(ServiceRegistry registry, ServiceName name, UpdateTransaction transaction)
     throws IllegalArgumentException, InvalidTransactionStateException {
@@ -28,6 +28,7 @@ import org.jboss.msc.service.ServiceName;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static java.lang.Thread.holdsLock;
@@ -81,11 +82,21 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
     /**
      * The alias registrations of this service.
      */
-    private final Registration[] aliasRegistrations;
+    final Registration[] aliasRegistrations;
     /**
      * The dependencies of this service.
      */
     final DependencyImpl<?>[] dependencies;
+    /**
+     * Indicates if this service has been ordered after its dependencies by the {@link IncrementalCycleDetector}, which
+     * guards this field.
+     */
+    boolean ordered;
+    /**
+     * Indicates if this service is installed although the {@link IncrementalCycleDetector}, which guards this field,
+     * could not order it after its dependencies.
+     */
+    boolean unordered;
     /**
      * The service value, resulting of service start.
      */
@@ -102,6 +113,10 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
      * Indicates if this service is demanded to start.
      */
     private int demandedByCount;
+    /**
+     * The nanoseconds this service is given to start or stop, 0 if the timeout of the transaction applies.
+     */
+    private final long timeout;
 
     /**
      * Info enabled only when this service is write locked during a transaction.
@@ -117,12 +132,14 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
      * @param service             the service itself
      * @param mode                the service mode
      * @param dependencies        the service dependencies
+     * @param timeout             the nanoseconds the service is given to start or stop, 0 for the transaction timeout
      * @param transaction         the active transaction
      */
     ServiceControllerImpl(final Registration primaryRegistration, final Registration[] aliasRegistrations, final Service<T> service,
-            final org.jboss.msc.service.ServiceMode mode, final DependencyImpl<?>[] dependencies, final Transaction transaction) {
+            final org.jboss.msc.service.ServiceMode mode, final DependencyImpl<?>[] dependencies, final long timeout, final Transaction transaction) {
         this.service = service;
         setMode(mode);
+        this.timeout = timeout;
         this.primaryRegistration = primaryRegistration;
         this.aliasRegistrations = aliasRegistrations;
         this.dependencies = dependencies;
@@ -147,36 +164,99 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
      * @throws CircularDependencyException if installation of this services creates a dependency cycle
      */
     void beginInstallation() throws DuplicateServiceException, CircularDependencyException {
-        // associate controller holder with primary registration
-        if (!primaryRegistration.holderRef.compareAndSet(null, this)) {
-            throw SERVICE.duplicateService(primaryRegistration.getServiceName());
+        bindRegistrations();
+        boolean ok = false;
+        try {
+            primaryRegistration.txnController.cycleDetector.execute(this);
+            ok = true;
+        } finally {
+            if (!ok) {
+                // exception was thrown, cleanup
+                unbindRegistrations(aliasRegistrations.length);
+            }
         }
+    }
+
+    /**
+     * Begins installation of a batch of services. All services are bound with their registrations before dependency
+     * cycles are searched for over the whole batch. If installation fails, none of the services remains bound.
+     *
+     * @param controllers the services to be installed
+     * @throws DuplicateServiceException   if there is already a service installed at any of the registrations
+     * @throws CircularDependencyException if installation of these services creates a dependency cycle
+     */
+    static void beginInstallation(final ServiceControllerImpl<?>[] controllers) throws DuplicateServiceException, CircularDependencyException {
+        int bound = 0;
         boolean ok = false;
-        int lastIndex = -1;
         try {
-            // associate controller holder with alias registrations
-            for (int i = 0; i < aliasRegistrations.length; lastIndex = i++) {
-                if (!aliasRegistrations[i].holderRef.compareAndSet(null, this)) {
-                    throw SERVICE.duplicateService(aliasRegistrations[i].getServiceName());
-                }
+            for (; bound < controllers.length; bound++) {
+                controllers[bound].bindRegistrations();
+            }
+            if (controllers.length > 0) {
+                controllers[0].primaryRegistration.txnController.cycleDetector.execute(controllers);
             }
-            CycleDetector.execute(this);
             ok = true;
         } finally {
             if (!ok) {
                 // exception was thrown, cleanup
-                for (int i = 0; i < lastIndex; i++) {
-                    aliasRegistrations[i].holderRef.set(null);
+                for (int i = 0; i < bound; i++) {
+                    controllers[i].unbindRegistrations(controllers[i].aliasRegistrations.length);
                 }
-                primaryRegistration.holderRef.set(null);
             }
         }
     }
 
+    /**
+     * Aborts installation of a service that could not be bound with its registrations, detaching it from the
+     * registrations of its dependencies.
+     *
+     * @param transaction the active transaction
+     * @param taskFactory the task factory
+     */
+    void abortInstallation(final Transaction transaction, final TaskFactory taskFactory) {
+        for (DependencyImpl<?> dependency: dependencies) {
+            dependency.clearDependent(transaction, taskFactory);
+        }
+    }
+
+    /**
+     * Associates this controller with its primary and alias registrations.
+     *
+     * @throws DuplicateServiceException if there is already a service installed at any of the registrations
+     */
+    private void bindRegistrations() throws DuplicateServiceException {
+        // associate controller holder with primary registration
+        if (!AtomicFields.compareAndSetController(primaryRegistration, null, this)) {
+            throw SERVICE.duplicateService(primaryRegistration.getServiceName());
+        }
+        int bound = 0;
+        try {
+            // associate controller holder with alias registrations
+            for (; bound < aliasRegistrations.length; bound++) {
+                if (!AtomicFields.compareAndSetController(aliasRegistrations[bound], null, this)) {
+                    throw SERVICE.duplicateService(aliasRegistrations[bound].getServiceName());
+                }
+            }
+        } finally {
+            if (bound < aliasRegistrations.length) {
+                // exception was thrown, cleanup
+                unbindRegistrations(bound);
+            }
+        }
+    }
+
+    private void unbindRegistrations(final int boundAliases) {
+        for (int i = 0; i < boundAliases; i++) {
+            aliasRegistrations[i].controller = null;
+        }
+        primaryRegistration.controller = null;
+    }
+
     /**
      * Completes service installation, enabling the service and installing it into registrations.
      *
      * @param transaction the active transaction
+     * @param taskFactory the task factory
      */
     boolean completeInstallation(Transaction transaction, TaskFactory taskFactory) {
         primaryRegistration.installService(transaction, taskFactory);
@@ -213,15 +293,15 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
     }
 
     void clear(Transaction transaction, TaskFactory taskFactory) {
+        primaryRegistration.txnController.cycleDetector.remove(this);
         primaryRegistration.clearController(transaction, taskFactory);
         for (Registration registration: aliasRegistrations) {
             registration.clearController(transaction, taskFactory);
         }
-        final boolean undemand = isMode(MODE_ACTIVE);
+        if (isMode(MODE_ACTIVE)) {
+            undemandDependencies(transaction, taskFactory);
+        }
         for (DependencyImpl<?> dependency: dependencies) {
-            if (undemand) {
-                dependency.undemand(transaction, taskFactory);
-            }
             dependency.clearDependent(transaction, taskFactory);
         }
     }
@@ -373,9 +453,10 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
      * @param  transaction the active transaction
      * @param  taskFactory the task factory
      * @return the task that completes removal. Once this task is executed, the service will be at the
-     *         {@code REMOVED} state.
+     *         {@code REMOVED} state. If the service is being removed along with others, and the task removing them
+     *         is not built yet, the task that completes its stop instead.
      */
-    TaskController<Void> remove(Transaction transaction, TaskFactory taskFactory) {
+    TaskController<?> remove(Transaction transaction, TaskFactory taskFactory) {
         // idempotent
         synchronized (this) {
             if (getState(state) == STATE_REMOVED) {
@@ -387,58 +468,80 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
     }
 
     /**
-     * Notifies this service that it is demanded by one of its incoming dependencies.
-     * 
+     * Removes several services at once. Each service is stopped as by {@link #remove(Transaction, TaskFactory)},
+     * but a single task, depending on all the stop tasks, removes them all.
+     *
      * @param transaction the active transaction
      * @param taskFactory the task factory
+     * @param controllers the services to remove
      */
-    void demand(final Transaction transaction, final TaskFactory taskFactory) {
-        initTransactionalInfo(transaction);
+    static void remove(Transaction transaction, TaskFactory taskFactory, Collection<ServiceControllerImpl<?>> controllers) {
+        final List<ServiceControllerImpl<?>> removed = new ArrayList<>(controllers.size());
+        final List<TaskController<?>> stopTasks = new ArrayList<>();
+        for (ServiceControllerImpl<?> controller : controllers) {
+            synchronized (controller) {
+                if (getState(controller.state) == STATE_REMOVED) {
+                    continue;
+                }
+            }
+            controller.initTransactionalInfo(transaction);
+            if (controller.transactionalInfo.beginRemoval(transaction, taskFactory, stopTasks)) {
+                removed.add(controller);
+            }
+        }
+        if (removed.isEmpty()) {
+            return;
+        }
+        final TaskController<Void> removeTask = RemoveServiceTask.create(removed, stopTasks, transaction, taskFactory);
+        for (ServiceControllerImpl<?> controller : removed) {
+            controller.transactionalInfo.setRemoveTask(removeTask);
+        }
+    }
+
+    /**
+     * Notifies this service that one of its registrations became demanded by its incoming dependencies
+     * ({@code delta == 1}), or is no longer demanded ({@code delta == -1}). If the service itself becomes demanded or
+     * is no longer demanded, and it is not active, the change is passed on to its dependencies, and the service is
+     * transitioned once {@code propagation} is done.
+     * 
+     * @param propagation the demand propagation this change is part of
+     * @param delta the demand change, {@code 1} or {@code -1}
+     */
+    void updateDemand(final DemandPropagation propagation, final int delta) {
+        initTransactionalInfo(propagation.getTransaction());
         final boolean propagate;
         synchronized (this) {
-            if (demandedByCount ++ > 0) {
+            final int demanded = demandedByCount;
+            demandedByCount += delta;
+            if ((demanded == 0) == (demandedByCount == 0)) {
                 return;
             }
             propagate = !isMode(MODE_ACTIVE);
         }
         if (propagate) {
-            demandDependencies(transaction, taskFactory);
+            propagation.add(dependencies, delta);
         }
-        transactionalInfo.transition(transaction, taskFactory);
+        propagation.demandChanged(this, delta > 0);
     }
 
     /**
-     * Demands this service's dependencies to start.
+     * Transitions this service after its demand changed.
      * 
      * @param transaction the active transaction
      * @param taskFactory the task factory
      */
-    private void demandDependencies(Transaction transaction, TaskFactory taskFactory) {
-        for (DependencyImpl<?> dependency: dependencies) {
-            dependency.demand(transaction, taskFactory);
-        }
+    void transition(final Transaction transaction, final TaskFactory taskFactory) {
+        transactionalInfo.transition(transaction, taskFactory);
     }
 
     /**
-     * Notifies this service that it is no longer demanded by one of its incoming dependencies (invoked when incoming
-     * dependency is being disabled or removed).
+     * Demands this service's dependencies to start.
      * 
      * @param transaction the active transaction
      * @param taskFactory the task factory
      */
-    void undemand(final Transaction transaction, final TaskFactory taskFactory) {
-        initTransactionalInfo(transaction);
-        final boolean propagate;
-        synchronized (this) {
-            if (-- demandedByCount > 0) {
-                return;
-            }
-            propagate = !isMode(MODE_ACTIVE);
-        }
-        if (propagate) {
-            undemandDependencies(transaction, taskFactory);
-        }
-        transactionalInfo.transition(transaction, taskFactory);
+    private void demandDependencies(Transaction transaction, TaskFactory taskFactory) {
+        DemandPropagation.update(transaction, taskFactory, dependencies, 1);
     }
 
     /**
@@ -448,15 +551,23 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
      * @param taskFactory the task factory
      */
     private void undemandDependencies(Transaction transaction, TaskFactory taskFactory) {
-        for (DependencyImpl<?> dependency: dependencies) {
-            dependency.undemand(transaction, taskFactory);
-        }
+        DemandPropagation.update(transaction, taskFactory, dependencies, -1);
     }
 
     public ServiceName getServiceName() {
         return primaryRegistration.getServiceName();
     }
 
+    /**
+     * Returns the time this service is given to start or stop.
+     *
+     * @param transaction the active transaction
+     * @return the timeout in nanoseconds, {@code 0} if the service may take as long as it needs
+     */
+    long getTimeout(final Transaction transaction) {
+        return timeout != 0 ? timeout : getAbstractTransaction(transaction).getServiceTimeout();
+    }
+
     void dependencySatisfied(final Transaction transaction, final TaskFactory taskFactory, final TaskController<?> dependencyStartTask) {
         initTransactionalInfo(transaction);
         synchronized (ServiceControllerImpl.this) {
@@ -570,11 +681,19 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
         private volatile byte transactionalState = ServiceControllerImpl.this.currentState();
         // if this service is under transition, this field points to the task that completes the transition
         private TaskController<T> startTask = null;
-        // contains a list of all dependencyStartTasks
-        private ArrayList<TaskController<?>> dependencyStartTasks = new ArrayList<>();
+        // contains a list of all dependencyStartTasks, only allocated when the first one is added
+        private List<TaskController<?>> dependencyStartTasks = Collections.emptyList();
+        // the task that removes this service, once removal is scheduled
+        private TaskController<Void> removeTask = null;
+        // whether this service is being removed along with others, and the task that completes its stop meanwhile
+        private boolean removing;
+        private TaskController<?> removalStopTask;
 
         public synchronized void dependencySatisfied(Transaction transaction, TaskFactory taskFactory, TaskController<?> dependencyStartTask) {
             if (dependencyStartTask != null) {
+                if (dependencyStartTasks.isEmpty()) {
+                    dependencyStartTasks = new ArrayList<>();
+                }
                 dependencyStartTasks.add(dependencyStartTask);
             }
             transition(transaction, taskFactory);
@@ -664,11 +783,49 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
             }
         }
 
-        private synchronized TaskController<Void> scheduleRemoval(Transaction transaction, TaskFactory taskFactory) {
+        private synchronized TaskController<?> scheduleRemoval(Transaction transaction, TaskFactory taskFactory) {
             // idempotent
             if (transactionalState == STATE_REMOVED) {
                 return null;
             }
+            // a service is reached once per registration when its registry is removed, remove it only once
+            if (removeTask != null) {
+                return removeTask;
+            }
+            // the service is being removed along with others, and the task removing them is not built yet
+            if (removing) {
+                return removalStopTask;
+            }
+            final TaskController<?> stopTask = stop(transaction, taskFactory);
+            removeTask = RemoveServiceTask.create(ServiceControllerImpl.this, stopTask, transaction, taskFactory);
+            return removeTask;
+        }
+
+        /**
+         * Stops this service as part of a removal carried out by a task shared with other services.
+         *
+         * @param stopTasks the list the task that completes the stop is added to
+         * @return {@code false} if the service is already removed, or its removal already scheduled
+         */
+        private synchronized boolean beginRemoval(Transaction transaction, TaskFactory taskFactory, List<TaskController<?>> stopTasks) {
+            if (transactionalState == STATE_REMOVED || removeTask != null || removing) {
+                return false;
+            }
+            removing = true;
+            removalStopTask = stop(transaction, taskFactory);
+            if (removalStopTask != null) {
+                stopTasks.add(removalStopTask);
+            }
+            return true;
+        }
+
+        private synchronized void setRemoveTask(TaskController<Void> removeTask) {
+            this.removeTask = removeTask;
+            removalStopTask = null;
+        }
+
+        private TaskController<?> stop(Transaction transaction, TaskFactory taskFactory) {
+            assert holdsLock(this);
             // disable service
             synchronized (ServiceControllerImpl.this) {
                 state &= ~SERVICE_ENABLED;
@@ -677,7 +834,7 @@ final class ServiceControllerImpl<T> extends ServiceManager implements ServiceCo
             // after complete transition task completes
             final TaskController<?> stopTask = transition(transaction, taskFactory);
             assert transactionalState == STATE_STOPPING || transactionalState == STATE_DOWN || transactionalState == STATE_NEW; // prevent hard to find bugs
-            return RemoveServiceTask.create(ServiceControllerImpl.this, stopTask, transaction, taskFactory);
+            return stopTask;
         }
 
         private byte getState() {
@@ -19,29 +19,38 @@ package org.jboss.msc.txn;
 
 import org.jboss.msc.service.ServiceMode;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.jboss.msc.txn.Helper.getAbstractTransaction;
 
 /**
  * Performs disable/enable management operations over a set of one or more services.
+ * <p>
+ * The operations requested on a transaction are recorded, per service manager, in the transaction
+ * {@link ManagementPlan management plan}, and carried out right away by a management task. An operation requested
+ * while the task carrying out an earlier one on the same service manager has not run yet is folded into that task
+ * instead: an opposite operation cancels it, and a repeated one has no further effect. Toggling a service several
+ * times in a transaction therefore builds no task beyond the first one.
  * 
  * @author <a href="mailto:frainone@redhat.com">Flavia Rainone</a>
  *
  */
 abstract class ServiceManager {
 
-    private static final int ENABLE = 0;
-    private static final int DISABLE = 1;
+    private static final int NONE = 0;
+    private static final int ENABLE = 1;
+    private static final int DISABLE = 2;
 
-    private static final AttachmentKey<Map<ServiceManager, TaskController<Void>>[]> MANAGEMENT_TASKS = AttachmentKey.create(new Factory<Map<ServiceManager, TaskController<Void>>[]> () {
+    private static final AttachmentKey<ManagementPlan> MANAGEMENT_PLAN = AttachmentKey.create(new Factory<ManagementPlan> () {
 
-        @SuppressWarnings("unchecked")
         @Override
-        public Map<ServiceManager, TaskController<Void>>[] create() {
-            return new Map[] {Collections.EMPTY_MAP, Collections.EMPTY_MAP};
+        public ManagementPlan create() {
+            return new ManagementPlan();
         }
 
     });
@@ -69,26 +78,7 @@ abstract class ServiceManager {
      * {@code UP}.
      */
     public void disable(final UpdateTransaction transaction) {
-        // retrieve enable task if available
-        final Map<ServiceManager, TaskController<Void>>[] tasks = transaction.getAttachment(MANAGEMENT_TASKS);
-        final TaskControllerImpl<Void> enableTask;
-        synchronized (this) {
-            enableTask = (TaskControllerImpl<Void>) tasks[ENABLE].remove(this);
-            // if there is no enable task to cancel, and if there is not a disable task previously created for this txn
-            // create a disable task
-            if (enableTask == null && !tasks[DISABLE].containsKey(this)){
-                final DisableServiceTask task = new DisableServiceTask(transaction);
-                final TaskBuilderImpl<Void> tb = (TaskBuilderImpl<Void>) getAbstractTransaction(transaction).getTaskFactory().newTask(task);
-                final TaskController<Void> taskController = tb.setRevertible(task).release();
-                if (tasks[DISABLE] == Collections.EMPTY_MAP) {
-                    tasks[DISABLE] = new ConcurrentHashMap<>();
-                }
-                tasks[DISABLE].put(this, taskController);
-            }
-        }
-        if (enableTask != null) {
-            enableTask.forceCancel();
-        }
+        request(transaction, Collections.singletonList(this), DISABLE);
     }
 
     /**
@@ -97,71 +87,181 @@ abstract class ServiceManager {
      * <p> Services are enabled by default.
      */
     public void enable(final UpdateTransaction transaction) {
-        final Map<ServiceManager, TaskController<Void>>[] tasks = transaction.getAttachment(MANAGEMENT_TASKS);
-        // retrieve disable task if available
-        final TaskControllerImpl<Void> disableTask;
-        synchronized (this) {
-            disableTask = (TaskControllerImpl<Void>) tasks[DISABLE].remove(this);
-            // if there is no disable task to cancel, and if there is not a enable task previously created for this txn
-            // create a enable task
-            if (disableTask == null && !tasks[ENABLE].containsKey(this)) {
-                final EnableServiceTask task = new EnableServiceTask(transaction);
-                final TaskBuilderImpl<Void> tb = (TaskBuilderImpl<Void>) getAbstractTransaction(transaction).getTaskFactory().newTask(task);
-                final TaskController<Void> taskController = tb.setRevertible(task).release();
-                if (tasks[ENABLE] == Collections.EMPTY_MAP) {
-                    tasks[ENABLE] = new ConcurrentHashMap<>();
+        request(transaction, Collections.singletonList(this), ENABLE);
+    }
+
+    /**
+     * Management operation for disabling several service managers at once, equivalent to {@link
+     * #disable(UpdateTransaction) disabling} each one of them, but carried out by at most one new task.
+     *
+     * @param transaction the active transaction
+     * @param serviceManagers the service managers
+     */
+    static void disable(final UpdateTransaction transaction, final Collection<? extends ServiceManager> serviceManagers) {
+        request(transaction, serviceManagers, DISABLE);
+    }
+
+    /**
+     * Management operation for enabling several service managers at once, equivalent to {@link
+     * #enable(UpdateTransaction) enabling} each one of them, but carried out by at most one new task.
+     *
+     * @param transaction the active transaction
+     * @param serviceManagers the service managers
+     */
+    static void enable(final UpdateTransaction transaction, final Collection<? extends ServiceManager> serviceManagers) {
+        request(transaction, serviceManagers, ENABLE);
+    }
+
+    private static void request(final UpdateTransaction transaction, final Collection<? extends ServiceManager> serviceManagers, final int operation) {
+        transaction.getAttachment(MANAGEMENT_PLAN).request(transaction, serviceManagers, operation);
+    }
+
+    private boolean apply(final int operation, final Transaction transaction, final TaskFactory taskFactory) {
+        return operation == ENABLE ? doEnable(transaction, taskFactory) : doDisable(transaction, taskFactory);
+    }
+
+    private static int opposite(final int operation) {
+        return operation == ENABLE ? DISABLE : ENABLE;
+    }
+
+    /**
+     * The management operations requested in a transaction, by service manager.
+     */
+    private static final class ManagementPlan {
+
+        private final Map<ServiceManager, Request> requests = new IdentityHashMap<>();
+
+        synchronized void request(final Transaction transaction, final Collection<? extends ServiceManager> serviceManagers, final int operation) {
+            List<Request> scheduled = null;
+            for (ServiceManager serviceManager : serviceManagers) {
+                Request request = requests.get(serviceManager);
+                if (request == null) {
+                    request = new Request(serviceManager);
+                    requests.put(serviceManager, request);
+                }
+                if (request.request(operation)) {
+                    if (scheduled == null) {
+                        scheduled = new ArrayList<>();
+                    }
+                    scheduled.add(request);
                 }
-                tasks[ENABLE].put(this, taskController);
             }
-        }
-        if (disableTask != null) {
-            disableTask.forceCancel();
+            if (scheduled == null) {
+                return;
+            }
+            // the task is released while holding the plan, so that it cannot run before the requests point to it
+            final ManagementTask task = new ManagementTask(this, transaction, scheduled.toArray(new Request[scheduled.size()]));
+            final TaskBuilderImpl<Void> tb = (TaskBuilderImpl<Void>) getAbstractTransaction(transaction).getTaskFactory().newTask(task);
+            for (Request request : scheduled) {
+                // a request is carried out in the order it was made, and reverted the other way around
+                if (request.task != null) {
+                    tb.addDependency(request.task);
+                }
+            }
+            final TaskController<Void> taskController = tb.setRevertible(task).release();
+            for (Request request : scheduled) {
+                request.task = taskController;
+            }
         }
     }
 
-    private class EnableServiceTask implements Executable<Void>, Revertible {
+    /**
+     * The operations requested on a service manager in a transaction.
+     */
+    private static final class Request {
 
-        private final Transaction transaction;
-        private boolean enabled;
+        private final ServiceManager serviceManager;
+        /** The operation requested: as with a task that is cancelled, an operation cancelled by an opposite one is {@link #NONE}. */
+        private int requested = NONE;
+        /** The operation that the tasks run so far carried out, and whether it actually changed the service manager. */
+        private int applied = NONE;
+        private boolean changed;
+        /** Whether a task that did not run yet will carry out the requested operation. */
+        private boolean pending;
+        /** The last task scheduled for this request. */
+        private TaskController<Void> task;
 
-        public EnableServiceTask(final Transaction transaction) {
-            this.transaction = transaction;
+        Request(final ServiceManager serviceManager) {
+            this.serviceManager = serviceManager;
         }
 
-        @Override
-        public synchronized void execute(ExecuteContext<Void> context) {
-            try {
-                enabled = doEnable(transaction, context);
-            } finally {
-                context.complete();
+        /**
+         * Records {@code operation}.
+         *
+         * @return {@code true} if a new task must be scheduled to carry out the request
+         */
+        boolean request(final int operation) {
+            if (requested == operation) {
+                return false;
             }
-        }
-
-        @Override
-        public synchronized void rollback(RollbackContext context) {
-            try {
-                if (enabled) {
-                    doDisable(transaction, null);
-                }
-            } finally {
-                context.complete();
+            requested = requested == NONE ? operation : NONE;
+            if (pending || requested == applied) {
+                return false;
             }
+            pending = true;
+            return true;
         }
     }
 
-    private class DisableServiceTask implements Executable<Void>, Revertible {
+    /**
+     * Carries out the requests on several service managers, reverting only what it actually changed.
+     */
+    private static final class ManagementTask implements Executable<Void>, Revertible {
 
+        private final ManagementPlan plan;
         private final Transaction transaction;
-        private boolean disabled;
+        private final Request[] requests;
+        /** The operation each request was carried out to, and what it had applied before. */
+        private final int[] applied;
+        private final int[] previouslyApplied;
+        private final boolean[] previouslyChanged;
+        /** Whether this task reverted the previously applied operation, and whether it applied the new one. */
+        private final boolean[] reverted;
+        private final boolean[] changed;
 
-        public DisableServiceTask(final Transaction transaction) {
+        ManagementTask(final ManagementPlan plan, final Transaction transaction, final Request[] requests) {
+            this.plan = plan;
             this.transaction = transaction;
+            this.requests = requests;
+            applied = new int[requests.length];
+            previouslyApplied = new int[requests.length];
+            previouslyChanged = new boolean[requests.length];
+            reverted = new boolean[requests.length];
+            changed = new boolean[requests.length];
         }
 
         @Override
         public synchronized void execute(ExecuteContext<Void> context) {
             try {
-                disabled = doDisable(transaction, context);
+                synchronized (plan) {
+                    for (int i = 0; i < requests.length; i++) {
+                        final Request request = requests[i];
+                        request.pending = false;
+                        applied[i] = request.requested;
+                        previouslyApplied[i] = request.applied;
+                        previouslyChanged[i] = request.changed;
+                        request.applied = request.requested;
+                    }
+                }
+                for (int i = 0; i < requests.length; i++) {
+                    if (applied[i] == previouslyApplied[i]) {
+                        continue;
+                    }
+                    final ServiceManager serviceManager = requests[i].serviceManager;
+                    if (previouslyChanged[i]) {
+                        reverted[i] = serviceManager.apply(opposite(previouslyApplied[i]), transaction, context);
+                    }
+                    if (applied[i] != NONE) {
+                        changed[i] = serviceManager.apply(applied[i], transaction, context);
+                    }
+                }
+                synchronized (plan) {
+                    for (int i = 0; i < requests.length; i++) {
+                        if (applied[i] != previouslyApplied[i]) {
+                            requests[i].changed = changed[i];
+                        }
+                    }
+                }
             } finally {
                 context.complete();
             }
@@ -170,8 +270,20 @@ abstract class ServiceManager {
         @Override
         public synchronized void rollback(RollbackContext context) {
             try {
-                if (disabled) {
-                    doEnable(transaction, null);
+                for (int i = requests.length - 1; i >= 0; i--) {
+                    final ServiceManager serviceManager = requests[i].serviceManager;
+                    if (changed[i]) {
+                        serviceManager.apply(opposite(applied[i]), transaction, null);
+                    }
+                    if (reverted[i]) {
+                        serviceManager.apply(previouslyApplied[i], transaction, null);
+                    }
+                }
+                synchronized (plan) {
+                    for (int i = 0; i < requests.length; i++) {
+                        requests[i].applied = previouslyApplied[i];
+                        requests[i].changed = previouslyChanged[i];
+                    }
                 }
             } finally {
                 context.complete();
@@ -179,4 +291,3 @@ abstract class ServiceManager {
         }
     }
 }
-
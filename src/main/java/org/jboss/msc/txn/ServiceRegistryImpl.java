@@ -23,8 +23,8 @@ import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.ServiceNotFoundException;
 import org.jboss.msc.service.ServiceRegistry;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.jboss.msc._private.MSCLogger.TXN;
 import static org.jboss.msc.txn.Helper.getAbstractTransaction;
@@ -43,8 +43,8 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
     private static final byte REMOVED  = 1 << 0x01;
 
     final TransactionController txnController;
-    // map of service registrations
-    private final ConcurrentMap<ServiceName, Registration> registry = new ConcurrentHashMap<>();
+    // index of service registrations
+    private final RegistrationIndex registry = new RegistrationIndex();
     // service registry state, which could be: enabled, disabled, or removed
     private byte state = ENABLED;
 
@@ -83,12 +83,70 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
         return registration.getController();
     }
 
+    /**
+     * Gets the services whose names are {@code prefix} or start with it.
+     *
+     * @param prefix the service name prefix
+     * @return the service controllers, in no particular order
+     */
+    public List<ServiceController> getServices(final ServiceName prefix) {
+        return new ArrayList<ServiceController>(getServiceControllers(prefix));
+    }
+
+    private List<ServiceControllerImpl<?>> getServiceControllers(final ServiceName prefix) {
+        if (prefix == null) {
+            throw TXN.methodParameterIsNull("prefix");
+        }
+        final List<Registration> registrations = new ArrayList<>();
+        registry.getRegistrations(prefix, registrations);
+        final List<ServiceControllerImpl<?>> controllers = new ArrayList<>(registrations.size());
+        for (Registration registration : registrations) {
+            final ServiceControllerImpl<?> controller = registration.getController();
+            if (controller != null) {
+                controllers.add(controller);
+            }
+        }
+        return controllers;
+    }
+
+    @Override
+    public void disableServices(final ServiceName prefix, final UpdateTransaction transaction) throws IllegalStateException, IllegalArgumentException, InvalidTransactionStateException {
+        validateTransaction(transaction, txnController);
+        final List<ServiceControllerImpl<?>> controllers = getServiceControllers(prefix);
+        checkRemoved();
+        setModified(transaction);
+        if (!controllers.isEmpty()) {
+            disable(transaction, controllers);
+        }
+    }
+
+    @Override
+    public void enableServices(final ServiceName prefix, final UpdateTransaction transaction) throws IllegalStateException, IllegalArgumentException, InvalidTransactionStateException {
+        validateTransaction(transaction, txnController);
+        final List<ServiceControllerImpl<?>> controllers = getServiceControllers(prefix);
+        checkRemoved();
+        setModified(transaction);
+        if (!controllers.isEmpty()) {
+            enable(transaction, controllers);
+        }
+    }
+
+    @Override
+    public void removeServices(final ServiceName prefix, final UpdateTransaction transaction) throws IllegalArgumentException, InvalidTransactionStateException {
+        validateTransaction(transaction, txnController);
+        final List<ServiceControllerImpl<?>> controllers = getServiceControllers(prefix);
+        setModified(transaction);
+        if (!controllers.isEmpty()) {
+            ServiceControllerImpl.remove(transaction, getAbstractTransaction(transaction).getTaskFactory(), controllers);
+        }
+    }
+
     Registration getOrCreateRegistration(Transaction transaction, ServiceName name) {
         Registration registration = registry.get(name);
         if (registration == null) {
             checkRemoved();
             registration = new Registration(name, txnController);
-            Registration appearing = registry.putIfAbsent(name, registration);
+            Registration appearing = registry.putIfAbsent(registration);
             if (appearing != null) {
                 registration = appearing;
             } else if (Bits.anyAreSet(state, ENABLED)){
@@ -98,12 +156,47 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
         return registration;
     }
 
+    /**
+     * Gets or creates the registrations for all {@code names} in one pass.
+     *
+     * @param transaction the active transaction
+     * @param names       the service names
+     * @return the registrations, in the same order as {@code names}
+     */
+    Registration[] getOrCreateRegistrations(Transaction transaction, ServiceName[] names) {
+        final Registration[] registrations = new Registration[names.length];
+        TaskFactory taskFactory = null;
+        boolean checkedRemoved = false;
+        for (int i = 0; i < names.length; i++) {
+            Registration registration = registry.get(names[i]);
+            if (registration == null) {
+                if (!checkedRemoved) {
+                    checkRemoved();
+                    checkedRemoved = true;
+                }
+                registration = new Registration(names[i], txnController);
+                Registration appearing = registry.putIfAbsent(registration);
+                if (appearing != null) {
+                    registration = appearing;
+                } else if (Bits.anyAreSet(state, ENABLED)) {
+                    if (taskFactory == null) {
+                        taskFactory = getAbstractTransaction(transaction).getTaskFactory();
+                    }
+                    registration.enableRegistry(transaction, taskFactory);
+                }
+            }
+            registrations[i] = registration;
+        }
+        return registrations;
+    }
+
     Registration getRegistration(ServiceName name) {
         return registry.get(name);
     }
 
     ServiceControllerImpl<?> getRequiredServiceController(ServiceName serviceName) throws ServiceNotFoundException {
-        final ServiceControllerImpl<?> controller = registry.containsKey(serviceName)? registry.get(serviceName).getController(): null;
+        final Registration registration = registry.get(serviceName);
+        final ServiceControllerImpl<?> controller = registration != null ? registration.getController() : null;
         if (controller == null) {
             throw new ServiceNotFoundException("Service " + serviceName + " not found");
         }
@@ -140,7 +233,7 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
             }
             state = (byte) (state & ~ENABLED);
         }
-        for (Registration registration: registry.values()) {
+        for (Registration registration: registry) {
             registration.disableRegistry(transaction, taskFactory);
         }
         return true;
@@ -162,7 +255,7 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
             }
             state = (byte) (state | ENABLED);
         }
-        for (Registration registration: registry.values()) {
+        for (Registration registration: registry) {
             registration.enableRegistry(transaction, taskFactory);
         }
         return true;
@@ -192,7 +285,7 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
                     }
                     state = (byte) (state | REMOVED);
                 }
-                for (Registration registration : registry.values()) {
+                for (Registration registration : registry) {
                     registration.remove(transaction, context);
                 }
                 removed = true;
@@ -210,7 +303,7 @@ final class ServiceRegistryImpl extends ServiceManager implements ServiceRegistr
                 synchronized (ServiceRegistryImpl.this) {
                     state = (byte) (state & ~REMOVED);
                 }
-                for (Registration registration : registry.values()) {
+                for (Registration registration : registry) {
                     registration.reinstall();
                 }
             } finally {
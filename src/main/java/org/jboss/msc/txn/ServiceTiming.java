@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.ServiceName;
+
+/**
+ * Timing of a service start or stop performed by a transaction.
+ *
+ * @see ServiceTimingReport
+ */
+public final class ServiceTiming {
+
+    static final AttachmentKey<ConcurrentHashMap<TaskController<?>, ServiceTiming>> TIMINGS = AttachmentKey.create(new Factory<ConcurrentHashMap<TaskController<?>, ServiceTiming>> () {
+
+        @Override
+        public ConcurrentHashMap<TaskController<?>, ServiceTiming> create() {
+            return new ConcurrentHashMap<>();
+        }
+
+    });
+
+    private static final ServiceTiming[] NO_TIMINGS = new ServiceTiming[0];
+
+    private final ServiceName serviceName;
+    private final boolean start;
+    // timings of the start or stop tasks of the same transaction this one had to wait for
+    private final ServiceTiming[] predecessors;
+    private final long scheduleTime = System.nanoTime();
+    private volatile long executionTime;
+    private volatile long completionTime;
+    // the predecessor that completed last, and thus held this one back
+    private volatile ServiceTiming gatingPredecessor;
+
+    private ServiceTiming(final ServiceName serviceName, final boolean start, final ServiceTiming[] predecessors) {
+        this.serviceName = serviceName;
+        this.start = start;
+        this.predecessors = predecessors;
+    }
+
+    /**
+     * Creates the timing of a service start or stop that cannot begin before {@code predecessorTasks} are executed.
+     *
+     * @param serviceController the service controller
+     * @param start             {@code true} for a start, {@code false} for a stop
+     * @param predecessorTasks  the tasks to wait for, some of which may not be service starts or stops
+     * @param predecessorTask   another task to wait for, or {@code null}
+     * @param transaction       the active transaction
+     * @return the timing
+     */
+    static ServiceTiming schedule(final ServiceControllerImpl<?> serviceController, final boolean start,
+            final Collection<TaskController<?>> predecessorTasks, final TaskController<?> predecessorTask, final Transaction transaction) {
+        ServiceTiming[] predecessors = NO_TIMINGS;
+        final int size = predecessorTasks.size() + (predecessorTask != null ? 1 : 0);
+        if (size > 0) {
+            final ConcurrentHashMap<TaskController<?>, ServiceTiming> timings = transaction.getAttachment(TIMINGS);
+            int count = 0;
+            predecessors = new ServiceTiming[size];
+            for (TaskController<?> task : predecessorTasks) {
+                final ServiceTiming predecessor = timings.get(task);
+                if (predecessor != null) {
+                    predecessors[count++] = predecessor;
+                }
+            }
+            if (predecessorTask != null) {
+                final ServiceTiming predecessor = timings.get(predecessorTask);
+                if (predecessor != null) {
+                    predecessors[count++] = predecessor;
+                }
+            }
+            if (count < predecessors.length) {
+                final ServiceTiming[] resolved = new ServiceTiming[count];
+                System.arraycopy(predecessors, 0, resolved, 0, count);
+                predecessors = resolved;
+            }
+        }
+        return new ServiceTiming(serviceController.getServiceName(), start, predecessors);
+    }
+
+    /**
+     * Creates the timing of a service start or stop that is not recorded for the transaction report, but only tracked
+     * by the watchdog, from now on.
+     *
+     * @param serviceName the service name
+     * @param start       {@code true} for a start, {@code false} for a stop
+     * @return the timing
+     */
+    static ServiceTiming track(final ServiceName serviceName, final boolean start) {
+        final ServiceTiming timing = new ServiceTiming(serviceName, start, NO_TIMINGS);
+        timing.executionStarted();
+        return timing;
+    }
+
+    /**
+     * Binds this timing to the task performing the start or stop, so that the tasks depending on it can find it.
+     */
+    void register(final TaskController<?> task, final Transaction transaction) {
+        transaction.getAttachment(TIMINGS).put(task, this);
+    }
+
+    void executionStarted() {
+        ServiceTiming gatingPredecessor = null;
+        for (ServiceTiming predecessor : predecessors) {
+            if (predecessor.isComplete() && (gatingPredecessor == null || predecessor.completionTime > gatingPredecessor.completionTime)) {
+                gatingPredecessor = predecessor;
+            }
+        }
+        this.gatingPredecessor = gatingPredecessor;
+        executionTime = System.nanoTime();
+    }
+
+    void executionCompleted() {
+        completionTime = System.nanoTime();
+    }
+
+    boolean isComplete() {
+        return completionTime != 0;
+    }
+
+    long getExecutionTime() {
+        return executionTime;
+    }
+
+    long getCompletionTime() {
+        return completionTime;
+    }
+
+    ServiceTiming getGatingPredecessor() {
+        return gatingPredecessor;
+    }
+
+    /**
+     * Returns the name of the service.
+     *
+     * @return the service name
+     */
+    public ServiceName getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * Indicates whether this is the timing of a service start or of a service stop.
+     *
+     * @return {@code true} for a start, {@code false} for a stop
+     */
+    public boolean isStart() {
+        return start;
+    }
+
+    /**
+     * Returns the time from the scheduling of the start or stop to the beginning of its execution. This is mostly
+     * the time spent waiting for the services it depends on, for a start, or for its dependents, for a stop.
+     *
+     * @param unit the time unit
+     * @return the wait time
+     */
+    public long getWaitTime(final TimeUnit unit) {
+        return unit.convert(executionTime - scheduleTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time the service took to start or stop, including any asynchronous completion, or the time it has
+     * been starting or stopping so far if it is not complete yet.
+     *
+     * @param unit the time unit
+     * @return the start or stop duration
+     */
+    public long getDuration(final TimeUnit unit) {
+        final long completionTime = this.completionTime;
+        return unit.convert((completionTime != 0 ? completionTime : System.nanoTime()) - executionTime, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the wall-clock time this start or stop added to its transaction, when on the critical path: the time
+     * from the completion of the start or stop it waited for last, or from its own scheduling if it did not wait for
+     * any, to its own completion.
+     *
+     * @param unit the time unit
+     * @return the critical path contribution
+     */
+    public long getContribution(final TimeUnit unit) {
+        final ServiceTiming gatingPredecessor = this.gatingPredecessor;
+        final long readyTime = gatingPredecessor != null ? Math.max(scheduleTime, gatingPredecessor.completionTime) : scheduleTime;
+        return unit.convert(completionTime - readyTime, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return (start ? "start " : "stop ") + serviceName + " [wait=" + getWaitTime(TimeUnit.MICROSECONDS) + "us, duration="
+                + getDuration(TimeUnit.MICROSECONDS) + "us]";
+    }
+}
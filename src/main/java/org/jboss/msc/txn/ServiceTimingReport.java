@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of the services started and stopped by a transaction, along with its critical path: the chain of starts and
+ * stops, each one waiting for the previous one, that completed last. Shortening the critical path, for instance by
+ * making its services start lazily or asynchronously, is what shortens the transaction.
+ *
+ * @see TransactionController#getServiceTimingReport(Transaction)
+ */
+public final class ServiceTimingReport {
+
+    private static final Comparator<ServiceTiming> COMPLETION_ORDER = new Comparator<ServiceTiming>() {
+        @Override
+        public int compare(final ServiceTiming timing1, final ServiceTiming timing2) {
+            final long completion1 = timing1.getCompletionTime(), completion2 = timing2.getCompletionTime();
+            return completion1 < completion2 ? -1 : completion1 == completion2 ? 0 : 1;
+        }
+    };
+
+    private final List<ServiceTiming> timings;
+    private final List<ServiceTiming> criticalPath;
+
+    private ServiceTimingReport(final List<ServiceTiming> timings, final List<ServiceTiming> criticalPath) {
+        this.timings = timings;
+        this.criticalPath = criticalPath;
+    }
+
+    static ServiceTimingReport create(final Transaction transaction) {
+        final Map<TaskController<?>, ServiceTiming> attachment = transaction.getAttachmentIfPresent(ServiceTiming.TIMINGS);
+        if (attachment == null) {
+            return new ServiceTimingReport(Collections.<ServiceTiming>emptyList(), Collections.<ServiceTiming>emptyList());
+        }
+        final List<ServiceTiming> timings = new ArrayList<>(attachment.size());
+        for (ServiceTiming timing : attachment.values()) {
+            if (timing.isComplete()) {
+                timings.add(timing);
+            }
+        }
+        Collections.sort(timings, COMPLETION_ORDER);
+        final List<ServiceTiming> criticalPath = new ArrayList<>();
+        for (ServiceTiming timing = timings.isEmpty() ? null : timings.get(timings.size() - 1); timing != null; timing = timing.getGatingPredecessor()) {
+            criticalPath.add(timing);
+        }
+        Collections.reverse(criticalPath);
+        return new ServiceTimingReport(Collections.unmodifiableList(timings), Collections.unmodifiableList(criticalPath));
+    }
+
+    /**
+     * Returns the timings of all service starts and stops completed by the transaction, in completion order.
+     *
+     * @return the service timings
+     */
+    public List<ServiceTiming> getTimings() {
+        return timings;
+    }
+
+    /**
+     * Returns the critical path of the transaction, from the first start or stop to the one that completed last.
+     *
+     * @return the critical path, empty if the transaction did not start nor stop any service
+     */
+    public List<ServiceTiming> getCriticalPath() {
+        return criticalPath;
+    }
+
+    /**
+     * Returns the wall-clock time spent on the critical path, the sum of the
+     * {@link ServiceTiming#getContribution(TimeUnit) contributions} of its starts and stops.
+     *
+     * @param unit the time unit
+     * @return the critical path duration
+     */
+    public long getCriticalPathDuration(final TimeUnit unit) {
+        long duration = 0;
+        for (ServiceTiming timing : criticalPath) {
+            duration += timing.getContribution(TimeUnit.NANOSECONDS);
+        }
+        return unit.convert(duration, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("Critical path (").append(getCriticalPathDuration(TimeUnit.MICROSECONDS)).append("us):");
+        for (ServiceTiming timing : criticalPath) {
+            sb.append("\n    ").append(timing).append(" +").append(timing.getContribution(TimeUnit.MICROSECONDS)).append("us");
+        }
+        return sb.toString();
+    }
+}
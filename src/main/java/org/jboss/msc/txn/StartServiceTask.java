@@ -31,6 +31,8 @@ import org.jboss.msc.service.StartContext;
 import org.jboss.msc.service.StopContext;
 import org.jboss.msc.txn.Problem.Severity;
 
+import static org.jboss.msc.txn.Helper.getAbstractTransaction;
+
 /**
  * Task that starts service.
  * 
@@ -69,12 +71,17 @@ final class StartServiceTask<T> implements Executable<T>, Revertible {
                 setRevertible(new RevertStartingServiceTask(transaction, serviceController)).release();
 
         // start service task builder
-        final TaskBuilder<T> startTaskBuilder = taskFactory.newTask(new StartServiceTask<>(serviceController, transaction));
+        final ServiceTiming timing = getAbstractTransaction(transaction).serviceTimingRecorded
+                ? ServiceTiming.schedule(serviceController, true, dependencyStartTasks, null, transaction) : null;
+        final TaskBuilder<T> startTaskBuilder = taskFactory.newTask(new StartServiceTask<>(serviceController, transaction, timing));
         startTaskBuilder.addDependencies(dependencyStartTasks);
         startTaskBuilder.addDependency(revertStartTask);
 
         // start service
         final TaskController<T> start = startTaskBuilder.release();
+        if (timing != null) {
+            timing.register(start, transaction);
+        }
         transaction.getAttachment(START_TASKS).put(serviceController, revertStartTask);
 
         // notify service is starting
@@ -114,10 +121,18 @@ final class StartServiceTask<T> implements Executable<T>, Revertible {
 
     private final ServiceControllerImpl<T> serviceController;
     private final Transaction transaction;
+    private final ServiceTiming timing;
 
-    private StartServiceTask(final ServiceControllerImpl<T> serviceController, final Transaction transaction) {
+    private StartServiceTask(final ServiceControllerImpl<T> serviceController, final Transaction transaction, final ServiceTiming timing) {
         this.serviceController = serviceController;
         this.transaction = transaction;
+        this.timing = timing;
+    }
+
+    private void executionCompleted() {
+        if (timing != null) {
+            timing.executionCompleted();
+        }
     }
 
     /**
@@ -127,30 +142,60 @@ final class StartServiceTask<T> implements Executable<T>, Revertible {
      */
     @Override
     public void execute(final ExecuteContext<T> context) {
+        if (timing != null) {
+            timing.executionStarted();
+        }
         final Service<T> service = serviceController.getService();
         if (service == null ){
             serviceController.setServiceUp(null, transaction, context);
+            executionCompleted();
             context.complete(null);
             return;
         }
+        final LifecycleCompletion completion = new LifecycleCompletion(transaction, serviceController.getServiceName(), true, timing);
+        final Runnable failure = new Runnable() {
+            @Override
+            public void run() {
+                serviceController.setServiceFailed(transaction, context);
+                serviceController.notifyServiceFailed(transaction, context);
+                executionCompleted();
+                context.complete();
+            }
+        };
+        completion.setTimeout(serviceController.getTimeout(transaction), context, failure);
         service.start(new StartContext<T>() {
             @Override
-            public void complete(T result) {
-                serviceController.setServiceUp(result, transaction, context);
-                context.complete(result);
+            public void asynchronous() {
+                completion.asynchronous();
+            }
+
+            @Override
+            public void complete(final T result) {
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceUp(result, transaction, context);
+                        executionCompleted();
+                        context.complete(result);
+                    }
+                });
             }
 
             @Override
             public void complete() {
-                serviceController.setServiceUp(null, transaction, context);
-                context.complete();
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceUp(null, transaction, context);
+                        executionCompleted();
+                        context.complete();
+                    }
+                });
             }
 
             @Override
             public void fail() {
-                serviceController.setServiceFailed(transaction, context);
-                serviceController.notifyServiceFailed(transaction, context);
-                context.complete();
+                completion.run(failure);
             }
 
             @Override
@@ -256,19 +301,35 @@ final class StartServiceTask<T> implements Executable<T>, Revertible {
             context.complete();
             return;
         }
+        final LifecycleCompletion completion = new LifecycleCompletion(transaction);
         service.stop(new StopContext() {
+            @Override
+            public void asynchronous() {
+                completion.asynchronous();
+            }
+
             @Override
             public void complete(Void result) {
-                serviceController.setServiceDown(transaction, context);
-                serviceController.notifyServiceDown(transaction);
-                context.complete();
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceDown(transaction, context);
+                        serviceController.notifyServiceDown(transaction);
+                        context.complete();
+                    }
+                });
             }
 
             @Override
             public void complete() {
-                serviceController.setServiceDown(transaction, context);
-                serviceController.notifyServiceDown(transaction);
-                context.complete();
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceDown(transaction, context);
+                        serviceController.notifyServiceDown(transaction);
+                        context.complete();
+                    }
+                });
             }
 
             @Override
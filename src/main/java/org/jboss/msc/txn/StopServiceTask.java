@@ -30,6 +30,8 @@ import org.jboss.msc.txn.Problem.Severity;
 import java.util.Collection;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static org.jboss.msc.txn.Helper.getAbstractTransaction;
+
 /**
  * Task that stops service.
  * 
@@ -83,12 +85,17 @@ final class StopServiceTask<T> implements Executable<Void>, Revertible {
                 .setRevertible(new RevertStoppingServiceTask(serviceController, transaction)).release();
 
         // stop service
-        final TaskBuilder<Void> stopTaskBuilder = taskFactory.newTask(new StopServiceTask<T>(serviceController, transaction))
+        final ServiceTiming timing = getAbstractTransaction(transaction).serviceTimingRecorded
+                ? ServiceTiming.schedule(serviceController, false, dependentStopTasks, taskDependency, transaction) : null;
+        final TaskBuilder<Void> stopTaskBuilder = taskFactory.newTask(new StopServiceTask<T>(serviceController, transaction, timing))
                 .addDependency(revertStoppingTask).addDependencies(dependentStopTasks);
         if (taskDependency != null) {
             stopTaskBuilder.addDependency(taskDependency);
         }
         final TaskController<Void> stop = stopTaskBuilder.release();
+        if (timing != null) {
+            timing.register(stop, transaction);
+        }
 
         // revertStoppingTask is the one that needs to be cancelled if service has to revert stop
         transaction.getAttachment(STOP_TASKS).put(serviceController, revertStoppingTask);
@@ -115,30 +122,56 @@ final class StopServiceTask<T> implements Executable<Void>, Revertible {
 
     private final ServiceControllerImpl<T> serviceController;
     private final Transaction transaction;
+    private final ServiceTiming timing;
 
-    private StopServiceTask(final ServiceControllerImpl<T> serviceController, final Transaction transaction) {
+    private StopServiceTask(final ServiceControllerImpl<T> serviceController, final Transaction transaction, final ServiceTiming timing) {
         this.serviceController = serviceController;
         this.transaction = transaction;
+        this.timing = timing;
+    }
+
+    private void executionCompleted() {
+        if (timing != null) {
+            timing.executionCompleted();
+        }
     }
 
     public void execute(final ExecuteContext<Void> context) {
+        if (timing != null) {
+            timing.executionStarted();
+        }
         final Service<T> service = serviceController.getService();
         if (service == null) {
             serviceController.setServiceDown(transaction, context);
+            executionCompleted();
             context.complete();
             return;
         }
-        service.stop(new StopContext() {
+        final LifecycleCompletion completion = new LifecycleCompletion(transaction, serviceController.getServiceName(), false, timing);
+        final Runnable stopped = new Runnable() {
             @Override
-            public void complete(Void result) {
+            public void run() {
                 serviceController.setServiceDown(transaction, context);
+                executionCompleted();
                 context.complete();
             }
+        };
+        // a service that does not stop in time is considered down, so that its dependencies can stop as well
+        completion.setTimeout(serviceController.getTimeout(transaction), context, stopped);
+        service.stop(new StopContext() {
+            @Override
+            public void asynchronous() {
+                completion.asynchronous();
+            }
+
+            @Override
+            public void complete(Void result) {
+                completion.run(stopped);
+            }
 
             @Override
             public void complete() {
-                serviceController.setServiceDown(transaction, context);
-                context.complete();
+                completion.run(stopped);
             }
 
             @Override
@@ -212,27 +245,47 @@ final class StopServiceTask<T> implements Executable<Void>, Revertible {
             context.complete();
             return;
         }
+        final LifecycleCompletion completion = new LifecycleCompletion(transaction);
         service.start(new StartContext<T>() {
+            @Override
+            public void asynchronous() {
+                completion.asynchronous();
+            }
 
             @Override
-            public void complete(T result) {
-                serviceController.setServiceUp(result, transaction, context);
-                serviceController.notifyServiceUp(transaction);
-                context.complete();
+            public void complete(final T result) {
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceUp(result, transaction, context);
+                        serviceController.notifyServiceUp(transaction);
+                        context.complete();
+                    }
+                });
             }
 
             @Override
             public void complete() {
-                serviceController.setServiceUp(null, transaction, context);
-                serviceController.notifyServiceUp(transaction);
-                context.complete();
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceUp(null, transaction, context);
+                        serviceController.notifyServiceUp(transaction);
+                        context.complete();
+                    }
+                });
             }
 
             @Override
             public void fail() {
-                serviceController.setServiceFailed(transaction, context);
-                serviceController.notifyServiceFailed(transaction, null);
-                context.complete();
+                completion.run(new Runnable() {
+                    @Override
+                    public void run() {
+                        serviceController.setServiceFailed(transaction, context);
+                        serviceController.notifyServiceFailed(transaction, null);
+                        context.complete();
+                    }
+                });
             }
 
             @Override
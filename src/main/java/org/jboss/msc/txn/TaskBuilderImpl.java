@@ -18,6 +18,7 @@
 
 package org.jboss.msc.txn;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.IdentityHashMap;
@@ -37,9 +38,13 @@ final class TaskBuilderImpl<T> implements TaskBuilder<T> {
 
     @SuppressWarnings("rawtypes")
     private static final TaskControllerImpl[] NO_TASKS = new TaskControllerImpl[0];
+    /** Up to this many dependencies, duplicates are discarded by a linear scan rather than an identity set. */
+    private static final int SCAN_LIMIT = 8;
     private final Transaction transaction;
     private final TaskParent parent;
-    private final Set<TaskControllerImpl<?>> dependencies = Collections.newSetFromMap(new IdentityHashMap<TaskControllerImpl<?>, Boolean>());
+    private TaskControllerImpl<?>[] dependencies = NO_TASKS;
+    private int dependencyCount;
+    private Set<TaskControllerImpl<?>> dependencySet;
     private ClassLoader classLoader;
     private Executable<T> executable;
     private Revertible revertible;
@@ -107,14 +112,30 @@ final class TaskBuilderImpl<T> implements TaskBuilder<T> {
         if (dependency == null) {
             throw TXN.methodParameterIsNull("dependency");
         }
-        dependencies.add((TaskControllerImpl<?>) dependency);
+        final TaskControllerImpl<?> task = (TaskControllerImpl<?>) dependency;
+        if (dependencySet != null) {
+            if (!dependencySet.add(task)) return this;
+        } else {
+            for (int i = 0; i < dependencyCount; i++) {
+                if (dependencies[i] == task) return this;
+            }
+            if (dependencyCount == SCAN_LIMIT) {
+                dependencySet = Collections.newSetFromMap(new IdentityHashMap<TaskControllerImpl<?>, Boolean>());
+                dependencySet.addAll(Arrays.asList(dependencies).subList(0, dependencyCount));
+                dependencySet.add(task);
+            }
+        }
+        if (dependencyCount == dependencies.length) {
+            dependencies = Arrays.copyOf(dependencies, Math.max(4, dependencyCount << 1));
+        }
+        dependencies[dependencyCount++] = task;
         return this;
     }
 
     @Override
     public TaskControllerImpl<T> release() {
-        @SuppressWarnings("rawtypes")
-        final TaskControllerImpl[] dependenciesArray = dependencies.isEmpty() ? NO_TASKS : dependencies.toArray(new TaskControllerImpl[dependencies.size()]);
+        // most tasks have few dependencies, and none at all when they only take part in the transaction bookkeeping
+        final TaskControllerImpl<?>[] dependenciesArray = dependencyCount == dependencies.length ? dependencies : Arrays.copyOf(dependencies, dependencyCount);
         final TaskControllerImpl<T> controller = new TaskControllerImpl<>(parent, dependenciesArray, executable, revertible, classLoader);
         controller.install();
         return controller;
@@ -20,9 +20,7 @@ package org.jboss.msc.txn;
 
 import org.jboss.msc._private.MSCLogger;
 
-import java.util.ArrayList;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Arrays;
 
 import static java.lang.Thread.holdsLock;
 
@@ -104,6 +102,17 @@ import static java.lang.Thread.holdsLock;
  *  |                                                            |
  *  +------------------------------------------------------------+
  * </pre>
+ * Tasks are only ever cancelled when the start or stop of a service is reverted, which cancels its start or stop
+ * task, or when one of their dependencies is cancelled. So a lean task, with no revertible and no dependencies, is
+ * never cancelled and never enters {@code ROLLBACK_WAIT} or {@code ROLLBACK}. Its dependents do not count as unterminated and do not report their termination to it, as
+ * nothing would ever wait for them. Internal bookkeeping tasks, such as the one applying the pending demand changes
+ * of a transaction or the ones fanning out notifications, are lean.
+ * <p>
+ * Transitions are computed and applied while holding the task monitor, but the dependency, dependent and child
+ * counters are updated atomically outside of it. A counter can only enable a transition when it drops to zero,
+ * so only the notification that brings it to zero takes the monitor. This keeps tasks with thousands of
+ * dependencies or children from serializing all the completing threads on a single lock.
+ *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  * @author <a href="mailto:ropalka@redhat.com">Richard Opalka</a>
  * @author <a href="mailto:frainone@redhat.com">Flavia Rainone</a>
@@ -112,30 +121,61 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     private static final Object NO_RESULT = new Object();
 
+    private static final TaskControllerImpl<?>[] NO_TASKS = new TaskControllerImpl<?>[0];
+
     private static final ThreadLocal<ClassLoader> CL_HOLDER = new ThreadLocal<>();
 
-    private final DelegatingTaskParent parent;
+    /** The parent, replaced by the transaction top parent when this task is adopted. */
+    private volatile TaskParent parent;
     private TaskParent adopter;
     private final TaskControllerImpl<?>[] dependencies;
     private final Executable<T> executable;
     private final Revertible revertible;
     private final ClassLoader classLoader;
-    private final ArrayList<TaskControllerImpl<?>> dependents = new ArrayList<>();
-    private final Queue<TaskControllerImpl<?>> children = new ConcurrentLinkedQueue<>();
-
-    private int state;
-    private int unexecutedDependencies;
-    private int unexecutedChildren;
-    private int unterminatedChildren;
-    private int unterminatedDependents;
+    /**
+     * Dependents and children, kept in arrays that are only allocated when the first element is added and only
+     * ever appended to. Most tasks of a large transaction have neither, so they pay for no collection at all.
+     * Both are guarded by the task monitor.
+     */
+    private volatile TaskControllerImpl<?>[] dependents = NO_TASKS;
+    private int dependentCount;
+    /** How many dependents are notified of this task execution, or cancelled, set once by the transition. */
+    private int executedDependentCount;
+    private int cancelledDependentCount;
+    private TaskControllerImpl<?>[] children = NO_TASKS;
+    private int childCount;
+
+    private volatile int state;
+    // updated through AtomicFields
+    volatile int unexecutedDependencies;
+    volatile int unterminatedDependents;
+    /**
+     * The unexecuted children count in the low word, the unterminated children count in the high word, and the
+     * {@link #CHILDREN_ADOPTED} bit once the children have been renounced to the transaction.
+     */
+    // updated through AtomicFields
+    volatile long childCounts;
 
     private boolean sendChildExecuted;
 
     @SuppressWarnings("unchecked")
     private volatile T result = (T) NO_RESULT;
 
-    private static final ThreadLocal<TaskControllerImpl<?>[]> cachedDependents = new ThreadLocal<>();
-    private static final ThreadLocal<TaskChild> cachedChild = new ThreadLocal<>();
+    /**
+     * Hands the execution and the rollback of this task over to the executor, and the context handed to the
+     * executable. Both are created with the task, so that dispatching and executing it allocates nothing. The
+     * context handed to the revertible is only created when the task is rolled back, which happens at most once and
+     * never for most tasks, so they do not keep one around.
+     */
+    private final Dispatch dispatch = new Dispatch();
+    private final Context context = new Context();
+
+
+    private static final long ONE_UNEXECUTED_CHILD       = 1L;
+    private static final long ONE_UNTERMINATED_CHILD     = 1L << 32;
+    private static final long UNEXECUTED_CHILDREN_MASK   = 0x7FFFFFFFL;
+    private static final long UNTERMINATED_CHILDREN_MASK = 0x7FFFFFFFL << 32;
+    private static final long CHILDREN_ADOPTED           = 1L << 63;
 
     private static final int STATE_MASK        = 0xF;
 
@@ -209,46 +249,8 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     private static final int FLAG_USER_THREAD = 1 << 31; // called from user thread; do not block
 
-    private static class DelegatingTaskParent implements TaskParent {
-
-        private TaskParent delegate;
-
-        private DelegatingTaskParent(final TaskParent delegate) {
-            this.delegate = delegate;
-        }
-
-        private synchronized void setDelegate(final TaskParent delegate) {
-            this.delegate = delegate;
-        }
-
-        private synchronized TaskParent getDelegate() {
-            return delegate;
-        }
-
-        @Override
-        public void childExecuted(final boolean userThread) {
-            getDelegate().childExecuted(userThread);
-        }
-
-        @Override
-        public void childTerminated(final boolean userThread) {
-            getDelegate().childTerminated(userThread);
-        }
-
-        @Override
-        public void childAdded(final TaskChild child, final boolean userThread) throws InvalidTransactionStateException {
-            getDelegate().childAdded(child, userThread);
-        }
-
-        @Override
-        public Transaction getTransaction() {
-            return getDelegate().getTransaction();
-        }
-
-    }
-
     TaskControllerImpl(final TaskParent parent, final TaskControllerImpl<?>[] dependencies, final Executable<T> executable, final Revertible revertible, final ClassLoader classLoader) {
-        this.parent = new DelegatingTaskParent(parent);
+        this.parent = parent;
         this.dependencies = dependencies;
         this.executable = executable;
         this.revertible = revertible;
@@ -318,7 +320,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
             case STATE_EXECUTE_CHILDREN_WAIT: {
                 if (Bits.anyAreSet(state, FLAG_CANCEL_REQ)) {
                     return T_EXECUTE_CHILDREN_WAIT_to_ROLLBACK_WAIT;
-                } else if (unexecutedChildren == 0) {
+                } else if (unexecutedChildrenOf(childCounts) == 0) {
                     return T_EXECUTE_CHILDREN_WAIT_to_EXECUTE_DONE;
                 } else {
                     return T_NONE;
@@ -334,7 +336,8 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                 }
             }
             case STATE_ROLLBACK_WAIT: {
-                if (unterminatedDependents == 0 && (Bits.allAreSet(state, FLAG_CANCEL_REQ) || unterminatedChildren == 0)) {
+                assert !isLean();
+                if (unterminatedDependents == 0 && (Bits.allAreSet(state, FLAG_CANCEL_REQ) || unterminatedChildrenOf(childCounts) == 0)) {
                     return T_ROLLBACK_WAIT_to_ROLLBACK;
                 } else {
                     return T_NONE;
@@ -348,7 +351,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                 }
             }
             case STATE_TERMINATE_WAIT: {
-                if (unterminatedChildren == 0) {
+                if (unterminatedChildrenOf(childCounts) == 0) {
                     return T_TERMINATE_WAIT_to_TERMINATED;
                 } else {
                     return T_NONE;
@@ -386,8 +389,8 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                     return newState(STATE_EXECUTE, state | FLAG_DO_EXECUTE);
                 }
                 case T_EXECUTE_to_EXECUTE_CHILDREN_WAIT: {
-                    if (! dependents.isEmpty()) {
-                        cachedDependents.set(dependents.toArray(new TaskControllerImpl[dependents.size()]));
+                    if (dependentCount > 0) {
+                        executedDependentCount = dependentCount;
                         state = newState(STATE_EXECUTE_CHILDREN_WAIT, state | FLAG_SEND_DEPENDENCY_EXECUTED);
                     } else {
                         state = newState(STATE_EXECUTE_CHILDREN_WAIT, state);
@@ -418,8 +421,8 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                     return newState(STATE_TERMINATED, state);
                 }
                 case T_EXECUTE_WAIT_to_TERMINATE_WAIT: {
-                    if (! dependents.isEmpty()) {
-                        cachedDependents.set(dependents.toArray(new TaskControllerImpl[dependents.size()]));
+                    if (dependentCount > 0) {
+                        cancelledDependentCount = dependentCount;
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_CANCEL_DEPENDENTS | FLAG_SEND_CHILD_EXECUTED);
                     } else {
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_CHILD_EXECUTED);
@@ -427,21 +430,21 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                     continue;
                 }
                 case T_EXECUTE_to_TERMINATE_WAIT: {
-                    if (! dependents.isEmpty()) {
-                        cachedDependents.set(dependents.toArray(new TaskControllerImpl[dependents.size()]));
+                    if (dependentCount > 0) {
+                        cancelledDependentCount = dependentCount;
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_CANCEL_DEPENDENTS | FLAG_SEND_CHILD_EXECUTED);
                     } else {
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_CHILD_EXECUTED);
                     }
-                    if (Bits.allAreSet(state, FLAG_CANCEL_REQ) && children.size() > 0) {
+                    if (Bits.allAreSet(state, FLAG_CANCEL_REQ) && childCount > 0) {
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_RENOUNCE_CHILDREN);
                     }
                     continue;
                 }
                 case T_EXECUTE_CHILDREN_WAIT_to_ROLLBACK_WAIT: {
                     if (Bits.anyAreSet(state, FLAG_CANCEL_REQ)) {
-                        if (! dependents.isEmpty()) {
-                            cachedDependents.set(dependents.toArray(new TaskControllerImpl[dependents.size()]));
+                        if (dependentCount > 0) {
+                            cancelledDependentCount = dependentCount;
                             state = newState(STATE_ROLLBACK_WAIT, state | FLAG_SEND_CANCEL_DEPENDENTS);
                         } else {
                             state = newState(STATE_ROLLBACK_WAIT, state);
@@ -452,8 +455,8 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                 }
                 case T_EXECUTE_DONE_to_ROLLBACK_WAIT: {
                     if (Bits.anyAreSet(state, FLAG_CANCEL_REQ)) {
-                        if (! dependents.isEmpty()) {
-                            cachedDependents.set(dependents.toArray(new TaskControllerImpl[dependents.size()]));
+                        if (dependentCount > 0) {
+                            cancelledDependentCount = dependentCount;
                             state = newState(STATE_ROLLBACK_WAIT, state | FLAG_SEND_CANCEL_DEPENDENTS);
                         } else {
                             state = newState(STATE_ROLLBACK_WAIT, state);
@@ -470,7 +473,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
                     return newState(STATE_ROLLBACK, state | FLAG_DO_ROLLBACK);
                 }
                 case T_ROLLBACK_to_TERMINATE_WAIT: {
-                    if (Bits.allAreSet(state, FLAG_CANCEL_REQ) && children.size() > 0) {
+                    if (Bits.allAreSet(state, FLAG_CANCEL_REQ) && childCount > 0) {
                         state = newState(STATE_TERMINATE_WAIT, state | FLAG_SEND_RENOUNCE_CHILDREN);
                     } else {
                         state = newState(STATE_TERMINATE_WAIT, state);
@@ -493,30 +496,27 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         if (Bits.allAreSet(state, FLAG_SEND_RENOUNCE_CHILDREN)) {
             renounceChildren(userThread);
         }
-        final TaskControllerImpl<?>[] dependents = cachedDependents.get();
-        cachedDependents.remove();
-        if (dependents != null && Bits.allAreSet(state, FLAG_SEND_CANCEL_DEPENDENTS)) {
-            for (TaskControllerImpl<?> dependent : dependents) {
-                dependent.forceCancel(userThread);
+        // dependents are only ever appended, so the counts set by the transition select the ones to notify
+        if (Bits.allAreSet(state, FLAG_SEND_CANCEL_DEPENDENTS)) {
+            final TaskControllerImpl<?>[] dependents = this.dependents;
+            for (int i = 0; i < cancelledDependentCount; i++) {
+                dependents[i].forceCancel(userThread);
             }
         }
-        if (dependents != null && Bits.allAreSet(state, FLAG_SEND_DEPENDENCY_EXECUTED)) {
-            for (TaskControllerImpl<?> dependent : dependents) {
-                dependent.dependencyExecuted(userThread);
+        if (Bits.allAreSet(state, FLAG_SEND_DEPENDENCY_EXECUTED)) {
+            final TaskControllerImpl<?>[] dependents = this.dependents;
+            for (int i = 0; i < executedDependentCount; i++) {
+                dependents[i].dependencyExecuted(userThread);
             }
         }
         if (Bits.allAreSet(state, FLAG_SEND_CHILD_EXECUTED)) {
             parent.childExecuted(userThread);
         }
-        final TaskChild cachedChild = this.cachedChild.get();
-        this.cachedChild.remove();
         if (Bits.allAreSet(state, FLAG_SEND_COMMIT_REQ)) {
-            if (cachedChild != null) {
-                cachedChild.childCommit(userThread);
-            } else {
-                for (final TaskChild child : children) {
-                    child.childCommit(userThread);
-                }
+            // no child can be added past execution, so the children seen here are final
+            final TaskControllerImpl<?>[] children = this.children;
+            for (int i = 0; i < childCount; i++) {
+                children[i].childCommit(userThread);
             }
         }
         if (Bits.allAreSet(state, FLAG_SEND_CHILD_TERMINATED)) {
@@ -536,12 +536,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         assert Bits.oneIsSet(state, DO_FLAGS);
 
         if (userThread) {
-            if (Bits.allAreSet(state, FLAG_DO_EXECUTE)) {
-                safeExecute(new AsyncTask(FLAG_DO_EXECUTE));
-            }
-            if (Bits.allAreSet(state, FLAG_DO_ROLLBACK)) {
-                safeExecute(new AsyncTask(FLAG_DO_ROLLBACK));
-            }
+            dispatch.dispatch(state & DO_FLAGS);
         } else {
             if (Bits.allAreSet(state, FLAG_DO_EXECUTE)) {
                 execute();
@@ -557,17 +552,17 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         int state;
         final int unexecutedChildren;
         final int unterminatedChildren;
-        final Queue<TaskControllerImpl<?>> children;
+        final TaskControllerImpl<?>[] children;
         synchronized (this) {
-            unexecutedChildren = this.unexecutedChildren;
-            unterminatedChildren = this.unterminatedChildren;
-            children = this.children;
+            children = Arrays.copyOf(this.children, childCount);
             adopter = getInternalTransaction().topParent;
-            for (final TaskControllerImpl<?> child : this.children) {
-                child.parent.setDelegate(adopter);
+            for (final TaskControllerImpl<?> child : children) {
+                child.parent = adopter;
             }
-            this.unexecutedChildren = 0;
-            this.unterminatedChildren = 0;
+            // children that still report to us from now on are forwarded to the adopter
+            final long childCounts = AtomicFields.getAndSetChildCounts(this, CHILDREN_ADOPTED);
+            unexecutedChildren = unexecutedChildrenOf(childCounts);
+            unterminatedChildren = unterminatedChildrenOf(childCounts);
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -579,7 +574,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     private void safeExecute(final Runnable command) {
         try {
-            getInternalTransaction().getExecutor().execute(command);
+            getInternalTransaction().dispatch(command);
         } catch (Throwable t) {
             MSCLogger.ROOT.runnableExecuteFailed(t, command);
         }
@@ -591,6 +586,7 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     private void forceCancel(final boolean userThread) {
         assert ! holdsLock(this);
+        if (Bits.anyAreSet(this.state, FLAG_CANCEL_REQ)) return; // idempotent
         int state;
         synchronized (this) {
             if (Bits.anyAreSet(this.state, FLAG_CANCEL_REQ)) return; // idempotent
@@ -604,9 +600,10 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     private void dependentTerminated(final boolean userThread) {
         assert ! holdsLock(this);
+        if (isLean()) return; // dependents are not counted
+        if (AtomicFields.decrementUnterminatedDependents(this) > 0) return; // cannot enable any transition
         int state;
         synchronized (this) {
-            unterminatedDependents--;
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -615,6 +612,16 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         executeTasks(state);
     }
 
+    /**
+     * Returns whether this task is lean, i.e., has no revertible and no dependencies, and can thus never be cancelled
+     * once installed.
+     *
+     * @return {@code true} if this task is lean
+     */
+    private boolean isLean() {
+        return revertible == null && dependencies.length == 0;
+    }
+
     private static int newState(int sid, int state) {
         assert sid >= 0 && sid <= STATE_LAST;
         return sid & STATE_MASK | state & ~STATE_MASK;
@@ -624,6 +631,14 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         return oldVal & STATE_MASK;
     }
 
+    private static int unexecutedChildrenOf(final long childCounts) {
+        return (int) (childCounts & UNEXECUTED_CHILDREN_MASK);
+    }
+
+    private static int unterminatedChildrenOf(final long childCounts) {
+        return (int) ((childCounts & UNTERMINATED_CHILDREN_MASK) >>> 32);
+    }
+
     private static boolean stateIsIn(int state, int sid1) {
         final int sid = stateOf(state);
         return sid == sid1;
@@ -686,42 +701,11 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
     }
 
     void rollback() {
-        final ProblemReport problemReport = getTransaction().getReport();
         final Revertible rev = revertible;
         if (rev != null) try {
+            getInternalTransaction().taskRolledBack();
             setClassLoader();
-            rev.rollback(new RollbackContext() {
-                public void complete() {
-                    rollbackComplete();
-                }
-                public void addProblem(final Problem reason) {
-                    problemReport.addProblem(reason);
-                }
-
-                public void addProblem(final Problem.Severity severity, final String message) {
-                    addProblem(new Problem(severity, message));
-                }
-
-                public void addProblem(final Problem.Severity severity, final String message, final Throwable cause) {
-                    addProblem(new Problem(severity, message, cause));
-                }
-
-                public void addProblem(final String message, final Throwable cause) {
-                    addProblem(new Problem(message, cause));
-                }
-
-                public void addProblem(final String message) {
-                    addProblem(new Problem(message));
-                }
-
-                public void addProblem(final Throwable cause) {
-                    addProblem(new Problem(cause));
-                }
-
-                public <N> TaskBuilder<N> newTask(final Executable<N> task) throws IllegalStateException {
-                    return new TaskBuilderImpl<>(getTransaction(), TaskControllerImpl.this, task);
-                }
-            });
+            rev.rollback(new RollbackContextImpl());
         } catch (Throwable t) {
             MSCLogger.TASK.taskRollbackFailed(t, rev);
         } finally {
@@ -733,53 +717,9 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         final ProblemReport problemReport = getTransaction().getReport();
         final Executable<T> exec = executable;
         if (exec != null) try {
+            getInternalTransaction().taskExecuted();
             setClassLoader();
-            exec.execute(new ExecuteContext<T>() {
-                @Override
-                public void complete(final T result) {
-                    execComplete(result);
-                }
-
-                @Override
-                public void complete() {
-                    complete(null);
-                }
-
-                @Override
-                public void addProblem(final Problem reason) {
-                    problemReport.addProblem(reason);
-                }
-
-                @Override
-                public void addProblem(final Problem.Severity severity, final String message) {
-                    addProblem(new Problem(severity, message));
-                }
-
-                @Override
-                public void addProblem(final Problem.Severity severity, final String message, final Throwable cause) {
-                    addProblem(new Problem(severity, message, cause));
-                }
-
-                @Override
-                public void addProblem(final String message, final Throwable cause) {
-                    addProblem(new Problem(message, cause));
-                }
-
-                @Override
-                public void addProblem(final String message) {
-                    addProblem(new Problem(message));
-                }
-
-                @Override
-                public void addProblem(final Throwable cause) {
-                    addProblem(new Problem(cause));
-                }
-
-                @Override
-                public <N> TaskBuilder<N> newTask(final Executable<N> task) throws IllegalStateException {
-                    return new TaskBuilderImpl<>(getTransaction(), TaskControllerImpl.this, task);
-                }
-            });
+            exec.execute(context);
         } catch (Throwable t) {
             MSCLogger.TASK.taskExecutionFailed(t, exec);
             problemReport.addProblem(new Problem(Problem.Severity.CRITICAL, t));
@@ -791,47 +731,45 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
     @Override
     public void childExecuted(final boolean userThread) {
         assert ! holdsLock(this);
-        int state = 0;
-        TaskParent adopter = null;
-        synchronized (this) {
-            if (this.adopter != null) {
-                adopter = this.adopter;
-            } else {
-                unexecutedChildren--;
-                state = this.state;
-                if (userThread) state |= FLAG_USER_THREAD;
-                state = transition(state);
-                this.state = state & PERSISTENT_STATE;
+        long childCounts;
+        do {
+            childCounts = this.childCounts;
+            if (Bits.anyAreSet(childCounts, CHILDREN_ADOPTED)) {
+                adopter.childExecuted(userThread);
+                return;
             }
+        } while (! AtomicFields.compareAndSetChildCounts(this, childCounts, childCounts - ONE_UNEXECUTED_CHILD));
+        if (unexecutedChildrenOf(childCounts) > 1) return; // cannot enable any transition
+        int state;
+        synchronized (this) {
+            state = this.state;
+            if (userThread) state |= FLAG_USER_THREAD;
+            state = transition(state);
+            this.state = state & PERSISTENT_STATE;
         }
-        if (adopter == null) {
-            executeTasks(state);
-        } else {
-            adopter.childExecuted(userThread);
-        }
+        executeTasks(state);
     }
 
     @Override
     public void childTerminated(final boolean userThread) {
         assert ! holdsLock(this);
-        int state = 0;
-        TaskParent adopter = null;
-        synchronized (this) {
-            if (this.adopter != null) {
-                adopter = this.adopter;
-            } else {
-                unterminatedChildren--;
-                state = this.state;
-                if (userThread) state |= FLAG_USER_THREAD;
-                state = transition(state);
-                this.state = state & PERSISTENT_STATE;
+        long childCounts;
+        do {
+            childCounts = this.childCounts;
+            if (Bits.anyAreSet(childCounts, CHILDREN_ADOPTED)) {
+                adopter.childTerminated(userThread);
+                return;
             }
+        } while (! AtomicFields.compareAndSetChildCounts(this, childCounts, childCounts - ONE_UNTERMINATED_CHILD));
+        if (unterminatedChildrenOf(childCounts) > 1) return; // cannot enable any transition
+        int state;
+        synchronized (this) {
+            state = this.state;
+            if (userThread) state |= FLAG_USER_THREAD;
+            state = transition(state);
+            this.state = state & PERSISTENT_STATE;
         }
-        if (adopter == null) {
-            executeTasks(state);
-        } else {
-            adopter.childTerminated(userThread);
-        }
+        executeTasks(state);
     }
 
     @Override
@@ -839,26 +777,28 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         assert ! holdsLock(this);
         int state = 0;
         TaskParent adopter = null;
+        TaskChild committedChild = null;
         synchronized (this) {
             if (this.adopter != null) {
                 adopter = this.adopter;
             } else {
                 state = this.state;
                 if (stateIsIn(state, STATE_EXECUTE, STATE_ROLLBACK)) {
-                    unexecutedChildren++;
-                    unterminatedChildren++;
-                    children.add((TaskControllerImpl<?>) child);
+                    AtomicFields.getAndAddChildCounts(this, ONE_UNEXECUTED_CHILD | ONE_UNTERMINATED_CHILD);
+                    if (childCount == children.length) {
+                        children = Arrays.copyOf(children, Math.max(2, childCount << 1));
+                    }
+                    children[childCount++] = (TaskControllerImpl<?>) child;
                     if (userThread) state |= FLAG_USER_THREAD;
                     if (stateIsIn(state, STATE_ROLLBACK)) {
-                        cachedChild.set(child);
                         // TODO: The following line is ugly hack to support child tasks creation during rollback phase.
-                        // TODO: We're setting SEND_COMMIT_REQ flag instead of expected
-                        // TODO: SEND_ROLLBACK_REQ one because if we'd setup SEND_ROLLBACK_REQ
+                        // TODO: We're sending a commit request to the child instead of expected
+                        // TODO: rollback request because if we'd setup ROLLBACK_REQ
                         // TODO: on newly installed child task, it would be terminated before execution because
                         // TODO: tasks in EXECUTE_WAIT state move to TERMINATE_WAIT state if ROLLBACK_REQ flag is set.
                         // TODO: Anyway it doesn't matter if such child task created during parent revert phase is
                         // TODO: committed or rolled back because it cannot have Revertible component.
-                        state |= FLAG_SEND_COMMIT_REQ;
+                        committedChild = child;
                     }
                     state = transition(state);
                     this.state = state & PERSISTENT_STATE;
@@ -874,6 +814,9 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         }
         if (adopter == null) {
             executeTasks(state);
+            if (committedChild != null) {
+                committedChild.childCommit(userThread);
+            }
         } else {
             adopter.childAdded(child, userThread);
         }
@@ -881,9 +824,9 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
 
     public void dependencyExecuted(final boolean userThread) {
         assert ! holdsLock(this);
+        if (AtomicFields.decrementUnexecutedDependencies(this) > 0) return; // cannot enable any transition
         int state;
         synchronized (this) {
-            unexecutedDependencies--;
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             state = transition(state);
@@ -914,8 +857,13 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
             state = this.state;
             if (userThread) state |= FLAG_USER_THREAD;
             if (stateIsIn(state, STATE_EXECUTE_WAIT, STATE_EXECUTE, STATE_EXECUTE_CHILDREN_WAIT, STATE_EXECUTE_DONE, STATE_TERMINATE_WAIT, STATE_TERMINATED)) {
-                dependents.add(dependent);
-                unterminatedDependents++;
+                if (dependentCount == dependents.length) {
+                    dependents = Arrays.copyOf(dependents, Math.max(2, dependentCount << 1));
+                }
+                dependents[dependentCount++] = dependent;
+                if (!isLean()) {
+                    AtomicFields.incrementUnterminatedDependents(this);
+                }
                 state = transition(state);
                 this.state = state & PERSISTENT_STATE;
             } else {
@@ -992,20 +940,133 @@ final class TaskControllerImpl<T> implements TaskController<T>, TaskParent, Task
         executeTasks(state);
     }
 
-    class AsyncTask implements Runnable {
-        private final int state;
+    /**
+     * The runnable dispatched to the executor, created once per task and reused for its execution and its rollback.
+     */
+    private final class Dispatch implements Runnable {
+
+        /** The work dispatched, {@link #FLAG_DO_EXECUTE} or {@link #FLAG_DO_ROLLBACK}, and when. */
+        private int state;
+        private long time;
 
-        AsyncTask(final int state) {
+        void dispatch(final int state) {
+            final AbstractTransaction transaction = getInternalTransaction();
+            // execution and rollback are never dispatched at the same time, run() reads these before anything else
             this.state = state;
+            time = transaction.executorDelayRecorded ? System.nanoTime() : 0L;
+            safeExecute(this);
         }
 
+        @Override
         public void run() {
+            final int state = this.state;
+            final long time = this.time;
+            if (time != 0L) {
+                getInternalTransaction().txnController.metrics.taskDispatched(System.nanoTime() - time);
+            }
             executeTasks(state);
         }
 
         @Override
         public String toString() {
-            return TaskControllerImpl.this + ".AsyncTask@" + System.identityHashCode(this);
+            return TaskControllerImpl.this + ".Dispatch";
+        }
+    }
+
+    /**
+     * The context handed to the executable of this task.
+     */
+    private final class Context implements ExecuteContext<T> {
+
+        @Override
+        public void complete(final T result) {
+            execComplete(result);
+        }
+
+        @Override
+        public void complete() {
+            execComplete(null);
+        }
+
+        @Override
+        public void addProblem(final Problem reason) {
+            getTransaction().getReport().addProblem(reason);
+        }
+
+        @Override
+        public void addProblem(final Problem.Severity severity, final String message) {
+            addProblem(new Problem(severity, message));
+        }
+
+        @Override
+        public void addProblem(final Problem.Severity severity, final String message, final Throwable cause) {
+            addProblem(new Problem(severity, message, cause));
+        }
+
+        @Override
+        public void addProblem(final String message, final Throwable cause) {
+            addProblem(new Problem(message, cause));
+        }
+
+        @Override
+        public void addProblem(final String message) {
+            addProblem(new Problem(message));
+        }
+
+        @Override
+        public void addProblem(final Throwable cause) {
+            addProblem(new Problem(cause));
+        }
+
+        @Override
+        public <N> TaskBuilder<N> newTask(final Executable<N> task) throws IllegalStateException {
+            return new TaskBuilderImpl<>(getTransaction(), TaskControllerImpl.this, task);
+        }
+    }
+
+    /**
+     * The context handed to the revertible of this task.
+     */
+    private final class RollbackContextImpl implements RollbackContext {
+
+        @Override
+        public void complete() {
+            rollbackComplete();
+        }
+
+        @Override
+        public void addProblem(final Problem reason) {
+            getTransaction().getReport().addProblem(reason);
+        }
+
+        @Override
+        public void addProblem(final Problem.Severity severity, final String message) {
+            addProblem(new Problem(severity, message));
+        }
+
+        @Override
+        public void addProblem(final Problem.Severity severity, final String message, final Throwable cause) {
+            addProblem(new Problem(severity, message, cause));
+        }
+
+        @Override
+        public void addProblem(final String message, final Throwable cause) {
+            addProblem(new Problem(message, cause));
+        }
+
+        @Override
+        public void addProblem(final String message) {
+            addProblem(new Problem(message));
+        }
+
+        @Override
+        public void addProblem(final Throwable cause) {
+            addProblem(new Problem(cause));
+        }
+
+        @Override
+        public <N> TaskBuilder<N> newTask(final Executable<N> task) throws IllegalStateException {
+            return new TaskBuilderImpl<>(getTransaction(), TaskControllerImpl.this, task);
         }
     }
 }
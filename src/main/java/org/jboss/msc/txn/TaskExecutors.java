@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import static org.jboss.msc._private.MSCLogger.TXN;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Factory methods for executors that transactions can run their tasks on.
+ * Any {@link java.util.concurrent.Executor} can be passed to the transaction creation methods of
+ * {@link TransactionController}; the executors created here are the ones the transaction engine knows how to take
+ * advantage of.
+ */
+public final class TaskExecutors {
+
+    private TaskExecutors() {
+    }
+
+    /**
+     * Creates a work-stealing executor with the given parallelism.
+     * <p>
+     * When a task running on one of its workers makes other tasks runnable (its dependents, or its parent once its
+     * last child completes), those tasks are pushed to the same worker's local deque instead of a shared queue.
+     * Dependency chains then tend to execute on the same core, and idle workers steal whatever the busy ones cannot
+     * get to. The returned executor must be shut down by its creator.
+     *
+     * @param parallelism the number of worker threads
+     * @return the executor
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public static ExecutorService newWorkStealingExecutor(final int parallelism) throws IllegalArgumentException {
+        if (parallelism <= 0) {
+            throw TXN.methodParameterIsInvalid("parallelism");
+        }
+        return new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Creates a work-stealing executor using all available processors.
+     *
+     * @return the executor
+     * @see #newWorkStealingExecutor(int)
+     */
+    public static ExecutorService newWorkStealingExecutor() {
+        return newWorkStealingExecutor(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Indicates whether the running JVM supports {@link #newVirtualThreadExecutor() virtual thread executors}.
+     *
+     * @return {@code true} if running on Java 21 or later
+     */
+    public static boolean isVirtualThreadExecutorSupported() {
+        return VirtualThreads.isSupported();
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread.
+     * <p>
+     * Suits services that block while starting or stopping, on JNDI lookups, files or connection pools for instance:
+     * a blocked start only parks its virtual thread, so there is no thread pool to size after the number of services
+     * that may be blocked at the same time. Services that can complete asynchronously are still better off doing so.
+     * Tasks are executed outside of the monitors of the task engine, which never waits for other threads by itself,
+     * so a blocked start only pins its carrier thread if it blocks inside a {@code synchronized} block of its own.
+     * The returned executor must be shut down by its creator.
+     *
+     * @return the executor
+     * @throws UnsupportedOperationException if not running on Java 21 or later
+     */
+    public static ExecutorService newVirtualThreadExecutor() throws UnsupportedOperationException {
+        return VirtualThreads.newExecutor();
+    }
+}
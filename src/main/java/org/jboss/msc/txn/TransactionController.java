@@ -21,11 +21,11 @@ import org.jboss.msc._private.MSCLogger;
 import org.jboss.msc.service.ServiceContainer;
 import org.jboss.msc.service.ServiceContext;
 
-import java.util.Deque;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static org.jboss.msc._private.MSCLogger.TXN;
 import static org.jboss.msc.txn.Helper.getAbstractTransaction;
@@ -42,23 +42,213 @@ public final class TransactionController extends SimpleAttachable {
     private static final RuntimePermission TXN_CONTROLLER_CREATE_PERM = new RuntimePermission("canCreateTransactionController");
 
     private final ServiceContext serviceContext = new ServiceContextImpl(this);
-    // TXN administration lock
+    // TXN administration lock, only taken when TXNs have to be queued or dequeued
     private final Object txnLock = new Object();
+    // dependency cycle detection of services installed by TXNs of this controller
+    final IncrementalCycleDetector cycleDetector = new IncrementalCycleDetector();
+    // count of running TXNs in this round, along with the UPDATE_RUNNING and TXNS_PENDING flags
+    private volatile int admission;
+    // orders TXNs that are pending execution; guarded by txnLock
+    private final AdmissionPolicy admissionPolicy;
+    // count of TXNs pending execution; guarded by txnLock
+    private int pendingTxns;
+    // lifecycle metrics of TXNs created by this controller
+    final TransactionMetricsRecorder metrics = new TransactionMetricsRecorder();
+    // count of dependents above which dependency up and down notifications are fanned out, 0 if they never are
+    private volatile int notificationFanOutThreshold;
+    // service starts and stops being executed by TXNs of this controller
+    final LifecycleWatchdog watchdog = new LifecycleWatchdog();
+    // whether TXNs created from now on record the timings of the service starts and stops they perform
+    private volatile boolean serviceTimingRecorded;
+
     // whether currently running TXNs are read-only or updating. There can be only single updating TXN at a time.
-    private static boolean updatingTxnRunning;
-    // count of running TXNs in this round
-    private static int runningTxns;
-    // TXNs that are pending execution, each item is either single updating TXN or set of reading TXNs
-    private static final Deque<PendingTxnEntry> pendingTxns = new LinkedList<>();
+    private static final int UPDATE_RUNNING = 1 << 30;
+    // whether there are pending TXNs; while set, TXNs are admitted and the last running TXN is released under txnLock
+    private static final int TXNS_PENDING = 1 << 29;
+    private static final int RUNNING_MASK = TXNS_PENDING - 1;
+
+    private static final AtomicIntegerFieldUpdater<TransactionController> admissionUpdater = AtomicIntegerFieldUpdater.newUpdater(TransactionController.class, "admission");
 
-    private TransactionController() {}
+    private TransactionController(final AdmissionPolicy admissionPolicy) {
+        admissionPolicy.setOwner(this);
+        this.admissionPolicy = admissionPolicy;
+    }
 
+    /**
+     * Creates a transaction controller that admits queued transactions in {@link AdmissionPolicy#fifo() FIFO} order.
+     *
+     * @return the transaction controller
+     */
     public static TransactionController createInstance() {
+        return createInstance(AdmissionPolicy.fifo());
+    }
+
+    /**
+     * Creates a transaction controller that admits queued transactions according to {@code admissionPolicy}.
+     *
+     * @param admissionPolicy the admission policy, which must not be used by any other transaction controller
+     * @return the transaction controller
+     * @throws IllegalArgumentException if {@code admissionPolicy} is {@code null} or is already used by another controller
+     */
+    public static TransactionController createInstance(final AdmissionPolicy admissionPolicy) throws IllegalArgumentException {
         final SecurityManager sm = System.getSecurityManager();
         if (sm != null) {
             sm.checkPermission(TXN_CONTROLLER_CREATE_PERM);
         }
-        return new TransactionController();
+        if (admissionPolicy == null) {
+            throw TXN.methodParameterIsNull("admissionPolicy");
+        }
+        return new TransactionController(admissionPolicy);
+    }
+
+    /**
+     * Returns the policy this controller admits queued transactions with.
+     *
+     * @return the admission policy
+     */
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    /**
+     * Returns the number of dependents above which services notify them in parallel that they are starting or
+     * stopping.
+     *
+     * @return the fan-out threshold, or {@code 0} if dependents are always notified sequentially
+     */
+    public int getNotificationFanOutThreshold() {
+        return notificationFanOutThreshold;
+    }
+
+    /**
+     * Sets the number of dependents above which services notify them in parallel that they are starting.
+     * Above the threshold, dependents are split in chunks of {@code threshold} dependents, each chunk but the first
+     * notified by a task of its own. Dependents are notified sequentially that services are stopping, and by
+     * default that they are starting too.
+     *
+     * @param threshold the fan-out threshold, or {@code 0} to always notify dependents sequentially
+     * @throws IllegalArgumentException if {@code threshold} is negative
+     */
+    public void setNotificationFanOutThreshold(final int threshold) throws IllegalArgumentException {
+        if (threshold < 0) {
+            throw TXN.illegalFanOutThreshold(threshold);
+        }
+        notificationFanOutThreshold = threshold;
+    }
+
+    /**
+     * Returns whether the time task work waits in the transaction executors is recorded in the
+     * {@link TransactionMetrics#getExecutorQueueingDelay() metrics}.
+     *
+     * @return {@code true} if executor queueing delays are recorded
+     */
+    public boolean isExecutorQueueingDelayRecorded() {
+        return metrics.isExecutorDelayRecorded();
+    }
+
+    /**
+     * Sets whether the time task work waits in the transaction executors is recorded in the
+     * {@link TransactionMetrics#getExecutorQueueingDelay() metrics}. Recording it costs two clock reads and a
+     * histogram update shared by all executor threads on every dispatched task, so it is disabled by default. The
+     * setting applies to transactions created afterwards.
+     *
+     * @param recorded {@code true} to record executor queueing delays
+     */
+    public void setExecutorQueueingDelayRecorded(final boolean recorded) {
+        metrics.setExecutorDelayRecorded(recorded);
+    }
+
+    /**
+     * Returns whether the tasks executed and rolled back by each transaction are counted in the
+     * {@link TransactionMetrics#getExecutedTasks() metrics}.
+     *
+     * @return {@code true} if task counts are recorded
+     */
+    public boolean isTaskCountsRecorded() {
+        return metrics.isTaskCountsRecorded();
+    }
+
+    /**
+     * Sets whether the tasks executed and rolled back by each transaction are counted in the
+     * {@link TransactionMetrics#getExecutedTasks() metrics}. Counting them costs an atomic update of a counter shared
+     * by all the tasks of a transaction on every task completion, so it is disabled by default. The setting applies to
+     * transactions created afterwards.
+     *
+     * @param recorded {@code true} to record task counts
+     */
+    public void setTaskCountsRecorded(final boolean recorded) {
+        metrics.setTaskCountsRecorded(recorded);
+    }
+
+    /**
+     * Returns a snapshot of the lifecycle metrics of the transactions created by this controller.
+     *
+     * @return the transaction metrics
+     */
+    public TransactionMetrics getMetrics() {
+        final int pendingTxns;
+        synchronized (txnLock) {
+            pendingTxns = this.pendingTxns;
+        }
+        return metrics.getMetrics(pendingTxns);
+    }
+
+    /**
+     * Returns a management view of the {@link #getMetrics() metrics} of this controller, to be registered with an
+     * {@link javax.management.MBeanServer}:
+     * <PRE>
+     *     ManagementFactory.getPlatformMBeanServer().registerMBean(controller.getMetricsMXBean(),
+     *             new ObjectName("org.jboss.msc:type=TransactionController,name=boot"));
+     * </PRE>
+     *
+     * @return the metrics management view
+     */
+    public TransactionMetricsMXBean getMetricsMXBean() {
+        return new TransactionMetricsMXBean() {
+            public long getCreatedTransactions() {
+                return getMetrics().getCreatedTransactions();
+            }
+
+            public long getCommittedTransactions() {
+                return getMetrics().getCommittedTransactions();
+            }
+
+            public long getRolledBackTransactions() {
+                return getMetrics().getRolledBackTransactions();
+            }
+
+            public int getPendingTransactions() {
+                return getMetrics().getPendingTransactions();
+            }
+
+            public Histogram getCreateToPrepareTime() {
+                return getMetrics().getCreateToPrepareTime();
+            }
+
+            public Histogram getPrepareToCommitTime() {
+                return getMetrics().getPrepareToCommitTime();
+            }
+
+            public Histogram getCommitToTerminateTime() {
+                return getMetrics().getCommitToTerminateTime();
+            }
+
+            public Histogram getPendingQueueDepth() {
+                return getMetrics().getPendingQueueDepth();
+            }
+
+            public Histogram getExecutedTasks() {
+                return getMetrics().getExecutedTasks();
+            }
+
+            public Histogram getRolledBackTasks() {
+                return getMetrics().getRolledBackTasks();
+            }
+
+            public Histogram getExecutorQueueingDelay() {
+                return getMetrics().getExecutorQueueingDelay();
+            }
+        };
     }
 
     /**
@@ -115,6 +305,10 @@ public final class TransactionController extends SimpleAttachable {
     /**
      * Creates a new updating transaction. This method is asynchronous in its nature.
      * The completion <B>listener</B> is called when updating transaction is created and ready to be used.
+     * <p>
+     * If <B>executor</B> is a {@link java.util.concurrent.ForkJoinPool}, such as the ones created by
+     * {@link TaskExecutors#newWorkStealingExecutor(int)}, tasks made runnable by a task executing on one of its
+     * workers are pushed to that worker's local deque rather than submitted to the pool's shared queue.
      *
      * @param executor the executor to use to run tasks
      * @param maxSeverity the maximum severity to allow
@@ -201,12 +395,15 @@ public final class TransactionController extends SimpleAttachable {
         }
         List<PendingTxnEntry> notifications = null;
         synchronized (txnLock) {
-            assert runningTxns == 1;
-            updatingTxnRunning = false;
-            if (pendingTxns.size() > 0) {
-                pendingTxns.addFirst(new PendingTxnEntry(basicReadTxn, listener));
-                runningTxns--;
-                notifications = getNotifications();
+            while (true) {
+                final int admission = this.admission;
+                assert admission == (UPDATE_RUNNING | 1) || admission == (UPDATE_RUNNING | TXNS_PENDING | 1);
+                if ((admission & TXNS_PENDING) != 0) {
+                    queue(new PendingTxnEntry(basicReadTxn, listener), true);
+                    notifications = getNotifications();
+                    break;
+                }
+                if (admissionUpdater.compareAndSet(this, admission, 1)) break;
             }
         }
         if (notifications != null) {
@@ -266,96 +463,139 @@ public final class TransactionController extends SimpleAttachable {
             return true;
         }
         synchronized (txnLock) {
-            assert runningTxns > 0;
-            if (!pendingTxns.isEmpty()) {
-                // cannot be upgraded because there are some pending updating txns registered already
-                return false;
-            }
-            if (runningTxns == 1) {
-                updatingTxnRunning = true;
-            } else {
-                pendingTxns.add(new PendingTxnEntry(new BasicUpdateTransaction(basicReadTxn), listener));
-                runningTxns--;
-                return true;
+            while (true) {
+                final int admission = this.admission;
+                assert (admission & RUNNING_MASK) > 0;
+                if ((admission & TXNS_PENDING) != 0) {
+                    // cannot be upgraded because there are some pending updating txns registered already
+                    return false;
+                }
+                if ((admission & RUNNING_MASK) == 1) {
+                    if (admissionUpdater.compareAndSet(this, admission, admission | UPDATE_RUNNING)) break;
+                } else if (admissionUpdater.compareAndSet(this, admission, (admission - 1) | TXNS_PENDING)) {
+                    // other read-only txns are still running, the last one to leave will admit this one
+                    queue(new PendingTxnEntry(new BasicUpdateTransaction(basicReadTxn), listener), false);
+                    return true;
+                }
             }
         }
         safeCallListener(listener, new BasicUpdateTransaction(basicReadTxn));
         return true;
     }
 
-    private static final class PendingTxnEntry {
+    private void queue(final PendingTxnEntry entry, final boolean first) {
+        assert Thread.holdsLock(txnLock);
+        if (first) {
+            admissionPolicy.addFirst(entry);
+        } else {
+            admissionPolicy.add(entry);
+        }
+        metrics.transactionQueued(++pendingTxns);
+    }
+
+    static final class PendingTxnEntry {
         private final Transaction txn;
         private final Listener<? extends Transaction> listener;
+        final long queueTime = System.nanoTime();
 
         private PendingTxnEntry(final Transaction txn, final Listener<? extends Transaction> listener) {
             this.txn = txn;
             this.listener = listener;
         }
+
+        boolean isUpdate() {
+            return txn instanceof UpdateTransaction;
+        }
     }
 
     private void registerUpdateTransaction(final UpdateTransaction updateTxn, final Listener<UpdateTransaction> listener) {
-        synchronized (txnLock) {
-            if (runningTxns == 0) {
-                updatingTxnRunning = true;
-                runningTxns++;
-            } else {
-                pendingTxns.add(new PendingTxnEntry(updateTxn, listener));
-                return;
+        if (!admissionUpdater.compareAndSet(this, 0, UPDATE_RUNNING | 1)) {
+            synchronized (txnLock) {
+                while (true) {
+                    final int admission = this.admission;
+                    if (admission == 0) {
+                        // running txns left meanwhile
+                        if (admissionUpdater.compareAndSet(this, 0, UPDATE_RUNNING | 1)) break;
+                    } else if (admissionUpdater.compareAndSet(this, admission, admission | TXNS_PENDING)) {
+                        queue(new PendingTxnEntry(updateTxn, listener), false);
+                        return;
+                    }
+                }
             }
         }
         safeCallListener(listener, updateTxn);
     }
 
     private void registerReadTransaction(final ReadTransaction readTxn, final Listener<ReadTransaction> listener) {
-        synchronized (txnLock) {
-            if (runningTxns == 0) {
-                runningTxns++;
-            } else if (!updatingTxnRunning && pendingTxns.isEmpty()) {
-                runningTxns++;
-            } else {
-                pendingTxns.add(new PendingTxnEntry(readTxn, listener));
+        int admission;
+        do {
+            admission = this.admission;
+            if ((admission & (UPDATE_RUNNING | TXNS_PENDING)) != 0) {
+                registerPendingReadTransaction(readTxn, listener);
                 return;
             }
+        } while (!admissionUpdater.compareAndSet(this, admission, admission + 1));
+        safeCallListener(listener, readTxn);
+    }
+
+    private void registerPendingReadTransaction(final ReadTransaction readTxn, final Listener<ReadTransaction> listener) {
+        synchronized (txnLock) {
+            while (true) {
+                final int admission = this.admission;
+                if ((admission & (UPDATE_RUNNING | TXNS_PENDING)) == 0) {
+                    // running updating txn left meanwhile
+                    if (admissionUpdater.compareAndSet(this, admission, admission + 1)) break;
+                } else if (admissionUpdater.compareAndSet(this, admission, admission | TXNS_PENDING)) {
+                    queue(new PendingTxnEntry(readTxn, listener), false);
+                    return;
+                }
+            }
         }
         safeCallListener(listener, readTxn);
     }
 
     void unregister() {
-        List<PendingTxnEntry> notifications = null;
-        synchronized (txnLock) {
-            assert runningTxns > 0;
-            runningTxns--;
-            if (runningTxns == 0) {
-                updatingTxnRunning = false;
-                if (pendingTxns.isEmpty()) return;
-                notifications = getNotifications();
+        int admission;
+        do {
+            admission = this.admission;
+            assert (admission & RUNNING_MASK) > 0;
+            if ((admission & RUNNING_MASK) == 1 && (admission & TXNS_PENDING) != 0) {
+                unregisterLast();
+                return;
             }
+        } while (!admissionUpdater.compareAndSet(this, admission, (admission & RUNNING_MASK) == 1 ? 0 : admission - 1));
+    }
+
+    private void unregisterLast() {
+        final List<PendingTxnEntry> notifications;
+        synchronized (txnLock) {
+            // TXNS_PENDING is set, so no other txn can be admitted, and this is the last running one
+            assert (admission & RUNNING_MASK) == 1;
+            notifications = getNotifications();
         }
         for (final PendingTxnEntry notification : notifications) {
             safeCallListener(notification.listener, notification.txn);
         }
     }
 
+    /**
+     * Admits the pending TXNs selected by the admission policy, replacing the single TXN that is still running.
+     */
     private List<PendingTxnEntry> getNotifications() {
         assert Thread.holdsLock(txnLock);
-        final List<PendingTxnEntry> notifications = new LinkedList<>();
-        PendingTxnEntry entry = pendingTxns.removeFirst();
-        notifications.add(entry);
-        runningTxns++;
-        if (entry.txn instanceof UpdateTransaction) {
-            // process single updating transaction at the head
-            updatingTxnRunning = true;
-        } else {
-            // process remaining read-only transactions at the head
-            final Iterator<PendingTxnEntry> i = pendingTxns.iterator();
-            while (i.hasNext()) {
-                entry = i.next();
-                if (entry.txn instanceof UpdateTransaction) break;
-                i.remove();
-                notifications.add(entry);
-                runningTxns++;
-            }
-        }
+        final List<PendingTxnEntry> notifications = new ArrayList<>();
+        admissionPolicy.admit(notifications);
+        pendingTxns -= notifications.size();
+        int admission = notifications.size();
+        if (notifications.get(0).isUpdate()) {
+            // single updating transaction
+            assert admission == 1;
+            admission |= UPDATE_RUNNING;
+        }
+        if (!admissionPolicy.isEmpty()) {
+            admission |= TXNS_PENDING;
+        }
+        this.admission = admission;
         return notifications;
     }
 
@@ -401,6 +641,114 @@ public final class TransactionController extends SimpleAttachable {
         return transaction.getReport();
     }
 
+    /**
+     * Get the timings of the services started and stopped by the transaction, along with its critical path.
+     * Starts and stops that are not complete yet are left out, so the report is only complete once the transaction
+     * is prepared. Timings are only recorded by transactions created while
+     * {@link #setServiceTimingRecorded(boolean) enabled}, the report of any other transaction is empty.
+     *
+     * @param transaction the transaction
+     * @return the service timing report
+     * @throws SecurityException if transaction was not created by this controller
+     */
+    public ServiceTimingReport getServiceTimingReport(final Transaction transaction) throws SecurityException {
+        validateTransaction(transaction);
+        return ServiceTimingReport.create(transaction);
+    }
+
+    /**
+     * Returns whether the transactions created by this controller record the timings of the service starts and stops
+     * they perform, for {@link #getServiceTimingReport(Transaction)}.
+     *
+     * @return {@code true} if service timings are recorded
+     */
+    public boolean isServiceTimingRecorded() {
+        return serviceTimingRecorded;
+    }
+
+    /**
+     * Sets whether the transactions created by this controller record the timings of the service starts and stops
+     * they perform, for {@link #getServiceTimingReport(Transaction)}. Recording a start or stop costs an allocation,
+     * two clock reads and an update of a map shared by the whole transaction, plus a lookup per task it waits for,
+     * so it is disabled by default. The setting applies to transactions created afterwards.
+     *
+     * @param recorded {@code true} to record service timings
+     */
+    public void setServiceTimingRecorded(final boolean recorded) {
+        serviceTimingRecorded = recorded;
+    }
+
+    /**
+     * Returns the time services are given to start or stop by the transaction, unless they have a timeout of their
+     * own.
+     *
+     * @param transaction the transaction
+     * @param unit the time unit
+     * @return the service timeout, or {@code 0} if services may take as long as they need
+     * @throws SecurityException if transaction was not created by this controller
+     */
+    public long getServiceTimeout(final Transaction transaction, final TimeUnit unit) throws SecurityException {
+        validateTransaction(transaction);
+        return unit.convert(getAbstractTransaction(transaction).getServiceTimeout(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the time services are given to start or stop by the transaction, unless they have a timeout of their own.
+     * A service that does not complete its start in time fails, and a service that does not complete its stop in time
+     * is considered down; an error is reported to the transaction in both cases. The timeout applies to the starts
+     * and stops executed after this call.
+     *
+     * @param transaction the transaction
+     * @param timeout the service timeout, or {@code 0} if services may take as long as they need
+     * @param unit the time unit
+     * @throws IllegalArgumentException if {@code timeout} is negative
+     * @throws SecurityException if transaction was not created by this controller
+     */
+    public void setServiceTimeout(final Transaction transaction, final long timeout, final TimeUnit unit) throws IllegalArgumentException, SecurityException {
+        validateTransaction(transaction);
+        if (timeout < 0) {
+            throw TXN.illegalTimeout(timeout);
+        }
+        if (unit == null) {
+            throw TXN.methodParameterIsNull("unit");
+        }
+        getAbstractTransaction(transaction).setServiceTimeout(unit.toNanos(timeout));
+    }
+
+    /**
+     * Returns whether all service starts and stops are tracked for {@link #getLongRunningServices(long, TimeUnit)}.
+     *
+     * @return {@code true} if all starts and stops are tracked, {@code false} if only the ones given a timeout are
+     */
+    public boolean isLongRunningServicesTracked() {
+        return watchdog.isTrackingAll();
+    }
+
+    /**
+     * Sets whether all service starts and stops are tracked for {@link #getLongRunningServices(long, TimeUnit)}.
+     * Tracking a start or stop costs two updates of a set shared by all executor threads, so only the ones given a
+     * {@link #setServiceTimeout(Transaction, long, TimeUnit) timeout} are tracked by default.
+     *
+     * @param tracked {@code true} to track all starts and stops
+     */
+    public void setLongRunningServicesTracked(final boolean tracked) {
+        watchdog.setTrackingAll(tracked);
+    }
+
+    /**
+     * Returns the service starts and stops that transactions of this controller have been executing for at least
+     * {@code threshold}, longest running first. The returned timings report how long the services have been starting
+     * or stopping so far. Only the starts and stops given a timeout are reported, unless
+     * {@link #setLongRunningServicesTracked(boolean) all of them are tracked}.
+     *
+     * @param threshold the minimum time the services have been starting or stopping for
+     * @param unit the time unit
+     * @return the long running service starts and stops
+     */
+    public List<ServiceTiming> getLongRunningServices(final long threshold, final TimeUnit unit) {
+        return watchdog.getLongRunning(unit.toNanos(threshold));
+    }
+
     /**
      * Returns the service context, for creating and removing services.
      * 
@@ -0,0 +1,171 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+/**
+ * A snapshot of the lifecycle metrics of the transactions created by a {@link TransactionController}. Times are in
+ * nanoseconds.
+ *
+ * @see TransactionController#getMetrics()
+ */
+public final class TransactionMetrics {
+
+    private final long createdTxns;
+    private final long committedTxns;
+    private final long rolledBackTxns;
+    private final int pendingTxns;
+    private final Histogram createToPrepare;
+    private final Histogram prepareToCommit;
+    private final Histogram commitToTerminate;
+    private final Histogram pendingQueueDepth;
+    private final Histogram executedTasks;
+    private final Histogram rolledBackTasks;
+    private final Histogram executorDelay;
+
+    TransactionMetrics(final long createdTxns, final long committedTxns, final long rolledBackTxns, final int pendingTxns,
+            final Histogram createToPrepare, final Histogram prepareToCommit, final Histogram commitToTerminate,
+            final Histogram pendingQueueDepth, final Histogram executedTasks, final Histogram rolledBackTasks,
+            final Histogram executorDelay) {
+        this.createdTxns = createdTxns;
+        this.committedTxns = committedTxns;
+        this.rolledBackTxns = rolledBackTxns;
+        this.pendingTxns = pendingTxns;
+        this.createToPrepare = createToPrepare;
+        this.prepareToCommit = prepareToCommit;
+        this.commitToTerminate = commitToTerminate;
+        this.pendingQueueDepth = pendingQueueDepth;
+        this.executedTasks = executedTasks;
+        this.rolledBackTasks = rolledBackTasks;
+        this.executorDelay = executorDelay;
+    }
+
+    /**
+     * Returns the number of transactions created, whether they were admitted already or not. Upgrading or downgrading
+     * a transaction does not create a new one.
+     *
+     * @return the number of created transactions
+     */
+    public long getCreatedTransactions() {
+        return createdTxns;
+    }
+
+    /**
+     * Returns the number of transactions that terminated with their work committed.
+     *
+     * @return the number of committed transactions
+     */
+    public long getCommittedTransactions() {
+        return committedTxns;
+    }
+
+    /**
+     * Returns the number of transactions that terminated with their work rolled back, because their problem report
+     * exceeded their maximum severity.
+     *
+     * @return the number of rolled back transactions
+     */
+    public long getRolledBackTransactions() {
+        return rolledBackTxns;
+    }
+
+    /**
+     * Returns the number of transactions currently waiting to be admitted.
+     *
+     * @return the number of pending transactions
+     */
+    public int getPendingTransactions() {
+        return pendingTxns;
+    }
+
+    /**
+     * Returns the time from the creation of terminated transactions to the completion of their prepare phase. For
+     * queued transactions, this includes the time they waited to be admitted.
+     *
+     * @return the create to prepare time histogram
+     */
+    public Histogram getCreateToPrepareTime() {
+        return createToPrepare;
+    }
+
+    /**
+     * Returns the time from the completion of the prepare phase of terminated transactions to their commit request.
+     *
+     * @return the prepare to commit time histogram
+     */
+    public Histogram getPrepareToCommitTime() {
+        return prepareToCommit;
+    }
+
+    /**
+     * Returns the time from the commit request of terminated transactions to their termination.
+     *
+     * @return the commit to terminate time histogram
+     */
+    public Histogram getCommitToTerminateTime() {
+        return commitToTerminate;
+    }
+
+    /**
+     * Returns the number of transactions waiting to be admitted right after each queued transaction was added,
+     * that transaction included.
+     *
+     * @return the pending queue depth histogram
+     */
+    public Histogram getPendingQueueDepth() {
+        return pendingQueueDepth;
+    }
+
+    /**
+     * Returns the number of tasks executed by each terminated transaction. This is only recorded for transactions
+     * created while {@link TransactionController#setTaskCountsRecorded(boolean) enabled}.
+     *
+     * @return the executed tasks histogram
+     */
+    public Histogram getExecutedTasks() {
+        return executedTasks;
+    }
+
+    /**
+     * Returns the number of tasks rolled back by each terminated transaction. This is only recorded for transactions
+     * created while {@link TransactionController#setTaskCountsRecorded(boolean) enabled}.
+     *
+     * @return the rolled back tasks histogram
+     */
+    public Histogram getRolledBackTasks() {
+        return rolledBackTasks;
+    }
+
+    /**
+     * Returns the time task work handed over to the transaction executors waited before it started running. This is
+     * only recorded while {@link TransactionController#setExecutorQueueingDelayRecorded(boolean) enabled}.
+     *
+     * @return the executor queueing delay histogram
+     */
+    public Histogram getExecutorQueueingDelay() {
+        return executorDelay;
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionMetrics[created=" + createdTxns + ", committed=" + committedTxns + ", rolledBack=" + rolledBackTxns
+                + ", pending=" + pendingTxns + ", createToPrepare=" + createToPrepare + ", prepareToCommit=" + prepareToCommit
+                + ", commitToTerminate=" + commitToTerminate + ", pendingQueueDepth=" + pendingQueueDepth
+                + ", executedTasks=" + executedTasks + ", rolledBackTasks=" + rolledBackTasks
+                + ", executorQueueingDelay=" + executorDelay + "]";
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+/**
+ * Management interface exposing the {@link TransactionMetrics} of a {@link TransactionController}. Each attribute
+ * read takes a fresh snapshot. Histograms are exposed as composite data.
+ *
+ * @see TransactionController#getMetricsMXBean()
+ */
+public interface TransactionMetricsMXBean {
+
+    /**
+     * @see TransactionMetrics#getCreatedTransactions()
+     */
+    long getCreatedTransactions();
+
+    /**
+     * @see TransactionMetrics#getCommittedTransactions()
+     */
+    long getCommittedTransactions();
+
+    /**
+     * @see TransactionMetrics#getRolledBackTransactions()
+     */
+    long getRolledBackTransactions();
+
+    /**
+     * @see TransactionMetrics#getPendingTransactions()
+     */
+    int getPendingTransactions();
+
+    /**
+     * @see TransactionMetrics#getCreateToPrepareTime()
+     */
+    Histogram getCreateToPrepareTime();
+
+    /**
+     * @see TransactionMetrics#getPrepareToCommitTime()
+     */
+    Histogram getPrepareToCommitTime();
+
+    /**
+     * @see TransactionMetrics#getCommitToTerminateTime()
+     */
+    Histogram getCommitToTerminateTime();
+
+    /**
+     * @see TransactionMetrics#getPendingQueueDepth()
+     */
+    Histogram getPendingQueueDepth();
+
+    /**
+     * @see TransactionMetrics#getExecutedTasks()
+     */
+    Histogram getExecutedTasks();
+
+    /**
+     * @see TransactionMetrics#getRolledBackTasks()
+     */
+    Histogram getRolledBackTasks();
+
+    /**
+     * @see TransactionMetrics#getExecutorQueueingDelay()
+     */
+    Histogram getExecutorQueueingDelay();
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects the lifecycle metrics of the transactions created by a {@link TransactionController}.
+ */
+final class TransactionMetricsRecorder {
+
+    private final AtomicLong createdTxns = new AtomicLong();
+    private final AtomicLong committedTxns = new AtomicLong();
+    private final AtomicLong rolledBackTxns = new AtomicLong();
+    private final HistogramRecorder createToPrepare = new HistogramRecorder();
+    private final HistogramRecorder prepareToCommit = new HistogramRecorder();
+    private final HistogramRecorder commitToTerminate = new HistogramRecorder();
+    private final HistogramRecorder pendingQueueDepth = new HistogramRecorder();
+    private final HistogramRecorder executedTasks = new HistogramRecorder();
+    private final HistogramRecorder rolledBackTasks = new HistogramRecorder();
+    private final HistogramRecorder executorDelay = new HistogramRecorder();
+    // executor delays are recorded on every task dispatch by every worker, so they are only recorded on demand
+    private volatile boolean executorDelayRecorded;
+    // task counts are updated on every task completion of a transaction, so they are only recorded on demand
+    private volatile boolean taskCountsRecorded;
+
+    void transactionCreated() {
+        createdTxns.incrementAndGet();
+    }
+
+    void transactionTerminated(final boolean committed, final long startTime, final long prepareTime, final long commitTime,
+            final long endTime) {
+        (committed ? committedTxns : rolledBackTxns).incrementAndGet();
+        createToPrepare.record(prepareTime - startTime);
+        prepareToCommit.record(commitTime - prepareTime);
+        commitToTerminate.record(endTime - commitTime);
+    }
+
+    void tasksCounted(final long executedTasks, final long rolledBackTasks) {
+        this.executedTasks.record(executedTasks);
+        this.rolledBackTasks.record(rolledBackTasks);
+    }
+
+    void transactionQueued(final int queueDepth) {
+        pendingQueueDepth.record(queueDepth);
+    }
+
+    boolean isExecutorDelayRecorded() {
+        return executorDelayRecorded;
+    }
+
+    void setExecutorDelayRecorded(final boolean recorded) {
+        executorDelayRecorded = recorded;
+    }
+
+    boolean isTaskCountsRecorded() {
+        return taskCountsRecorded;
+    }
+
+    void setTaskCountsRecorded(final boolean recorded) {
+        taskCountsRecorded = recorded;
+    }
+
+    void taskDispatched(final long delay) {
+        executorDelay.record(delay);
+    }
+
+    TransactionMetrics getMetrics(final int pendingTxns) {
+        return new TransactionMetrics(createdTxns.get(), committedTxns.get(), rolledBackTxns.get(), pendingTxns,
+                createToPrepare.getHistogram(), prepareToCommit.getHistogram(), commitToTerminate.getHistogram(),
+                pendingQueueDepth.getHistogram(), executedTasks.getHistogram(), rolledBackTasks.getHistogram(),
+                executorDelay.getHistogram());
+    }
+
+    /**
+     * Concurrently records values in the buckets of a {@link Histogram}. The count of values is not kept on its own,
+     * so recording a value takes a single bucket increment, a sum update, and rarely a maximum update.
+     */
+    static final class HistogramRecorder {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Histogram.BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(final long value) {
+            buckets.incrementAndGet(Histogram.bucketOf(value));
+            sum.addAndGet(value);
+            long max;
+            while (value > (max = this.max.get())) {
+                if (this.max.compareAndSet(max, value)) break;
+            }
+        }
+
+        Histogram getHistogram() {
+            final long[] buckets = new long[Histogram.BUCKETS];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = this.buckets.get(i);
+            }
+            return new Histogram(buckets, sum.get(), max.get());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Atomic operations on the hot fields of registrations and task controllers, Java 9 variant.
+ */
+final class AtomicFields {
+
+    private static final VarHandle CONTROLLER;
+    private static final VarHandle UNEXECUTED_DEPENDENCIES;
+    private static final VarHandle UNTERMINATED_DEPENDENTS;
+    private static final VarHandle CHILD_COUNTS;
+
+    static {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            CONTROLLER = lookup.findVarHandle(Registration.class, "controller", ServiceControllerImpl.class);
+            UNEXECUTED_DEPENDENCIES = lookup.findVarHandle(TaskControllerImpl.class, "unexecutedDependencies", int.class);
+            UNTERMINATED_DEPENDENTS = lookup.findVarHandle(TaskControllerImpl.class, "unterminatedDependents", int.class);
+            CHILD_COUNTS = lookup.findVarHandle(TaskControllerImpl.class, "childCounts", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private AtomicFields() {
+    }
+
+    static boolean compareAndSetController(final Registration registration, final ServiceControllerImpl<?> expect, final ServiceControllerImpl<?> update) {
+        return CONTROLLER.compareAndSet(registration, expect, update);
+    }
+
+    static int decrementUnexecutedDependencies(final TaskControllerImpl<?> task) {
+        return (int) UNEXECUTED_DEPENDENCIES.getAndAdd(task, -1) - 1;
+    }
+
+    static int incrementUnterminatedDependents(final TaskControllerImpl<?> task) {
+        return (int) UNTERMINATED_DEPENDENTS.getAndAdd(task, 1) + 1;
+    }
+
+    static int decrementUnterminatedDependents(final TaskControllerImpl<?> task) {
+        return (int) UNTERMINATED_DEPENDENTS.getAndAdd(task, -1) - 1;
+    }
+
+    static boolean compareAndSetChildCounts(final TaskControllerImpl<?> task, final long expect, final long update) {
+        return CHILD_COUNTS.compareAndSet(task, expect, update);
+    }
+
+    static long getAndAddChildCounts(final TaskControllerImpl<?> task, final long delta) {
+        return (long) CHILD_COUNTS.getAndAdd(task, delta);
+    }
+
+    static long getAndSetChildCounts(final TaskControllerImpl<?> task, final long value) {
+        return (long) CHILD_COUNTS.getAndSet(task, value);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Services completing their start and stop asynchronously.
+ */
+public class AsyncServiceTestCase extends AbstractServiceTest {
+
+    private static final ServiceName BASE = ServiceName.of("async");
+    private static final int SIZE = 200;
+    private static final long DELAY_MILLIS = 100;
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void createScheduler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void shutdownScheduler() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>{@link #SIZE} independent services, each one completing its start and its stop from a scheduler thread
+     * {@link #DELAY_MILLIS} after being called</LI>
+     * <LI>none of the services holds an executor thread while waiting, so starting and stopping all of them takes
+     * about {@link #DELAY_MILLIS} instead of {@link #SIZE} times {@link #DELAY_MILLIS} divided by the executor
+     * threads</LI>
+     * </UL>
+     */
+    @Test
+    public void startAndStopAsynchronously() {
+        final DelayedService[] services = new DelayedService[SIZE];
+        UpdateTransaction txn = newUpdateTransaction();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < SIZE; i++) {
+                final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, BASE.append(Integer.toString(i)), txn);
+                services[i] = new DelayedService(scheduler);
+                builder.setService(services[i]);
+                builder.install();
+            }
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < SIZE * DELAY_MILLIS / 8);
+        for (DelayedService service : services) {
+            assertTrue(service.up);
+        }
+
+        txn = newUpdateTransaction();
+        start = System.nanoTime();
+        try {
+            serviceRegistry.disableServices(BASE, txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < SIZE * DELAY_MILLIS / 8);
+        for (DelayedService service : services) {
+            assertFalse(service.up);
+        }
+        assertEquals(SIZE, serviceRegistry.getServices(BASE).size());
+    }
+
+    private static final class DelayedService implements Service<Void> {
+        private final ScheduledExecutorService scheduler;
+        private volatile boolean up;
+
+        DelayedService(final ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            startContext.asynchronous();
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    up = true;
+                    startContext.complete();
+                }
+            }, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            stopContext.asynchronous();
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    up = false;
+                    stopContext.complete();
+                }
+            }, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+}
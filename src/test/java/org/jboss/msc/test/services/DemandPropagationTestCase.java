@@ -0,0 +1,338 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceMode;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.service.Service;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Demand propagation through {@link ServiceMode#ON_DEMAND on demand} services.
+ */
+public class DemandPropagationTestCase extends AbstractServiceTest {
+
+    private static final int LENGTH = 3000;
+    private static final ServiceName A = ServiceName.of("A");
+    private static final ServiceName B = ServiceName.of("B");
+    private static final ServiceName C = ServiceName.of("C");
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>chain of {@link #LENGTH} on demand services, each one depending on the next one</LI>
+     * <LI>none of them starts, as none is demanded</LI>
+     * <LI>active <B>A</B> depending on the first service of the chain is installed, the whole chain starts</LI>
+     * <LI><B>A</B> is removed, the whole chain stops</LI>
+     * </UL>
+     */
+    @Test
+    public void longChain() {
+        final TestService[] chain = new TestService[LENGTH];
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (int i = 0; i < LENGTH; i++) {
+                chain[i] = addService(batch, chainName(i), ServiceMode.ON_DEMAND, i + 1 < LENGTH ? chainName(i + 1) : null);
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertUp(chain, false);
+
+        final TestService serviceA;
+        txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, ServiceMode.ACTIVE, chainName(0));
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertUp(chain, true);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).remove(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertUp(chain, false);
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>on demand <B>C</B>, and active <B>A</B> and <B>B</B> depending on it</LI>
+     * <LI><B>C</B> stays up as long as one of <B>A</B> and <B>B</B> is installed</LI>
+     * </UL>
+     */
+    @Test
+    public void sharedDependency() {
+        final TestService serviceA, serviceB, serviceC;
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceC = addService(batch, C, ServiceMode.ON_DEMAND, null);
+            serviceA = addService(batch, A, ServiceMode.ACTIVE, C);
+            serviceB = addService(batch, B, ServiceMode.ACTIVE, C);
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).remove(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(B).remove(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceB.isUp());
+        assertFalse(serviceC.isUp());
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>on demand <B>C</B>, down as it is not demanded</LI>
+     * <LI>in a single transaction, active <B>A</B> depending on <B>C</B> is installed, then removed</LI>
+     * <LI><B>C</B> is started as soon as <B>A</B> demands it, and stopped once <B>A</B> is removed</LI>
+     * </UL>
+     */
+    @Test
+    public void demandedInTransaction() {
+        final AtomicInteger lifecycleCount = new AtomicInteger();
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            installCountingService(C, lifecycleCount, txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+
+        // tasks run on the installing thread, A is thus installed and demands C before it is removed
+        final TestService serviceA;
+        txn = newUpdateTransaction(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                command.run();
+            }
+        });
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, ServiceMode.ACTIVE, C);
+            batch.install();
+            assertEquals(1, lifecycleCount.get());
+            serviceRegistry.getRequiredService(A).remove(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertEquals(2, lifecycleCount.get());
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>on demand <B>C</B>, down as it is not demanded</LI>
+     * <LI>in a single transaction, active <B>A</B> depending on <B>C</B> is installed, then removed before the demand
+     * of <B>C</B> is applied</LI>
+     * <LI>the demand and undemand of <B>C</B> cancel each other out, <B>C</B> is neither started nor stopped</LI>
+     * </UL>
+     */
+    @Test
+    public void demandedAndUndemandedInTransaction() {
+        final AtomicInteger lifecycleCount = new AtomicInteger();
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            installCountingService(C, lifecycleCount, txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+
+        final StackExecutor executor = new StackExecutor();
+        final TestService serviceA;
+        txn = newUpdateTransaction(executor);
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, ServiceMode.ACTIVE, C);
+            batch.install();
+            // installs A, which demands C
+            executor.runNext();
+            serviceRegistry.getRequiredService(A).remove(txn);
+            // removes A before the task applying the demand of C is executed
+            executor.release();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertNull(serviceRegistry.getService(A));
+        assertEquals(0, lifecycleCount.get());
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>on demand <B>C</B>, and {@link #LENGTH} active services depending on it, installed by the same batch</LI>
+     * <LI><B>C</B> is started once</LI>
+     * </UL>
+     */
+    @Test
+    public void demandedByBatch() {
+        final AtomicInteger lifecycleCount = new AtomicInteger();
+        final TestService[] dependents = new TestService[LENGTH];
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            installCountingService(C, lifecycleCount, txn);
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (int i = 0; i < LENGTH; i++) {
+                dependents[i] = addService(batch, chainName(i), ServiceMode.ACTIVE, C);
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertUp(dependents, true);
+        assertEquals(1, lifecycleCount.get());
+    }
+
+    private void installCountingService(final ServiceName name, final AtomicInteger lifecycleCount, final UpdateTransaction txn) {
+        final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, name, txn);
+        builder.setMode(ServiceMode.ON_DEMAND);
+        builder.setService(new Service<Void>() {
+
+            @Override
+            public void start(final StartContext<Void> context) {
+                lifecycleCount.incrementAndGet();
+                context.complete();
+            }
+
+            @Override
+            public void stop(final StopContext context) {
+                lifecycleCount.incrementAndGet();
+                context.complete();
+            }
+        });
+        builder.install();
+    }
+
+    private static void assertUp(final TestService[] services, final boolean up) {
+        for (TestService service : services) {
+            if (up) {
+                assertTrue(service.isUp());
+            } else {
+                assertFalse(service.isUp());
+            }
+        }
+    }
+
+    /**
+     * Holds dispatched tasks until they are run by the test thread, the last dispatched one first.
+     */
+    private static final class StackExecutor implements Executor {
+
+        private Deque<Runnable> held = new ArrayDeque<>();
+
+        @Override
+        public void execute(final Runnable command) {
+            synchronized (this) {
+                if (held != null) {
+                    held.push(command);
+                    return;
+                }
+            }
+            command.run();
+        }
+
+        /**
+         * Runs the last task dispatched.
+         */
+        void runNext() {
+            final Runnable command;
+            synchronized (this) {
+                command = held.pop();
+            }
+            command.run();
+        }
+
+        /**
+         * Runs the held tasks, and the tasks they dispatch, the last dispatched one first, then runs the tasks
+         * dispatched from now on right away.
+         */
+        void release() {
+            for (;;) {
+                final Runnable command;
+                synchronized (this) {
+                    command = held.poll();
+                    if (command == null) {
+                        held = null;
+                        return;
+                    }
+                }
+                command.run();
+            }
+        }
+    }
+
+    private static ServiceName chainName(final int index) {
+        return ServiceName.of("chain", Integer.toString(index));
+    }
+
+    private static TestService addService(final ServiceBatch batch, final ServiceName name, final ServiceMode mode, final ServiceName dependency) {
+        final ServiceBuilder<Void> builder = batch.addService(name);
+        builder.setMode(mode);
+        if (dependency != null) {
+            builder.addDependency(dependency);
+        }
+        final TestService service = new TestService(name, builder, false);
+        builder.setService(service);
+        return service;
+    }
+}
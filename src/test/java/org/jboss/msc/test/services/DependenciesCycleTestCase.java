@@ -18,12 +18,15 @@
 package org.jboss.msc.test.services;
 
 import org.jboss.msc.service.CircularDependencyException;
+import org.jboss.msc.service.DependencyFlag;
 import org.jboss.msc.service.ServiceBuilder;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.DependencyInfo;
 import org.jboss.msc.txn.UpdateTransaction;
 import org.junit.Test;
 
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -223,6 +226,43 @@ public class DependenciesCycleTestCase extends AbstractServiceTest {
         }
     }
 
+    @Test
+    public void usecase10() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            // dependents installed before their dependencies
+            addService(txn, A, B);
+            addService(txn, B, C);
+            addService(txn, C, D);
+            addService(txn, D, E);
+            addService(txn, E, A);
+            fail("Dependencies cycle expected");
+        } catch (final CircularDependencyException e) {
+            assertCycle(e, "[E, A, B, C, D, E]");
+        } finally {
+            prepare(txn);
+            commit(txn);
+        }
+    }
+
+    @Test
+    public void usecase11() {
+        // dependents installed by previous transactions, before their dependencies
+        assertNotNull(addService(serviceRegistry, A, new DependencyInfo<Void>(B, DependencyFlag.UNREQUIRED)));
+        assertNotNull(addService(serviceRegistry, B, new DependencyInfo<Void>(C, DependencyFlag.UNREQUIRED)));
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            addService(txn, D);
+            addService(txn, C, D, A);
+            fail("Dependencies cycle expected");
+        } catch (final CircularDependencyException e) {
+            assertCycle(e, "[C, A, B, C]");
+        } finally {
+            prepare(txn);
+            commit(txn);
+        }
+    }
+
     private void assertCycle(final CircularDependencyException e, final String expectedCycle) {
         assertTrue(e.getMessage().indexOf(" service installation failed because it introduced the following cycle: " + expectedCycle) > 0);
     }
@@ -29,9 +29,15 @@ import org.jboss.msc.txn.UpdateTransaction;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import static org.jboss.msc.service.DependencyFlag.UNREQUIRED;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -503,6 +509,199 @@ public class RegistryTestCase extends AbstractServiceTest {
         assertTrue(serviceH.isUp());
     }
 
+    @Test
+    public void disableAndEnableServicesByPrefix() {
+        UpdateTransaction transaction = newUpdateTransaction();
+        try {
+            registry1.disableServices(ServiceName.of("u", "n"), transaction);
+            // nothing to disable
+            registry1.disableServices(ServiceName.of("e"), transaction);
+        } finally {
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertTrue(serviceA.isUp());
+        assertFalse(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+        assertTrue(serviceD.isUp());
+        assertTrue(serviceE.isUp());
+        // service F depends on B
+        assertFalse(serviceF.isUp());
+        assertTrue(serviceG.isUp());
+        assertTrue(serviceH.isUp());
+
+        transaction = newUpdateTransaction();
+        try {
+            registry1.enableServices(ServiceName.of("u"), transaction);
+        } finally {
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+        assertTrue(serviceD.isUp());
+        assertTrue(serviceE.isUp());
+        assertTrue(serviceF.isUp());
+        assertTrue(serviceG.isUp());
+        assertTrue(serviceH.isUp());
+    }
+
+    @Test
+    public void toggleServicesInOneTransaction() {
+        final ServiceController controllerA = registry1.getRequiredService(serviceAName);
+        final ServiceController controllerD = registry2.getRequiredService(serviceDName);
+        HeldExecutor executor = new HeldExecutor(defaultExecutor);
+        UpdateTransaction transaction = newUpdateTransaction(executor);
+        int dispatched;
+        try {
+            for (int i = 0; i < 10; i++) {
+                controllerA.disable(transaction);
+                registry2.disable(transaction);
+                controllerA.enable(transaction);
+                registry2.enable(transaction);
+            }
+        } finally {
+            dispatched = executor.release();
+            prepare(transaction);
+            commit(transaction);
+        }
+        // each enable cancels the disable requested before it, in the task built by the first disable
+        assertEquals(2, dispatched);
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceD.isUp());
+
+        executor = new HeldExecutor(defaultExecutor);
+        transaction = newUpdateTransaction(executor);
+        try {
+            for (int i = 0; i < 10; i++) {
+                controllerA.disable(transaction);
+                controllerD.disable(transaction);
+            }
+        } finally {
+            dispatched = executor.release();
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertEquals(2, dispatched);
+        assertFalse(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+        assertFalse(serviceD.isUp());
+        assertFalse(serviceE.isUp());
+        assertFalse(serviceF.isUp());
+        assertTrue(serviceG.isUp());
+        assertTrue(serviceH.isUp());
+    }
+
+    @Test
+    public void removeServicesByPrefix() {
+        final UpdateTransaction transaction = newUpdateTransaction();
+        try {
+            registry2.removeServices(ServiceName.of("e"), transaction);
+        } finally {
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertNull(registry2.getService(serviceEName));
+        assertTrue(registry2.getServices(ServiceName.of("e")).isEmpty());
+        assertFalse(serviceE.isUp());
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+        assertTrue(serviceD.isUp());
+        assertTrue(serviceF.isUp());
+        assertTrue(serviceG.isUp());
+        assertTrue(serviceH.isUp());
+    }
+
+    @Test
+    public void toggleServicesByPrefixAndOneByOne() {
+        final ServiceName x1Name = ServiceName.of("x", "1");
+        final ServiceName x2Name = ServiceName.of("x", "2");
+        final ServiceName x3Name = ServiceName.of("x", "3");
+        final TestService x1 = addService(registry1, x1Name);
+        final TestService x2 = addService(registry1, x2Name);
+        final TestService x3 = addService(registry1, x3Name);
+        final ServiceController controller1 = registry1.getRequiredService(x1Name);
+        final ServiceController controller2 = registry1.getRequiredService(x2Name);
+        final ServiceController controller3 = registry1.getRequiredService(x3Name);
+        HeldExecutor executor = new HeldExecutor(defaultExecutor);
+        UpdateTransaction transaction = newUpdateTransaction(executor);
+        int dispatched;
+        try {
+            registry1.disableServices(ServiceName.of("x"), transaction);
+            // cancels the disable of x.2
+            controller2.enable(transaction);
+            // x.3 is already being disabled
+            controller3.disable(transaction);
+            // cancels the disable of x.1 and x.3, and enables x.2, in the task built by the bulk disable
+            registry1.enableServices(ServiceName.of("x"), transaction);
+        } finally {
+            dispatched = executor.release();
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertEquals(1, dispatched);
+        assertTrue(x1.isUp());
+        assertTrue(x2.isUp());
+        assertTrue(x3.isUp());
+
+        executor = new HeldExecutor(defaultExecutor);
+        transaction = newUpdateTransaction(executor);
+        try {
+            controller2.disable(transaction);
+            // x.2 is already being disabled, x.1 and x.3 share one new task
+            registry1.disableServices(ServiceName.of("x"), transaction);
+            // cancels the disable of x.1
+            controller1.enable(transaction);
+        } finally {
+            dispatched = executor.release();
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertEquals(2, dispatched);
+        assertTrue(x1.isUp());
+        assertFalse(x2.isUp());
+        assertFalse(x3.isUp());
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+    }
+
+    @Test
+    public void removeDependentServicesByPrefix() {
+        final ServiceName x1Name = ServiceName.of("x", "1");
+        final ServiceName x2Name = ServiceName.of("x", "2");
+        final ServiceName x3Name = ServiceName.of("x", "2", "3");
+        final TestService x1 = addService(registry1, x1Name);
+        final TestService x2 = addService(registry1, x2Name, new DependencyInfo<TestService>(x1Name));
+        final TestService x3 = addService(registry1, x3Name, new DependencyInfo<TestService>(x2Name));
+        final TestService y = addService(registry1, ServiceName.of("y"), new DependencyInfo<TestService>(x3Name, UNREQUIRED));
+        assertTrue(x3.isUp());
+        assertTrue(y.isUp());
+        final UpdateTransaction transaction = newUpdateTransaction();
+        try {
+            // removed one by one first, then along with the others
+            registry1.getRequiredService(x2Name).remove(transaction);
+            registry1.removeServices(ServiceName.of("x"), transaction);
+            registry1.removeServices(ServiceName.of("x"), transaction);
+        } finally {
+            prepare(transaction);
+            commit(transaction);
+        }
+        assertTrue(registry1.getServices(ServiceName.of("x")).isEmpty());
+        assertFalse(x1.isUp());
+        assertFalse(x2.isUp());
+        assertFalse(x3.isUp());
+        // as when x.2.3 is removed on its own, y stops along with it
+        assertFalse(y.isUp());
+        assertNotNull(registry1.getService(ServiceName.of("y")));
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+        assertTrue(serviceC.isUp());
+    }
+
     @Test
     public void outsiderService() {
         final UpdateTransaction transaction = newUpdateTransaction();
@@ -527,4 +726,45 @@ public class RegistryTestCase extends AbstractServiceTest {
             commit(transaction);
         }
     }
+
+    /**
+     * Holds the tasks dispatched to it until it is released, then hands everything over to {@code executor}.
+     */
+    private static final class HeldExecutor implements Executor {
+
+        private final Executor executor;
+        private List<Runnable> held = new ArrayList<>();
+
+        HeldExecutor(final Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            synchronized (this) {
+                if (held != null) {
+                    held.add(command);
+                    return;
+                }
+            }
+            executor.execute(command);
+        }
+
+        /**
+         * Releases the tasks held so far.
+         *
+         * @return how many tasks were held
+         */
+        int release() {
+            final List<Runnable> held;
+            synchronized (this) {
+                held = this.held;
+                this.held = null;
+            }
+            for (Runnable command : held) {
+                executor.execute(command);
+            }
+            return held.size();
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import org.jboss.msc.service.CircularDependencyException;
+import org.jboss.msc.service.DuplicateServiceException;
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Batch service installation tests.
+ */
+public class ServiceBatchTestCase extends AbstractServiceTest {
+
+    private static final int SIZE = 500;
+
+    private static final ServiceName A = ServiceName.of("A");
+    private static final ServiceName A_ALIAS = ServiceName.of("A alias");
+    private static final ServiceName B = ServiceName.of("B");
+    private static final ServiceName C = ServiceName.of("C");
+    private static final ServiceName D = ServiceName.of("D");
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>batch of {@link #SIZE} services, each one depending on the next one</LI>
+     * <LI>all services are up once transaction is committed</LI>
+     * </UL>
+     */
+    @Test
+    public void chain() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        final TestService[] services = new TestService[SIZE];
+        final List<ServiceController> controllers;
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (int i = 0; i < SIZE; i++) {
+                services[i] = addService(batch, serviceName(i), i + 1 < SIZE ? serviceName(i + 1) : null);
+            }
+            controllers = batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertEquals(SIZE, controllers.size());
+        for (int i = 0; i < SIZE; i++) {
+            assertSame(services[i], controllers.get(i).getService());
+            assertSame(services[i], getService(serviceName(i)));
+            assertTrue(services[i].isUp());
+        }
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>batch with <B>A</B> depending on <B>B</B>, <B>B</B> on <B>C</B>, and <B>C</B> on <B>A</B></LI>
+     * <LI>batch installation fails, none of the services is installed</LI>
+     * </UL>
+     */
+    @Test
+    public void cycle() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            addService(batch, A, B);
+            addService(batch, B, C);
+            addService(batch, C, A);
+            batch.install();
+            fail("Dependencies cycle expected");
+        } catch (final CircularDependencyException e) {
+            assertTrue(e.getMessage().indexOf(" service installation failed because it introduced the following cycle: [A, B, C, A]") > 0);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertNull(serviceRegistry.getService(A));
+        assertNull(serviceRegistry.getService(B));
+        assertNull(serviceRegistry.getService(C));
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>D</B> installed on its own</LI>
+     * <LI>batch with <B>A</B> (aliased), depending on <B>D</B>, and another service named <B>A alias</B></LI>
+     * <LI>batch installation fails, none of the services is installed</LI>
+     * <LI>same services can be installed afterwards</LI>
+     * </UL>
+     */
+    @Test
+    public void duplicate() {
+        final TestService serviceD = addService(D);
+        assertNotNull(serviceD);
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            final ServiceBuilder<Void> builderA = batch.addService(A);
+            builderA.addAliases(A_ALIAS).addDependency(D);
+            builderA.setService(new TestService(A, builderA, false));
+            addService(batch, A_ALIAS, null);
+            batch.install();
+            fail("Duplicate service expected");
+        } catch (final DuplicateServiceException e) {
+            // expected
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertNull(serviceRegistry.getService(A));
+        assertNull(serviceRegistry.getService(A_ALIAS));
+        final TestService serviceA = addService(A, D);
+        assertNotNull(serviceA);
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceD.isUp());
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>batch with <B>A</B> and <B>B</B>, <B>B</B> depending on <B>A</B></LI>
+     * <LI><B>A</B> installed on its own before batch is installed</LI>
+     * <LI>batch installs <B>B</B> only, and cannot be installed twice</LI>
+     * </UL>
+     */
+    @Test
+    public void memberInstalledOnItsOwn() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        final TestService serviceA, serviceB;
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            final ServiceBuilder<Void> builderA = batch.addService(A);
+            serviceA = new TestService(A, builderA, false);
+            builderA.setService(serviceA);
+            serviceB = addService(batch, B, A);
+            builderA.install();
+            final List<ServiceController> controllers = batch.install();
+            assertEquals(1, controllers.size());
+            assertSame(serviceB, controllers.get(0).getService());
+            try {
+                batch.install();
+                fail("IllegalStateException expected");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+            try {
+                batch.addService(C);
+                fail("IllegalStateException expected");
+            } catch (final IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertTrue(serviceB.isUp());
+    }
+
+    private static ServiceName serviceName(final int index) {
+        return ServiceName.of("batch", Integer.toString(index));
+    }
+
+    private static TestService addService(final ServiceBatch batch, final ServiceName name, final ServiceName dependency) {
+        final ServiceBuilder<Void> builder = batch.addService(name);
+        if (dependency != null) {
+            builder.addDependency(dependency);
+        }
+        final TestService service = new TestService(name, builder, false);
+        builder.setService(service);
+        return service;
+    }
+}
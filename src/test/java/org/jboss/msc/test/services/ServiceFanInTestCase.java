@@ -0,0 +1,342 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Services with many dependents.
+ */
+public class ServiceFanInTestCase extends AbstractServiceTest {
+
+    private static final int DEPENDENTS = 1000;
+    private static final ServiceName A = ServiceName.of("A");
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B> and {@link #DEPENDENTS} services depending on it, installed by the same transaction</LI>
+     * <LI>disabling <B>A</B> stops all dependents, enabling it starts them again</LI>
+     * <LI>half of the dependents are removed, disabling <B>A</B> stops the other half only</LI>
+     * </UL>
+     */
+    @Test
+    public void manyDependents() {
+        installAndToggle();
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>same as {@link #manyDependents()}, with dependents notified in parallel in chunks of 16 that <B>A</B> is starting</LI>
+     * </UL>
+     */
+    @Test
+    public void manyDependentsFannedOut() {
+        txnController.setNotificationFanOutThreshold(16);
+        try {
+            installAndToggle();
+        } finally {
+            txnController.setNotificationFanOutThreshold(0);
+        }
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B> and {@link #DEPENDENTS} services depending on it</LI>
+     * <LI>three out of four dependents are removed, and as many new dependents are installed</LI>
+     * <LI>disabling <B>A</B> stops all remaining and new dependents, enabling it starts them again</LI>
+     * </UL>
+     */
+    @Test
+    public void dependentsRemovedAndReplaced() {
+        final TestService serviceA;
+        final TestService[] dependents = new TestService[DEPENDENTS];
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, null);
+            for (int i = 0; i < DEPENDENTS; i++) {
+                dependents[i] = addService(batch, dependentName(i), A);
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        txn = newUpdateTransaction();
+        try {
+            for (int i = 0; i < DEPENDENTS; i++) {
+                if (i % 4 != 0) {
+                    serviceRegistry.getRequiredService(dependentName(i)).remove(txn);
+                }
+            }
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (int i = 0; i < DEPENDENTS; i++) {
+                if (i % 4 != 0) {
+                    dependents[i] = addService(batch, dependentName(i), A);
+                }
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertUp(dependents, 0, 1, true);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).disable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertUp(dependents, 0, 1, false);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).enable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertUp(dependents, 0, 1, true);
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B> is installed and up</LI>
+     * <LI>half of {@link #DEPENDENTS} services depending on it are installed by one thread, while another thread
+     * disables <B>A</B>, in the same transaction</LI>
+     * <LI>the other half is installed by one thread, while another thread enables <B>A</B> again, in the same
+     * transaction</LI>
+     * <LI>dependents are down, then up, and disabling and enabling <B>A</B> again stops and starts them all</LI>
+     * </UL>
+     */
+    @Test
+    public void dependentsInstalledWhileToggled() throws Exception {
+        installWhileToggling();
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>same as {@link #dependentsInstalledWhileToggled()}, with dependents notified in parallel in chunks of 16 that <B>A</B> is starting</LI>
+     * </UL>
+     */
+    @Test
+    public void dependentsInstalledWhileToggledFannedOut() throws Exception {
+        txnController.setNotificationFanOutThreshold(16);
+        try {
+            installWhileToggling();
+        } finally {
+            txnController.setNotificationFanOutThreshold(0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeFanOutThreshold() {
+        txnController.setNotificationFanOutThreshold(-1);
+    }
+
+    private void installAndToggle() {
+        final TestService serviceA;
+        final TestService[] dependents = new TestService[DEPENDENTS];
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, null);
+            for (int i = 0; i < DEPENDENTS; i++) {
+                dependents[i] = addService(batch, dependentName(i), A);
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertUp(dependents, 0, 1, true);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).disable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertUp(dependents, 0, 1, false);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).enable(txn);
+            for (int i = 1; i < DEPENDENTS; i += 2) {
+                serviceRegistry.getRequiredService(dependentName(i)).remove(txn);
+            }
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertUp(dependents, 0, 2, true);
+        for (int i = 1; i < DEPENDENTS; i += 2) {
+            assertNull(serviceRegistry.getService(dependentName(i)));
+        }
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).disable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertUp(dependents, 0, 2, false);
+        assertUp(dependents, 1, 2, false);
+    }
+
+    private void installWhileToggling() throws Exception {
+        final TestService serviceA;
+        final TestService[] dependents = new TestService[DEPENDENTS];
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            serviceA = addService(batch, A, null);
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+
+        installWhileToggling(dependents, 0, false);
+        assertFalse(serviceA.isUp());
+        assertUp(dependents, 0, 2, false);
+
+        installWhileToggling(dependents, 1, true);
+        assertTrue(serviceA.isUp());
+        assertUp(dependents, 0, 1, true);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).disable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertFalse(serviceA.isUp());
+        assertUp(dependents, 0, 1, false);
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).enable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(serviceA.isUp());
+        assertUp(dependents, 0, 1, true);
+    }
+
+    /**
+     * Installs every other dependent, starting at {@code from}, while another thread enables or disables <B>A</B>
+     * in the same transaction.
+     */
+    private void installWhileToggling(final TestService[] dependents, final int from, final boolean enable) throws Exception {
+        final UpdateTransaction txn = newUpdateTransaction();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<?> installer = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    for (int i = from; i < DEPENDENTS; i += 2) {
+                        final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, dependentName(i), txn);
+                        builder.addDependency(A);
+                        dependents[i] = new TestService(dependentName(i), builder, false);
+                        builder.setService(dependents[i]);
+                        builder.install();
+                    }
+                }
+            });
+            final Future<?> toggler = executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    await(start);
+                    if (enable) {
+                        serviceRegistry.getRequiredService(A).enable(txn);
+                    } else {
+                        serviceRegistry.getRequiredService(A).disable(txn);
+                    }
+                }
+            });
+            start.countDown();
+            installer.get();
+            toggler.get();
+        } finally {
+            executor.shutdown();
+            assertTrue(attemptToCommit(txn));
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void assertUp(final TestService[] services, final int from, final int step, final boolean up) {
+        for (int i = from; i < services.length; i += step) {
+            if (up) {
+                assertTrue(services[i].isUp());
+            } else {
+                assertFalse(services[i].isUp());
+            }
+        }
+    }
+
+    private static ServiceName dependentName(final int index) {
+        return ServiceName.of("dependent", Integer.toString(index));
+    }
+
+    private static TestService addService(final ServiceBatch batch, final ServiceName name, final ServiceName dependency) {
+        final ServiceBuilder<Void> builder = batch.addService(name);
+        if (dependency != null) {
+            builder.addDependency(dependency);
+        }
+        final TestService service = new TestService(name, builder, false);
+        builder.setService(service);
+        return service;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.ref.WeakReference;
+
+import org.jboss.msc.service.ServiceName;
+import org.junit.Test;
+
+/**
+ * Service name operations, parsing and interning.
+ */
+public class ServiceNameTestCase {
+
+    @Test
+    public void intern() {
+        final ServiceName name1 = ServiceName.of("intern", "a", "b");
+        final ServiceName name2 = ServiceName.parse("intern.a.b");
+        assertEquals(name1, name2);
+        final ServiceName interned = name1.intern();
+        assertSame(interned, name2.intern());
+        assertSame(interned, interned.intern());
+        assertEquals(name1, interned);
+        assertEquals(name1.hashCode(), interned.hashCode());
+        assertSame(interned.getParent(), ServiceName.of("intern", "a").intern());
+        assertSame(interned.getParent().getParent(), ServiceName.of("intern").intern());
+        assertSame(interned, interned.getParent().append("b").intern());
+    }
+
+    @Test
+    public void internAppended() {
+        final ServiceName parent = ServiceName.of("intern", "parent").intern();
+        final ServiceName child = ServiceName.of("intern").append(ServiceName.of("parent", "child"));
+        assertSame(parent, child.intern().getParent());
+        assertSame(child.intern(), parent.append("child").intern());
+    }
+
+    @Test
+    public void length() {
+        assertEquals(1, ServiceName.of("a").length());
+        assertEquals(3, ServiceName.of("a", "b", "c").length());
+        assertEquals(5, ServiceName.JBOSS.append("a", "b").append(ServiceName.of("c", "d")).length());
+    }
+
+    @Test
+    public void compareTo() {
+        final ServiceName abc = ServiceName.of("a", "b", "c");
+        assertEquals(0, abc.compareTo(ServiceName.of("a", "b", "c")));
+        assertTrue(abc.compareTo(ServiceName.of("a", "b", "d")) < 0);
+        assertTrue(abc.compareTo(ServiceName.of("b", "a", "a")) < 0);
+        assertTrue(ServiceName.of("b", "a", "a").compareTo(abc) > 0);
+        assertTrue(abc.compareTo(ServiceName.of("a", "b")) > 0);
+        assertTrue(ServiceName.of("a", "b").compareTo(abc) < 0);
+        assertTrue(abc.compareTo(ServiceName.of("a", "c")) < 0);
+        assertTrue(ServiceName.of("a", "c").compareTo(abc) > 0);
+        assertTrue(abc.compareTo(ServiceName.of("a", "a", "z", "z")) > 0);
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        final ServiceName abc = ServiceName.of("a", "b", "c");
+        assertEquals(abc, ServiceName.of("a", "b").append("c"));
+        assertEquals(abc.hashCode(), ServiceName.of("a", "b").append("c").hashCode());
+        assertFalse(abc.equals(ServiceName.of("a", "b")));
+        assertFalse(abc.equals(ServiceName.of("x", "b", "c")));
+        assertFalse(abc.equals((ServiceName) null));
+    }
+
+    @Test
+    public void isParentOf() {
+        final ServiceName ab = ServiceName.of("a", "b");
+        assertTrue(ab.isParentOf(ab));
+        assertTrue(ab.isParentOf(ServiceName.of("a", "b", "c", "d")));
+        assertFalse(ab.isParentOf(ServiceName.of("a")));
+        assertFalse(ab.isParentOf(ServiceName.of("a", "c", "b")));
+        assertFalse(ab.isParentOf(null));
+    }
+
+    @Test
+    public void commonAncestorOf() {
+        final ServiceName abcd = ServiceName.of("a", "b", "c", "d");
+        assertEquals(ServiceName.of("a", "b"), abcd.commonAncestorOf(ServiceName.of("a", "b", "x", "d")));
+        assertEquals(ServiceName.of("a", "b", "c"), abcd.commonAncestorOf(ServiceName.of("a", "b", "c")));
+        assertEquals(ServiceName.of("a", "b"), ServiceName.of("a", "b").commonAncestorOf(abcd));
+        assertEquals(abcd, abcd.commonAncestorOf(abcd));
+        assertSame(abcd.getParent(), abcd.commonAncestorOf(abcd.getParent().append("e")));
+        assertNull(abcd.commonAncestorOf(ServiceName.of("x", "b", "c", "d")));
+        assertNull(abcd.commonAncestorOf(null));
+    }
+
+    @Test
+    public void toArray() {
+        final String[] segments = new String[] {"a", "b", "c"};
+        assertArrayEquals(segments, ServiceName.of(segments).toArray());
+        assertEquals(ServiceName.of(segments), ServiceName.of(ServiceName.of(segments).toArray()));
+    }
+
+    @Test
+    public void parse() {
+        final ServiceName name = ServiceName.parse("parse.a.\"b.c\"");
+        assertEquals(ServiceName.of("parse", "a", "b.c"), name);
+        assertSame(name, ServiceName.parse("parse.a.\"b.c\""));
+        assertEquals(name, ServiceName.parse(name.getCanonicalName()));
+        assertEquals(ServiceName.of("parse", "other"), ServiceName.parse("parse.other"));
+    }
+
+    @Test
+    public void parsedNameCollected() {
+        // the parse cache must not keep a name reachable once nothing else refers to it
+        final WeakReference<ServiceName> name = new WeakReference<>(ServiceName.parse("parse.collected"));
+        for (int i = 0; i < 100 && name.get() != null; i++) {
+            System.gc();
+        }
+        assertNull(name.get());
+        assertEquals(ServiceName.of("parse", "collected"), ServiceName.parse("parse.collected"));
+    }
+
+    @Test
+    public void serialization() throws Exception {
+        final ServiceName name = ServiceName.of("serialized", "a", "b");
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(name);
+        }
+        final ServiceName read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (ServiceName) in.readObject();
+        }
+        assertEquals(name, read);
+        assertEquals(name.hashCode(), read.hashCode());
+        assertEquals(3, read.length());
+        assertEquals(0, name.compareTo(read));
+        assertTrue(read.isParentOf(name));
+    }
+}
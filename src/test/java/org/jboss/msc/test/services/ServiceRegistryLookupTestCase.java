@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.msc.service.ServiceBatch;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceController;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.ServiceNotFoundException;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Service registry lookups.
+ */
+public class ServiceRegistryLookupTestCase extends AbstractServiceTest {
+
+    private static final int SIZE = 1000;
+    private static final int READERS = 4;
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>{@link #SIZE} services installed in the same registry</LI>
+     * <LI>each service is found by its name, or by an equal name instance</LI>
+     * <LI>missing services are not found</LI>
+     * </UL>
+     */
+    @Test
+    public void lookups() {
+        installServices(0, SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            final ServiceName name = serviceName(i);
+            final ServiceName equalName = ServiceName.of("lookup", Integer.toString(i));
+            final ServiceController controller = serviceRegistry.getService(name);
+            assertNotNull(controller);
+            assertSame(controller, serviceRegistry.getService(equalName));
+            assertSame(controller, serviceRegistry.getRequiredService(equalName));
+            assertSame(controller, serviceRegistry.getService(name));
+        }
+        assertNull(serviceRegistry.getService(serviceName(SIZE)));
+        try {
+            serviceRegistry.getRequiredService(serviceName(SIZE));
+            fail("ServiceNotFoundException expected");
+        } catch (ServiceNotFoundException expected) {
+        }
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>{@link #SIZE} services installed</LI>
+     * <LI>{@link #READERS} threads look them up while {@link #SIZE} more services are installed</LI>
+     * <LI>services installed before the readers started are always found</LI>
+     * </UL>
+     */
+    @Test
+    public void concurrentLookups() throws InterruptedException {
+        installServices(0, SIZE);
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicInteger misses = new AtomicInteger();
+        final Thread[] readers = new Thread[READERS];
+        for (int r = 0; r < READERS; r++) {
+            readers[r] = new Thread() {
+                @Override
+                public void run() {
+                    while (done.getCount() > 0) {
+                        for (int i = 0; i < SIZE; i++) {
+                            if (serviceRegistry.getService(serviceName(i)) == null) {
+                                misses.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            };
+            readers[r].start();
+        }
+        try {
+            installServices(SIZE, 2 * SIZE);
+        } finally {
+            done.countDown();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        assertEquals(0, misses.get());
+        for (int i = 0; i < 2 * SIZE; i++) {
+            assertNotNull(serviceRegistry.getService(serviceName(i)));
+        }
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>services <B>a.b</B>, <B>a.b.x</B>, <B>a.b.x.y</B>, <B>a.c</B> and <B>ab</B> installed, <B>a</B> is not</LI>
+     * <LI>enumerating <B>a.b</B> gives <B>a.b</B>, <B>a.b.x</B> and <B>a.b.x.y</B></LI>
+     * <LI>enumerating <B>a</B> gives all services but <B>ab</B>, unknown prefixes give nothing</LI>
+     * <LI>once <B>a.b.x</B> is removed, it is not enumerated anymore</LI>
+     * </UL>
+     */
+    @Test
+    public void subtree() {
+        final ServiceName a = ServiceName.of("a");
+        final ServiceName ab = a.append("b");
+        final ServiceName abx = ab.append("x");
+        final ServiceName abxy = abx.append("y");
+        final ServiceName ac = a.append("c");
+        final ServiceName notA = ServiceName.of("ab");
+        installServices(0, SIZE);
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (ServiceName name : new ServiceName[] {ab, abx, abxy, ac, notA}) {
+                final ServiceBuilder<Void> builder = batch.addService(name);
+                builder.setService(new TestService(name, builder, false));
+            }
+            batch.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertServices(ab, ab, abx, abxy);
+        assertServices(abx, abx, abxy);
+        assertServices(a, ab, abx, abxy, ac);
+        assertServices(notA, notA);
+        assertServices(ServiceName.of("b"));
+        assertServices(ab.append("z"));
+        assertEquals(SIZE, serviceRegistry.getServices(ServiceName.of("lookup")).size());
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(abx).remove(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertServices(ab, ab, abxy);
+        try {
+            serviceRegistry.getServices(null);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private void assertServices(final ServiceName prefix, final ServiceName... names) {
+        final Set<ServiceController> expected = new HashSet<>();
+        for (ServiceName name : names) {
+            expected.add(serviceRegistry.getRequiredService(name));
+        }
+        final Set<ServiceController> found = new HashSet<>();
+        for (ServiceController controller : serviceRegistry.getServices(prefix)) {
+            assertTrue(found.add(controller));
+        }
+        assertEquals(expected, found);
+    }
+
+    private void installServices(final int from, final int to) {
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBatch batch = txnController.getServiceContext().addServices(serviceRegistry, txn);
+            for (int i = from; i < to; i++) {
+                final ServiceBuilder<Void> builder = batch.addService(serviceName(i));
+                builder.setService(new TestService(serviceName(i), builder, false));
+            }
+            batch.install();
+        } finally {
+            attemptToCommit(txn);
+        }
+    }
+
+    private static ServiceName serviceName(final int index) {
+        return ServiceName.of("lookup", Integer.toString(index));
+    }
+}
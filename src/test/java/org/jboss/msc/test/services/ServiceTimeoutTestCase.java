@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.Problem;
+import org.jboss.msc.txn.ServiceTiming;
+import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Service start and stop timeouts.
+ */
+public class ServiceTimeoutTestCase extends AbstractServiceTest {
+
+    private static final ServiceName A = ServiceName.of("A");
+    private static final ServiceName B = ServiceName.of("B");
+    private static final long TIMEOUT_MILLIS = 100;
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B> never completes its start and is given {@link #TIMEOUT_MILLIS} to start</LI>
+     * <LI><B>B</B> depends on <B>A</B>, installed by the same transaction</LI>
+     * <LI><B>A</B> fails once its timeout expires, <B>B</B> does not start, and the transaction cannot commit</LI>
+     * <LI>completion of <B>A</B> after its timeout is ignored</LI>
+     * </UL>
+     */
+    @Test
+    public void startTimeout() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        final HangingService serviceA = new HangingService(true, false);
+        final TestService serviceB;
+        try {
+            final ServiceBuilder<Void> builderA = txnController.getServiceContext().addService(serviceRegistry, A, txn);
+            builderA.setService(serviceA).setTimeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            builderA.install();
+            final ServiceBuilder<Void> builderB = txnController.getServiceContext().addService(serviceRegistry, B, txn);
+            builderB.addDependency(A);
+            serviceB = new TestService(B, builderB, false);
+            builderB.setService(serviceB);
+            builderB.install();
+        } finally {
+            assertFalse(attemptToCommit(txn));
+        }
+        assertTimedOut(txn, "start");
+        assertFalse(serviceB.isUp());
+        serviceA.startContext.complete();
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>transaction giving services {@link #TIMEOUT_MILLIS} to start or stop</LI>
+     * <LI><B>A</B>, that never completes its start, is reported as long running while it is starting</LI>
+     * <LI><B>A</B> fails once the timeout expires, and is not reported as long running anymore</LI>
+     * </UL>
+     */
+    @Test
+    public void transactionTimeout() throws InterruptedException {
+        final UpdateTransaction txn = newUpdateTransaction();
+        txnController.setServiceTimeout(txn, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        final HangingService serviceA = new HangingService(true, false);
+        try {
+            final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, A, txn);
+            builder.setService(serviceA);
+            builder.install();
+            assertTrue(serviceA.starting.await(10, TimeUnit.SECONDS));
+            final List<ServiceTiming> longRunning = txnController.getLongRunningServices(0, TimeUnit.MILLISECONDS);
+            assertEquals(1, longRunning.size());
+            assertEquals(A, longRunning.get(0).getServiceName());
+            assertTrue(longRunning.get(0).isStart());
+        } finally {
+            assertFalse(attemptToCommit(txn));
+        }
+        assertTimedOut(txn, "start");
+        assertTrue(txnController.getLongRunningServices(0, TimeUnit.MILLISECONDS).isEmpty());
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B>, that completes its start only when told to, is given no timeout and is not reported as long
+     * running</LI>
+     * <LI>once all starts and stops are tracked, <B>B</B>, given no timeout either, is reported as long running while
+     * it is starting</LI>
+     * </UL>
+     */
+    @Test
+    public void longRunningServicesTracked() throws InterruptedException {
+        final HangingService serviceA = new HangingService(true, false);
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, A, txn);
+            builder.setService(serviceA);
+            builder.install();
+            assertTrue(serviceA.starting.await(10, TimeUnit.SECONDS));
+            assertTrue(txnController.getLongRunningServices(0, TimeUnit.MILLISECONDS).isEmpty());
+            serviceA.startContext.complete();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        txnController.setLongRunningServicesTracked(true);
+        try {
+            final HangingService serviceB = new HangingService(true, false);
+            txn = newUpdateTransaction();
+            try {
+                final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, B, txn);
+                builder.setService(serviceB);
+                builder.install();
+                assertTrue(serviceB.starting.await(10, TimeUnit.SECONDS));
+                final List<ServiceTiming> longRunning = txnController.getLongRunningServices(0, TimeUnit.MILLISECONDS);
+                assertEquals(1, longRunning.size());
+                assertEquals(B, longRunning.get(0).getServiceName());
+                serviceB.startContext.complete();
+            } finally {
+                assertTrue(attemptToCommit(txn));
+            }
+            assertTrue(txnController.getLongRunningServices(0, TimeUnit.MILLISECONDS).isEmpty());
+        } finally {
+            txnController.setLongRunningServicesTracked(false);
+        }
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>A</B>, that never completes its stop, is installed and started</LI>
+     * <LI><B>A</B> is removed by a transaction giving services {@link #TIMEOUT_MILLIS} to start or stop</LI>
+     * <LI><B>A</B> is considered down once the timeout expires, and the transaction cannot commit</LI>
+     * </UL>
+     */
+    @Test
+    public void stopTimeout() {
+        final HangingService serviceA = new HangingService(false, true);
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, A, txn);
+            builder.setService(serviceA);
+            builder.install();
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        txn = newUpdateTransaction();
+        txnController.setServiceTimeout(txn, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        try {
+            serviceRegistry.getRequiredService(A).remove(txn);
+        } finally {
+            assertFalse(attemptToCommit(txn));
+        }
+        assertTimedOut(txn, "stop");
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>negative service timeouts are rejected</LI>
+     * </UL>
+     */
+    @Test
+    public void negativeTimeout() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            try {
+                txnController.getServiceContext().addService(serviceRegistry, A, txn).setTimeout(-1, TimeUnit.SECONDS);
+                fail("IllegalArgumentException expected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            try {
+                txnController.setServiceTimeout(txn, -1, TimeUnit.SECONDS);
+                fail("IllegalArgumentException expected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+    }
+
+    private static void assertTimedOut(final UpdateTransaction txn, final String lifecycle) {
+        final List<Problem> problems = txn.getReport().getProblems();
+        assertEquals(1, problems.size());
+        assertEquals(Problem.Severity.ERROR, problems.get(0).getSeverity());
+        assertTrue(problems.get(0).getMessage().contains("did not complete its " + lifecycle + " within " + TIMEOUT_MILLIS + " milliseconds"));
+    }
+
+    private static final class HangingService implements Service<Void> {
+        private final boolean hangOnStart;
+        private final boolean hangOnStop;
+        private final CountDownLatch starting = new CountDownLatch(1);
+        private volatile StartContext<Void> startContext;
+
+        HangingService(final boolean hangOnStart, final boolean hangOnStop) {
+            this.hangOnStart = hangOnStart;
+            this.hangOnStop = hangOnStop;
+        }
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            this.startContext = startContext;
+            starting.countDown();
+            if (!hangOnStart) {
+                startContext.complete();
+            }
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            if (!hangOnStop) {
+                stopContext.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.ServiceTiming;
+import org.jboss.msc.txn.ServiceTimingReport;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Service start and stop timings, and transaction critical path.
+ */
+public class ServiceTimingTestCase extends AbstractServiceTest {
+
+    private static final ServiceName A = ServiceName.of("A");
+    private static final ServiceName B = ServiceName.of("B");
+    private static final ServiceName C = ServiceName.of("C");
+    private static final ServiceName D = ServiceName.of("D");
+    private static final long SLEEP_MILLIS = 20;
+
+    @Override
+    @Before
+    public void setUp() {
+        super.setUp();
+        txnController.setServiceTimingRecorded(true);
+    }
+
+    @Override
+    @After
+    public void tearDown() {
+        txnController.setServiceTimingRecorded(false);
+        super.tearDown();
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI><B>C</B> depending on <B>B</B>, <B>B</B> depending on <B>A</B>, and <B>D</B>, installed by the same
+     * transaction</LI>
+     * <LI><B>A</B>, <B>B</B> and <B>C</B> take a while to start, <B>D</B> starts immediately</LI>
+     * <LI>the critical path goes through the starts of <B>A</B>, <B>B</B> and <B>C</B></LI>
+     * <LI><B>A</B> is then disabled, the critical path goes through the stops of <B>C</B>, <B>B</B> and <B>A</B></LI>
+     * </UL>
+     */
+    @Test
+    public void criticalPath() {
+        UpdateTransaction txn = newUpdateTransaction();
+        try {
+            install(txn, A, SLEEP_MILLIS);
+            install(txn, B, SLEEP_MILLIS, A);
+            install(txn, C, SLEEP_MILLIS, B);
+            install(txn, D, 0);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        ServiceTimingReport report = txnController.getServiceTimingReport(txn);
+        assertEquals(4, report.getTimings().size());
+        assertPath(report, true, A, B, C);
+        final ServiceTiming startB = report.getCriticalPath().get(1);
+        assertTrue(startB.getDuration(TimeUnit.MILLISECONDS) >= SLEEP_MILLIS);
+        assertTrue(startB.getContribution(TimeUnit.NANOSECONDS) >= startB.getDuration(TimeUnit.NANOSECONDS));
+        assertTrue(startB.getContribution(TimeUnit.NANOSECONDS) <= startB.getWaitTime(TimeUnit.NANOSECONDS) + startB.getDuration(TimeUnit.NANOSECONDS));
+        assertTrue(report.getCriticalPathDuration(TimeUnit.MILLISECONDS) >= 3 * SLEEP_MILLIS);
+        assertTrue(report.toString().startsWith("Critical path ("));
+
+        txn = newUpdateTransaction();
+        try {
+            serviceRegistry.getRequiredService(A).disable(txn);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        report = txnController.getServiceTimingReport(txn);
+        assertEquals(3, report.getTimings().size());
+        assertPath(report, false, C, B, A);
+        assertTrue(report.getCriticalPathDuration(TimeUnit.MILLISECONDS) >= 3 * SLEEP_MILLIS);
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>transaction that does not start nor stop any service</LI>
+     * <LI>the report is empty</LI>
+     * </UL>
+     */
+    @Test
+    public void noService() {
+        final UpdateTransaction txn = newUpdateTransaction();
+        assertTrue(attemptToCommit(txn));
+        final ServiceTimingReport report = txnController.getServiceTimingReport(txn);
+        assertTrue(report.getTimings().isEmpty());
+        assertTrue(report.getCriticalPath().isEmpty());
+        assertEquals(0, report.getCriticalPathDuration(TimeUnit.NANOSECONDS));
+    }
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>transaction created while service timings are not recorded starts a service</LI>
+     * <LI>the report is empty</LI>
+     * </UL>
+     */
+    @Test
+    public void notRecorded() {
+        txnController.setServiceTimingRecorded(false);
+        final UpdateTransaction txn = newUpdateTransaction();
+        try {
+            install(txn, A, 0);
+        } finally {
+            assertTrue(attemptToCommit(txn));
+        }
+        assertTrue(txnController.getServiceTimingReport(txn).getTimings().isEmpty());
+    }
+
+    private static void assertPath(final ServiceTimingReport report, final boolean start, final ServiceName... names) {
+        final List<ServiceTiming> path = report.getCriticalPath();
+        assertEquals(names.length, path.size());
+        for (int i = 0; i < names.length; i++) {
+            assertEquals(names[i], path.get(i).getServiceName());
+            assertEquals(start, path.get(i).isStart());
+        }
+        assertFalse(report.getTimings().isEmpty());
+        assertEquals(path.get(path.size() - 1), report.getTimings().get(report.getTimings().size() - 1));
+    }
+
+    private void install(final UpdateTransaction txn, final ServiceName name, final long sleepMillis, final ServiceName... dependencies) {
+        final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, name, txn);
+        for (ServiceName dependency : dependencies) {
+            builder.addDependency(dependency);
+        }
+        builder.setService(new SleepingService(sleepMillis));
+        builder.install();
+    }
+
+    private static final class SleepingService implements Service<Void> {
+        private final long sleepMillis;
+
+        SleepingService(final long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            sleep();
+            startContext.complete();
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            sleep();
+            stopContext.complete();
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.services;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.service.Service;
+import org.jboss.msc.service.ServiceBuilder;
+import org.jboss.msc.service.ServiceName;
+import org.jboss.msc.service.StartContext;
+import org.jboss.msc.service.StopContext;
+import org.jboss.msc.txn.AbstractServiceTest;
+import org.jboss.msc.txn.TaskExecutors;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Services blocking on start, run on the virtual thread executor.
+ */
+public class VirtualThreadExecutorTestCase extends AbstractServiceTest {
+
+    private static final ServiceName BASE = ServiceName.of("blocking");
+    private static final int SIZE = 200;
+    private static final long MAX_BLOCK_SECONDS = 30;
+
+    /**
+     * Usecase:
+     * <UL>
+     * <LI>{@link #SIZE} independent services, each one blocking while starting until all of them are starting</LI>
+     * <LI>on a virtual thread executor, blocked starts do not hold each other back, so all the services are starting
+     * at once, far more than the 8 threads of the default test executor could run, and are then up</LI>
+     * <LI>creating a virtual thread executor fails on Java versions without virtual threads</LI>
+     * </UL>
+     */
+    @Test
+    public void blockingStarts() throws InterruptedException {
+        if (!TaskExecutors.isVirtualThreadExecutorSupported()) {
+            try {
+                TaskExecutors.newVirtualThreadExecutor();
+                fail("UnsupportedOperationException expected");
+            } catch (UnsupportedOperationException e) {
+                // expected
+            }
+            return;
+        }
+        final ExecutorService executor = TaskExecutors.newVirtualThreadExecutor();
+        try {
+            final BlockingService[] services = new BlockingService[SIZE];
+            final CountDownLatch starting = new CountDownLatch(SIZE);
+            final UpdateTransaction txn = newUpdateTransaction(executor);
+            try {
+                for (int i = 0; i < SIZE; i++) {
+                    final ServiceBuilder<Void> builder = txnController.getServiceContext().addService(serviceRegistry, BASE.append(Integer.toString(i)), txn);
+                    services[i] = new BlockingService(starting);
+                    builder.setService(services[i]);
+                    builder.install();
+                }
+            } finally {
+                assertTrue(attemptToCommit(txn));
+            }
+            for (BlockingService service : services) {
+                assertTrue(service.allStarting);
+                assertTrue(service.up);
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+        }
+    }
+
+    private static final class BlockingService implements Service<Void> {
+        private final CountDownLatch starting;
+        private volatile boolean allStarting;
+        private volatile boolean up;
+
+        BlockingService(final CountDownLatch starting) {
+            this.starting = starting;
+        }
+
+        @Override
+        public void start(final StartContext<Void> startContext) {
+            starting.countDown();
+            try {
+                allStarting = starting.await(MAX_BLOCK_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            up = true;
+            startContext.complete();
+        }
+
+        @Override
+        public void stop(final StopContext stopContext) {
+            up = false;
+            stopContext.complete();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.test.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.AdmissionMetrics;
+import org.jboss.msc.txn.AdmissionPolicy;
+import org.jboss.msc.txn.CommitResult;
+import org.jboss.msc.txn.CompletionListener;
+import org.jboss.msc.txn.Listener;
+import org.jboss.msc.txn.PrepareResult;
+import org.jboss.msc.txn.ReadTransaction;
+import org.jboss.msc.txn.Transaction;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Order in which queued transactions are admitted by the different admission policies.
+ */
+public final class AdmissionPolicyTestCase extends AbstractTransactionTest {
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>read0 running</LI>
+     * <LI>update1, read2 and read3 queued, in this order</LI>
+     * <LI>update1 is admitted first, then read2 and read3 together</LI>
+     * </UL>
+     */
+    @Test
+    public void fifo() {
+        final TransactionController controller = TransactionController.createInstance(AdmissionPolicy.fifo());
+        final ReadTransaction read0 = read(controller).get();
+        final AdmissionListener<UpdateTransaction> update1 = update(controller);
+        final AdmissionListener<ReadTransaction> read2 = read(controller);
+        final AdmissionListener<ReadTransaction> read3 = read(controller);
+        assertQueued(update1, read2, read3);
+        terminate(controller, read0);
+        assertQueued(read2, read3);
+        terminate(controller, update1.get());
+        terminate(controller, read2.get());
+        terminate(controller, read3.get());
+        final AdmissionMetrics metrics = controller.getAdmissionPolicy().getMetrics();
+        assertEquals(2, metrics.getQueuedReadTransactions());
+        assertEquals(1, metrics.getQueuedUpdateTransactions());
+        assertTrue(metrics.getMaxReadWaitTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(metrics.getTotalReadWaitTime(TimeUnit.NANOSECONDS) >= metrics.getMaxReadWaitTime(TimeUnit.NANOSECONDS));
+        assertTrue(metrics.getMaxUpdateWaitTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>update0 running</LI>
+     * <LI>read1, update2 and update3 queued, in this order</LI>
+     * <LI>update2 and update3 are admitted first, then read1</LI>
+     * </UL>
+     */
+    @Test
+    public void writerPreferred() {
+        final TransactionController controller = TransactionController.createInstance(AdmissionPolicy.writerPreferred());
+        final UpdateTransaction update0 = update(controller).get();
+        final AdmissionListener<ReadTransaction> read1 = read(controller);
+        final AdmissionListener<UpdateTransaction> update2 = update(controller);
+        final AdmissionListener<UpdateTransaction> update3 = update(controller);
+        terminate(controller, update0);
+        assertQueued(read1, update3);
+        terminate(controller, update2.get());
+        assertQueued(read1);
+        terminate(controller, update3.get());
+        terminate(controller, read1.get());
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>update0 running</LI>
+     * <LI>read1, read2, read3, update4 and update5 queued, in this order</LI>
+     * <LI>read1 and read2 are admitted first, then update4, read3 and update5</LI>
+     * </UL>
+     */
+    @Test
+    public void boundedReaderBatch() {
+        final TransactionController controller = TransactionController.createInstance(AdmissionPolicy.boundedReaderBatch(2));
+        final UpdateTransaction update0 = update(controller).get();
+        final AdmissionListener<ReadTransaction> read1 = read(controller);
+        final AdmissionListener<ReadTransaction> read2 = read(controller);
+        final AdmissionListener<ReadTransaction> read3 = read(controller);
+        final AdmissionListener<UpdateTransaction> update4 = update(controller);
+        final AdmissionListener<UpdateTransaction> update5 = update(controller);
+        terminate(controller, update0);
+        assertQueued(read3, update4, update5);
+        terminate(controller, read1.get());
+        assertQueued(read3, update4, update5);
+        terminate(controller, read2.get());
+        assertQueued(read3, update5);
+        terminate(controller, update4.get());
+        assertQueued(update5);
+        terminate(controller, read3.get());
+        terminate(controller, update5.get());
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>update0 running</LI>
+     * <LI>read1 queued, with a latency of one hour</LI>
+     * <LI>update2 queued, with no latency</LI>
+     * <LI>update2 is admitted first, then read1</LI>
+     * </UL>
+     */
+    @Test
+    public void deadline() {
+        final TransactionController controller = TransactionController.createInstance(AdmissionPolicy.deadline(1, 0, TimeUnit.HOURS));
+        final UpdateTransaction update0 = update(controller).get();
+        final AdmissionListener<ReadTransaction> read1 = read(controller);
+        final AdmissionListener<UpdateTransaction> update2 = update(controller);
+        terminate(controller, update0);
+        assertQueued(read1);
+        terminate(controller, update2.get());
+        terminate(controller, read1.get());
+    }
+
+    @Test
+    public void policyInUse() {
+        final AdmissionPolicy policy = AdmissionPolicy.fifo();
+        final TransactionController controller = TransactionController.createInstance(policy);
+        assertSame(policy, controller.getAdmissionPolicy());
+        try {
+            TransactionController.createInstance(policy);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            AdmissionPolicy.boundedReaderBatch(0);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private AdmissionListener<ReadTransaction> read(final TransactionController controller) {
+        final AdmissionListener<ReadTransaction> listener = new AdmissionListener<>();
+        controller.createReadTransaction(defaultExecutor, listener);
+        return listener;
+    }
+
+    private AdmissionListener<UpdateTransaction> update(final TransactionController controller) {
+        final AdmissionListener<UpdateTransaction> listener = new AdmissionListener<>();
+        controller.createUpdateTransaction(defaultExecutor, listener);
+        return listener;
+    }
+
+    private static void assertQueued(final AdmissionListener<?>... listeners) {
+        for (AdmissionListener<?> listener : listeners) {
+            assertNull(listener.txn);
+        }
+    }
+
+    private static void terminate(final TransactionController controller, final Transaction txn) {
+        final CompletionListener<PrepareResult<Transaction>> prepareListener = new CompletionListener<>();
+        controller.prepare(txn, prepareListener);
+        prepareListener.awaitCompletionUninterruptibly();
+        final CompletionListener<CommitResult<Transaction>> commitListener = new CompletionListener<>();
+        controller.commit(txn, commitListener);
+        commitListener.awaitCompletionUninterruptibly();
+    }
+
+    /**
+     * Records the admitted transaction. Admission happens synchronously, when the last running transaction
+     * terminates.
+     */
+    private static final class AdmissionListener<T extends Transaction> implements Listener<T> {
+        private volatile T txn;
+
+        @Override
+        public void handleEvent(final T txn) {
+            this.txn = txn;
+        }
+
+        T get() {
+            assertNotNull(txn);
+            return txn;
+        }
+    }
+}
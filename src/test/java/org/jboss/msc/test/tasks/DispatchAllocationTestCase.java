@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.test.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executor;
+
+import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.GateExecutable;
+import org.jboss.msc.txn.TestTaskController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Allocations made by the task engine while dispatching and executing tasks that are already built.
+ */
+public final class DispatchAllocationTestCase extends AbstractTransactionTest {
+
+    private static final int TASKS = 100;
+    private static final int WARM_UP_ROUNDS = 1000;
+    private static final int ROUNDS = 100;
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final GateExecutable OPEN = new GateExecutable(true);
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>{@link #TASKS} tasks depend on a gate task that completes only when told to</LI>
+     * <LI>tasks run on the thread that makes them runnable</LI>
+     * <LI>once warmed up, opening the gate dispatches and executes all the tasks without allocating</LI>
+     * </UL>
+     */
+    @Test
+    public void dispatchWithoutAllocation() {
+        final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean instanceof ThreadMXBean && ((ThreadMXBean) threadBean).isThreadAllocatedMemorySupported());
+        final ThreadMXBean threads = (ThreadMXBean) threadBean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        final long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            openGate(threads, threadId);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            assertEquals(0, openGate(threads, threadId));
+        }
+    }
+
+    /**
+     * Runs a transaction with {@link #TASKS} tasks depending on a gate task.
+     *
+     * @return the bytes allocated by the current thread while opening the gate
+     */
+    private long openGate(final ThreadMXBean threads, final long threadId) {
+        final UpdateTransaction transaction = newUpdateTransaction(SAME_THREAD);
+        final GateExecutable gate = new GateExecutable(false);
+        final TestTaskController<Void> gateTask = txnController.newTask(transaction, gate).release();
+        for (int i = 0; i < TASKS; i++) {
+            txnController.newTask(transaction, OPEN).addDependency(gateTask).release();
+        }
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        gate.open();
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        prepare(transaction);
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+        return allocated;
+    }
+}
@@ -23,14 +23,21 @@ import org.jboss.msc.service.ServiceMode;
 import org.jboss.msc.service.ServiceName;
 import org.jboss.msc.service.ServiceRegistry;
 import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.CommitResult;
 import org.jboss.msc.txn.CompletionListener;
 import org.jboss.msc.txn.InvalidTransactionStateException;
+import org.jboss.msc.txn.PrepareResult;
 import org.jboss.msc.txn.ReadTransaction;
 import org.jboss.msc.txn.TestService;
+import org.jboss.msc.txn.Transaction;
 import org.jboss.msc.txn.TransactionController;
 import org.jboss.msc.txn.UpdateTransaction;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -210,4 +217,71 @@ public class TransactionControllerTestCase extends AbstractTransactionTest {
         txnController.prepare(transaction, null);
         txnController.commit(transaction, null);
     }
+
+    @Test
+    public void concurrentReadAndUpdateTransactions() throws Exception {
+        final TransactionController controller = TransactionController.createInstance();
+        final AtomicInteger runningReads = new AtomicInteger();
+        final AtomicInteger runningUpdates = new AtomicInteger();
+        final AtomicBoolean violation = new AtomicBoolean();
+        final int readers = 4;
+        final Thread[] threads = new Thread[readers + 1];
+        for (int i = 0; i < readers; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 500; j++) {
+                        final CompletionListener<ReadTransaction> listener = new CompletionListener<>();
+                        controller.createReadTransaction(defaultExecutor, listener);
+                        final ReadTransaction txn = listener.awaitCompletionUninterruptibly();
+                        runningReads.incrementAndGet();
+                        if (runningUpdates.get() != 0) violation.set(true);
+                        runningReads.decrementAndGet();
+                        prepareAndCommit(controller, txn);
+                    }
+                }
+            };
+        }
+        threads[readers] = new Thread() {
+            public void run() {
+                for (int j = 0; j < 100; j++) {
+                    final CompletionListener<UpdateTransaction> listener = new CompletionListener<>();
+                    controller.createUpdateTransaction(defaultExecutor, listener);
+                    final UpdateTransaction txn = listener.awaitCompletionUninterruptibly();
+                    if (runningUpdates.incrementAndGet() != 1 || runningReads.get() != 0) violation.set(true);
+                    runningUpdates.decrementAndGet();
+                    prepareAndCommit(controller, txn);
+                }
+            }
+        };
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(violation.get());
+    }
+
+    @Test
+    public void independentControllers() throws Exception {
+        final UpdateTransaction updateTxn = newUpdateTransaction();
+        // an update transaction of another controller does not wait for this one
+        final TransactionController otherController = TransactionController.createInstance();
+        final CompletionListener<UpdateTransaction> listener = new CompletionListener<>();
+        otherController.createUpdateTransaction(defaultExecutor, listener);
+        final UpdateTransaction otherUpdateTxn = listener.awaitCompletion(10, TimeUnit.SECONDS);
+        assertNotNull(otherUpdateTxn);
+        prepareAndCommit(otherController, otherUpdateTxn);
+        prepare(updateTxn);
+        commit(updateTxn);
+    }
+
+    private static void prepareAndCommit(final TransactionController controller, final Transaction txn) {
+        final CompletionListener<PrepareResult<Transaction>> prepareListener = new CompletionListener<>();
+        controller.prepare(txn, prepareListener);
+        prepareListener.awaitCompletionUninterruptibly();
+        final CompletionListener<CommitResult<Transaction>> commitListener = new CompletionListener<>();
+        controller.commit(txn, commitListener);
+        commitListener.awaitCompletionUninterruptibly();
+    }
 }
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.test.tasks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.CommitResult;
+import org.jboss.msc.txn.CompletionListener;
+import org.jboss.msc.txn.Histogram;
+import org.jboss.msc.txn.PrepareResult;
+import org.jboss.msc.txn.Problem;
+import org.jboss.msc.txn.TestExecutable;
+import org.jboss.msc.txn.TestTaskController;
+import org.jboss.msc.txn.Transaction;
+import org.jboss.msc.txn.TransactionController;
+import org.jboss.msc.txn.TransactionMetrics;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Transaction lifecycle metrics.
+ */
+public final class TransactionMetricsTestCase extends AbstractTransactionTest {
+
+    private static final int TRANSACTIONS = 100;
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 and task1, task1 depending on task0</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void committedTransaction() {
+        final TransactionMetrics before = txnController.getMetrics();
+        final UpdateTransaction transaction;
+        txnController.setExecutorQueueingDelayRecorded(true);
+        txnController.setTaskCountsRecorded(true);
+        try {
+            transaction = newUpdateTransaction();
+            final TestTaskController<Void> task0Controller = newTask(transaction, new TestExecutable<Void>());
+            newTask(transaction, new TestExecutable<Void>(), task0Controller);
+            prepare(transaction);
+            assertTrue(canCommit(transaction));
+            commit(transaction);
+        } finally {
+            txnController.setExecutorQueueingDelayRecorded(false);
+            txnController.setTaskCountsRecorded(false);
+        }
+        final TransactionMetrics after = txnController.getMetrics();
+        assertEquals(before.getCreatedTransactions() + 1, after.getCreatedTransactions());
+        assertEquals(before.getCommittedTransactions() + 1, after.getCommittedTransactions());
+        assertEquals(before.getRolledBackTransactions(), after.getRolledBackTransactions());
+        assertRecorded(before.getExecutedTasks(), after.getExecutedTasks(), 2);
+        assertRecorded(before.getRolledBackTasks(), after.getRolledBackTasks(), 0);
+        assertRecorded(before.getCreateToPrepareTime(), after.getCreateToPrepareTime(), -1);
+        assertRecorded(before.getPrepareToCommitTime(), after.getPrepareToCommitTime(), -1);
+        assertRecorded(before.getCommitToTerminateTime(), after.getCommitToTerminateTime(), -1);
+        assertTrue(after.getExecutorQueueingDelay().getCount() >= before.getExecutorQueueingDelay().getCount() + 2);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 and task1</LI>
+     * <LI>transaction report gets an error, transaction rolled back</LI>
+     * </UL>
+     */
+    @Test
+    public void rolledBackTransaction() {
+        final TransactionMetrics before = txnController.getMetrics();
+        final UpdateTransaction transaction;
+        txnController.setTaskCountsRecorded(true);
+        try {
+            transaction = newUpdateTransaction();
+        } finally {
+            txnController.setTaskCountsRecorded(false);
+        }
+        newTask(transaction, new TestExecutable<Void>());
+        newTask(transaction, new TestExecutable<Void>());
+        prepare(transaction);
+        transaction.getReport().addProblem(new Problem(Problem.Severity.ERROR, "rollback requested"));
+        assertFalse(canCommit(transaction));
+        commit(transaction);
+        final TransactionMetrics after = txnController.getMetrics();
+        assertEquals(before.getCommittedTransactions(), after.getCommittedTransactions());
+        assertEquals(before.getRolledBackTransactions() + 1, after.getRolledBackTransactions());
+        assertRecorded(before.getExecutedTasks(), after.getExecutedTasks(), 2);
+        assertRecorded(before.getRolledBackTasks(), after.getRolledBackTasks(), -1);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>update0 running</LI>
+     * <LI>update1 and update2 queued</LI>
+     * <LI>pending transactions and queue depths are reported</LI>
+     * </UL>
+     */
+    @Test
+    public void pendingTransactions() {
+        final TransactionController controller = TransactionController.createInstance();
+        final CompletionListener<UpdateTransaction> listener0 = new CompletionListener<>();
+        controller.createUpdateTransaction(defaultExecutor, listener0);
+        final UpdateTransaction update0 = listener0.awaitCompletionUninterruptibly();
+        final CompletionListener<UpdateTransaction> listener1 = new CompletionListener<>();
+        controller.createUpdateTransaction(defaultExecutor, listener1);
+        final CompletionListener<UpdateTransaction> listener2 = new CompletionListener<>();
+        controller.createUpdateTransaction(defaultExecutor, listener2);
+        TransactionMetrics metrics = controller.getMetrics();
+        assertEquals(3, metrics.getCreatedTransactions());
+        assertEquals(2, metrics.getPendingTransactions());
+        assertEquals(2, metrics.getPendingQueueDepth().getCount());
+        assertEquals(3, metrics.getPendingQueueDepth().getSum());
+        assertEquals(2, metrics.getPendingQueueDepth().getMax());
+        terminate(controller, update0);
+        assertEquals(1, controller.getMetrics().getPendingTransactions());
+        terminate(controller, listener1.awaitCompletionUninterruptibly());
+        terminate(controller, listener2.awaitCompletionUninterruptibly());
+        metrics = controller.getMetrics();
+        assertEquals(0, metrics.getPendingTransactions());
+        assertEquals(3, metrics.getCommittedTransactions());
+        // queued transactions waited for admission before they could be prepared
+        assertEquals(3, metrics.getCreateToPrepareTime().getCount());
+        assertTrue(metrics.getCreateToPrepareTime().getMax() > 0);
+        // task counts are not recorded by default
+        assertEquals(0, metrics.getExecutedTasks().getCount());
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>{@link #TRANSACTIONS} transactions without any task</LI>
+     * <LI>percentiles are ordered and bounded by the maximum</LI>
+     * </UL>
+     */
+    @Test
+    public void histogram() {
+        final TransactionController controller = TransactionController.createInstance();
+        controller.setTaskCountsRecorded(true);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            final CompletionListener<UpdateTransaction> listener = new CompletionListener<>();
+            controller.createUpdateTransaction(defaultExecutor, listener);
+            terminate(controller, listener.awaitCompletionUninterruptibly());
+        }
+        final Histogram executedTasks = controller.getMetrics().getExecutedTasks();
+        assertEquals(TRANSACTIONS, executedTasks.getCount());
+        assertEquals(0, executedTasks.getMedian());
+        assertEquals(0, executedTasks.getPercentile99());
+        final Histogram createToPrepare = controller.getMetrics().getCreateToPrepareTime();
+        assertTrue(createToPrepare.getMedian() <= createToPrepare.getPercentile90());
+        assertTrue(createToPrepare.getPercentile90() <= createToPrepare.getPercentile99());
+        assertTrue(createToPrepare.getPercentile99() <= createToPrepare.getMax());
+        assertEquals(createToPrepare.getMax(), createToPrepare.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void mxBean() throws Exception {
+        final TransactionController controller = TransactionController.createInstance();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("org.jboss.msc:type=TransactionController,name=" + TransactionMetricsTestCase.class.getSimpleName());
+        server.registerMBean(controller.getMetricsMXBean(), name);
+        try {
+            final CompletionListener<UpdateTransaction> listener = new CompletionListener<>();
+            controller.createUpdateTransaction(defaultExecutor, listener);
+            terminate(controller, listener.awaitCompletionUninterruptibly());
+            assertEquals(1L, server.getAttribute(name, "CreatedTransactions"));
+            assertEquals(1L, server.getAttribute(name, "CommittedTransactions"));
+            assertEquals(0, server.getAttribute(name, "PendingTransactions"));
+            final CompositeData createToPrepare = (CompositeData) server.getAttribute(name, "CreateToPrepareTime");
+            assertNotNull(createToPrepare);
+            assertEquals(1L, createToPrepare.get("count"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    private static void assertRecorded(final Histogram before, final Histogram after, final long value) {
+        assertEquals(before.getCount() + 1, after.getCount());
+        if (value >= 0) {
+            assertEquals(before.getSum() + value, after.getSum());
+        }
+    }
+
+    private static void terminate(final TransactionController controller, final Transaction txn) {
+        final CompletionListener<PrepareResult<Transaction>> prepareListener = new CompletionListener<>();
+        controller.prepare(txn, prepareListener);
+        prepareListener.awaitCompletionUninterruptibly();
+        final CompletionListener<CommitResult<Transaction>> commitListener = new CompletionListener<>();
+        controller.commit(txn, commitListener);
+        commitListener.awaitCompletionUninterruptibly();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.test.tasks;
+
+import static org.junit.Assert.assertTrue;
+
+import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.TestExecutable;
+import org.jboss.msc.txn.TestExecuteContext;
+import org.jboss.msc.txn.TestTaskController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.Test;
+
+/**
+ * Tasks with many dependencies or many children, completing concurrently on all executor threads.
+ */
+public final class WideFanInTasksTestCase extends AbstractTransactionTest {
+
+    private static final int WIDTH = 2000;
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 depends on {@link #WIDTH} tasks with no dependencies</LI>
+     * <LI>no children</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void wideDependencies() {
+        final UpdateTransaction transaction = newUpdateTransaction();
+        final TestExecutable<?>[] dependencyExecutables = new TestExecutable<?>[WIDTH];
+        final TestTaskController<?>[] dependencies = new TestTaskController<?>[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            dependencyExecutables[i] = new TestExecutable<Void>();
+            dependencies[i] = newTask(transaction, dependencyExecutables[i]);
+        }
+        final TestExecutable<Void> e0 = new TestExecutable<>();
+        newTask(transaction, e0, dependencies);
+        prepare(transaction);
+        for (TestExecutable<?> dependencyExecutable : dependencyExecutables) {
+            assertCallOrder(dependencyExecutable, e0);
+        }
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 depends on 20 tasks with no dependencies, each one given twice</LI>
+     * <LI>no children</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void duplicateDependencies() {
+        final UpdateTransaction transaction = newUpdateTransaction();
+        final TestExecutable<?>[] dependencyExecutables = new TestExecutable<?>[20];
+        final TestTaskController<?>[] dependencies = new TestTaskController<?>[dependencyExecutables.length * 2];
+        for (int i = 0; i < dependencyExecutables.length; i++) {
+            dependencyExecutables[i] = new TestExecutable<Void>();
+            dependencies[i] = dependencies[dependencies.length - 1 - i] = newTask(transaction, dependencyExecutables[i]);
+        }
+        final TestExecutable<Void> e0 = new TestExecutable<>();
+        newTask(transaction, e0, dependencies);
+        prepare(transaction);
+        for (TestExecutable<?> dependencyExecutable : dependencyExecutables) {
+            assertCallOrder(dependencyExecutable, e0);
+        }
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 creates {@link #WIDTH} children with no dependencies</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void wideChildren() {
+        final UpdateTransaction transaction = newUpdateTransaction();
+        final TestExecutable<?>[] children = new TestExecutable<?>[WIDTH];
+        final TestExecutable<Void> e0 = new TestExecutable<Void>() {
+            @Override
+            protected void executeInternal(final TestExecuteContext<Void> ctx) {
+                for (int i = 0; i < WIDTH; i++) {
+                    children[i] = new TestExecutable<Void>();
+                    newTask(ctx, children[i]);
+                }
+            }
+        };
+        newTask(transaction, e0);
+        prepare(transaction);
+        for (TestExecutable<?> child : children) {
+            assertCallOrder(e0, child);
+        }
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>{@link #WIDTH} independent top level tasks</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void wideTransaction() {
+        final UpdateTransaction transaction = newUpdateTransaction();
+        final TestExecutable<?>[] executables = new TestExecutable<?>[WIDTH];
+        for (int i = 0; i < WIDTH; i++) {
+            executables[i] = new TestExecutable<Void>();
+            newTask(transaction, executables[i]);
+        }
+        prepare(transaction);
+        for (TestExecutable<?> executable : executables) {
+            assertCalled(executable);
+        }
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jboss.msc.test.tasks;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.msc.txn.AbstractTransactionTest;
+import org.jboss.msc.txn.GateExecutable;
+import org.jboss.msc.txn.TaskExecutors;
+import org.jboss.msc.txn.TestExecutable;
+import org.jboss.msc.txn.TestExecuteContext;
+import org.jboss.msc.txn.TestTaskController;
+import org.jboss.msc.txn.UpdateTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Transactions running their tasks on the work-stealing executor.
+ */
+public final class WorkStealingExecutorTestCase extends AbstractTransactionTest {
+
+    private static final int TASKS = 500;
+
+    private ExecutorService executor;
+
+    @Before
+    public void createExecutor() {
+        executor = TaskExecutors.newWorkStealingExecutor(4);
+    }
+
+    @After
+    public void shutdownExecutor() throws InterruptedException {
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>{@link #TASKS} tasks, each one depending on the previous one</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void dependencyChain() {
+        final UpdateTransaction transaction = newUpdateTransaction(executor);
+        final WorkerExecutable[] executables = new WorkerExecutable[TASKS];
+        TestTaskController<Void> previous = null;
+        for (int i = 0; i < TASKS; i++) {
+            executables[i] = new WorkerExecutable();
+            previous = previous == null ? newTask(transaction, executables[i]) : newTask(transaction, executables[i], previous);
+        }
+        prepare(transaction);
+        for (int i = 1; i < TASKS; i++) {
+            assertCallOrder(executables[i - 1], executables[i]);
+        }
+        assertRanOnWorkers(executables);
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 with {@link #TASKS} dependents</LI>
+     * <LI>each dependent creates a child task</LI>
+     * <LI>transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void dependentsAndChildren() {
+        final UpdateTransaction transaction = newUpdateTransaction(executor);
+        final WorkerExecutable e0 = new WorkerExecutable();
+        final TestTaskController<Void> task0Controller = newTask(transaction, e0);
+        final WorkerExecutable[] dependents = new WorkerExecutable[TASKS];
+        final WorkerExecutable[] children = new WorkerExecutable[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            final WorkerExecutable child = children[i] = new WorkerExecutable();
+            dependents[i] = new WorkerExecutable() {
+                @Override
+                protected void executeInternal(final TestExecuteContext<Void> ctx) {
+                    super.executeInternal(ctx);
+                    newTask(ctx, child);
+                }
+            };
+            newTask(transaction, dependents[i], task0Controller);
+        }
+        prepare(transaction);
+        for (int i = 0; i < TASKS; i++) {
+            assertCallOrder(e0, dependents[i], children[i]);
+        }
+        assertRanOnWorkers(dependents);
+        assertRanOnWorkers(children);
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    /**
+     * Scenario:
+     * <UL>
+     * <LI>task0 waits on a closed gate, task1 depends on task0</LI>
+     * <LI>the context handed to task0 is neither a fork join task nor a runnable</LI>
+     * <LI>gate opened, transaction committed</LI>
+     * </UL>
+     */
+    @Test
+    public void plainExecuteContext() throws InterruptedException {
+        final UpdateTransaction transaction = newUpdateTransaction(executor);
+        final GateExecutable gate = new GateExecutable(false);
+        final TestTaskController<Void> task0Controller = txnController.newTask(transaction, gate).release();
+        final WorkerExecutable e1 = new WorkerExecutable();
+        newTask(transaction, e1, task0Controller);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (gate.getContext() == null) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        final Object context = gate.getContext();
+        assertFalse(context instanceof ForkJoinTask);
+        assertFalse(context instanceof Future);
+        assertFalse(context instanceof Runnable);
+        gate.open();
+        prepare(transaction);
+        assertRanOnWorkers(new WorkerExecutable[] {e1});
+        assertTrue(canCommit(transaction));
+        commit(transaction);
+    }
+
+    private static void assertRanOnWorkers(final WorkerExecutable[] executables) {
+        for (WorkerExecutable executable : executables) {
+            assertTrue(executable.thread instanceof ForkJoinWorkerThread);
+        }
+    }
+
+    private static class WorkerExecutable extends TestExecutable<Void> {
+        private volatile Thread thread;
+
+        @Override
+        protected void executeInternal(final TestExecuteContext<Void> ctx) {
+            thread = Thread.currentThread();
+        }
+    }
+}
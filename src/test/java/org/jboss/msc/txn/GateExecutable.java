@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2014 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.msc.txn;
+
+/**
+ * Executable that completes once its gate is open: right away if the gate is already open, or when it is opened.
+ * A closed gate is meant for a single task, whose dependents are thus built but not yet runnable. An open gate may
+ * be shared by any number of tasks, and does not allocate anything.
+ */
+public final class GateExecutable implements Executable<Void> {
+
+    private volatile boolean open;
+    private volatile ExecuteContext<Void> context;
+
+    public GateExecutable(final boolean open) {
+        this.open = open;
+    }
+
+    @Override
+    public void execute(final ExecuteContext<Void> context) {
+        if (open) {
+            context.complete();
+        } else {
+            this.context = context;
+        }
+    }
+
+    /**
+     * Returns the context handed to the task of a closed gate.
+     *
+     * @return the context, or {@code null} if the task is not executed yet
+     */
+    public Object getContext() {
+        return context;
+    }
+
+    /**
+     * Opens the gate, completing the task waiting for it.
+     */
+    public void open() {
+        open = true;
+        context.complete();
+    }
+}
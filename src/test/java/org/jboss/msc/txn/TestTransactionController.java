@@ -20,7 +20,9 @@ package org.jboss.msc.txn;
 import org.jboss.msc.service.ServiceContainer;
 import org.jboss.msc.service.ServiceContext;
 
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author <a href="mailto:ropalka@redhat.com">Richard Opalka</a>
@@ -81,4 +83,40 @@ public final class TestTransactionController {
         return delegate.createServiceContainer();
     }
 
+    public TransactionMetrics getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    public ServiceTimingReport getServiceTimingReport(final Transaction transaction) {
+        return delegate.getServiceTimingReport(transaction);
+    }
+
+    public void setExecutorQueueingDelayRecorded(final boolean recorded) {
+        delegate.setExecutorQueueingDelayRecorded(recorded);
+    }
+
+    public void setServiceTimingRecorded(final boolean recorded) {
+        delegate.setServiceTimingRecorded(recorded);
+    }
+
+    public void setTaskCountsRecorded(final boolean recorded) {
+        delegate.setTaskCountsRecorded(recorded);
+    }
+
+    public void setNotificationFanOutThreshold(final int threshold) {
+        delegate.setNotificationFanOutThreshold(threshold);
+    }
+
+    public void setServiceTimeout(final Transaction transaction, final long timeout, final TimeUnit unit) {
+        delegate.setServiceTimeout(transaction, timeout, unit);
+    }
+
+    public void setLongRunningServicesTracked(final boolean tracked) {
+        delegate.setLongRunningServicesTracked(tracked);
+    }
+
+    public List<ServiceTiming> getLongRunningServices(final long threshold, final TimeUnit unit) {
+        return delegate.getLongRunningServices(threshold, unit);
+    }
+
 }
\ No newline at end of file